@@ -0,0 +1,47 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import io.dropwizard.Application;
+import io.dropwizard.setup.Environment;
+
+/**
+ * A local relay that accepts InfluxDB line protocol from many reporters over TCP and UDP,
+ * re-batches it by size and time, and forwards it to InfluxDB with a single {@code sender}.
+ */
+public class InfluxDbRelayApplication extends Application<RelayConfiguration> {
+  public static void main(final String[] args) throws Exception {
+    new InfluxDbRelayApplication().run(args);
+  }
+
+  @Override
+  public String getName() {
+    return "influxdb-relay";
+  }
+
+  @Override
+  public void run(final RelayConfiguration configuration, final Environment environment) {
+    final RelayBatcher batcher = new RelayBatcher(
+      configuration.sender().build(environment.metrics()),
+      configuration.maxBatchSize().toBytes(),
+      configuration.flushInterval(),
+      configuration.aggregate(),
+      configuration.spoolSize().toBytes(),
+      environment.metrics()
+    );
+
+    // managed objects are stopped in reverse order, so listeners stop before the final flush.
+    environment.lifecycle().manage(batcher);
+    if (configuration.tcpPort() != null) {
+      environment.lifecycle().manage(new TcpLineListener(
+        configuration.bindHost(),
+        configuration.tcpPort(),
+        (int) configuration.maxLineLength().toBytes(),
+        batcher::add
+      ));
+    }
+    if (configuration.udpPort() != null) {
+      environment.lifecycle().manage(new UdpLineListener(configuration.bindHost(), configuration.udpPort(), batcher::add));
+    }
+
+    environment.healthChecks().register("influxdb-relay-spool", new SpoolHealthCheck(batcher));
+  }
+}
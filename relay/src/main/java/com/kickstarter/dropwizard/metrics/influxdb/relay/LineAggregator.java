@@ -0,0 +1,114 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges InfluxDB lines that write the same series at the same timestamp into a single line.
+ *
+ * <p>InfluxDB stores such lines as a single point, keeping the last value written for each field,
+ * so merging them in order does not change what is stored.
+ */
+public final class LineAggregator {
+  private static final char ESCAPE = '\\';
+  private static final char QUOTE = '"';
+
+  private LineAggregator() {}
+
+  /**
+   * Returns {@code lines} with lines of the same series and timestamp merged, in order of first appearance.
+   * Lines that cannot be parsed are passed through unchanged.
+   */
+  public static List<String> aggregate(final List<String> lines) {
+    final Map<String, Point> points = new LinkedHashMap<>(lines.size() * 2);
+
+    for (final String line : lines) {
+      final int seriesEnd = indexOf(line, 0, ' ', false);
+      if (seriesEnd <= 0) {
+        points.put("\0" + points.size(), Point.unparsed(line));
+        continue;
+      }
+
+      final int fieldsEnd = indexOf(line, seriesEnd + 1, ' ', true);
+      final String series = line.substring(0, seriesEnd);
+      final String fields = fieldsEnd < 0 ? line.substring(seriesEnd + 1) : line.substring(seriesEnd + 1, fieldsEnd);
+      final String timestamp = fieldsEnd < 0 ? "" : line.substring(fieldsEnd + 1);
+
+      points.computeIfAbsent(series + ' ' + timestamp, __ -> new Point(series, timestamp)).putFields(fields);
+    }
+
+    final List<String> aggregated = new ArrayList<>(points.size());
+    points.values().forEach(point -> aggregated.add(point.toLine()));
+    return aggregated;
+  }
+
+  /**
+   * Returns the index of the first unescaped {@code separator} in {@code s} at or after {@code from},
+   * skipping quoted field values if {@code quoted}, or -1 if there is none.
+   */
+  private static int indexOf(final String s, final int from, final char separator, final boolean quoted) {
+    boolean inQuotes = false;
+    for (int i = from; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      if (c == ESCAPE) {
+        i++;
+      } else if (quoted && c == QUOTE) {
+        inQuotes = !inQuotes;
+      } else if (!inQuotes && c == separator) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static class Point {
+    private final String series;
+    private final String timestamp;
+    private final Map<String, String> fields = new LinkedHashMap<>();
+    private String unparsed;
+
+    Point(final String series, final String timestamp) {
+      this.series = series;
+      this.timestamp = timestamp;
+    }
+
+    static Point unparsed(final String line) {
+      final Point point = new Point(null, null);
+      point.unparsed = line;
+      return point;
+    }
+
+    void putFields(final String fieldSet) {
+      int start = 0;
+      while (start < fieldSet.length()) {
+        int end = indexOf(fieldSet, start, ',', true);
+        if (end < 0) {
+          end = fieldSet.length();
+        }
+
+        final String field = fieldSet.substring(start, end);
+        final int equals = indexOf(field, 0, '=', false);
+        final String key = equals < 0 ? field : field.substring(0, equals);
+        // re-insert so that merged fields keep the order in which they were last written.
+        fields.remove(key);
+        fields.put(key, field);
+        start = end + 1;
+      }
+    }
+
+    String toLine() {
+      if (unparsed != null) {
+        return unparsed;
+      }
+
+      final StringBuilder line = new StringBuilder(series).append(' ');
+      line.append(String.join(",", fields.values()));
+      if (!timestamp.isEmpty()) {
+        line.append(' ').append(timestamp);
+      }
+      return line.toString();
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.kickstarter.dropwizard.metrics.influxdb.io.InfluxDbWriter;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects lines received by the relay listeners into batches, and forwards each batch to InfluxDB
+ * when it reaches {@code maxBatchSize} or every {@code flushInterval}.
+ *
+ * <p>Batches that fail to forward are kept in a bounded {@link RetrySpool} and retried,
+ * oldest first, before the next batch. All writes happen on a single flusher thread.
+ */
+public class RelayBatcher implements Managed {
+  private static final Logger log = LoggerFactory.getLogger(RelayBatcher.class);
+  private static final String SEPARATOR = "\n";
+
+  private final InfluxDbWriter writer;
+  private final long maxBatchSize;
+  private final Duration flushInterval;
+  private final boolean aggregate;
+  private final RetrySpool spool;
+  private final ScheduledExecutorService flusher;
+
+  private final Meter received;
+  private final Meter forwarded;
+  private final Meter failed;
+
+  private final Object lock = new Object();
+  private List<String> lines = new ArrayList<>();
+  private long batchSize = 0L;
+
+  public RelayBatcher(final InfluxDbWriter writer,
+                      final long maxBatchSize,
+                      final Duration flushInterval,
+                      final boolean aggregate,
+                      final long spoolSize,
+                      final MetricRegistry metrics) {
+    this.writer = writer;
+    this.maxBatchSize = maxBatchSize;
+    this.flushInterval = flushInterval;
+    this.aggregate = aggregate;
+    this.spool = new RetrySpool(spoolSize);
+    this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+      .setNameFormat("influxdb-relay-flusher-%d")
+      .setDaemon(true)
+      .build());
+
+    this.received = metrics.meter("influxdb-relay.lines.received");
+    this.forwarded = metrics.meter("influxdb-relay.lines.forwarded");
+    this.failed = metrics.meter("influxdb-relay.batches.failed");
+    metrics.register("influxdb-relay.spool.batches", (Gauge<Integer>) this::spooledBatches);
+    metrics.register("influxdb-relay.spool.dropped", (Gauge<Long>) this::droppedBatches);
+  }
+
+  /**
+   * Adds a line to the current batch. Blank lines are ignored.
+   */
+  public void add(final String line) {
+    if (line.trim().isEmpty()) {
+      return;
+    }
+
+    received.mark();
+    final List<String> full;
+    synchronized (lock) {
+      lines.add(line);
+      batchSize += line.length() + 1;
+      if (batchSize < maxBatchSize) {
+        return;
+      }
+      full = swap();
+    }
+
+    flusher.execute(() -> forward(full));
+  }
+
+  @Override
+  public void start() {
+    flusher.scheduleWithFixedDelay(
+      this::flush,
+      flushInterval.toMilliseconds(),
+      flushInterval.toMilliseconds(),
+      TimeUnit.MILLISECONDS
+    );
+  }
+
+  /**
+   * Forwards the lines received so far, then closes the writer.
+   */
+  @Override
+  public void stop() throws Exception {
+    flusher.submit(this::flush).get();
+    flusher.shutdown();
+    writer.close();
+  }
+
+  /**
+   * Forwards the current batch. Only called from the flusher thread.
+   */
+  @VisibleForTesting void flush() {
+    final List<String> batch;
+    synchronized (lock) {
+      batch = swap();
+    }
+    forward(batch);
+  }
+
+  /**
+   * Returns the number of batches waiting to be retried.
+   */
+  public int spooledBatches() {
+    return spool.batches();
+  }
+
+  /**
+   * Returns the number of spooled batches dropped to make room for newer ones.
+   */
+  public long droppedBatches() {
+    return spool.dropped();
+  }
+
+  private List<String> swap() {
+    final List<String> batch = lines;
+    lines = new ArrayList<>();
+    batchSize = 0L;
+    return batch;
+  }
+
+  /**
+   * Spools {@code batch} and writes the spool, oldest first, until it is empty or a write fails.
+   */
+  private void forward(final List<String> batch) {
+    if (!batch.isEmpty()) {
+      final List<String> merged = aggregate ? LineAggregator.aggregate(batch) : batch;
+      spool.add((String.join(SEPARATOR, merged) + SEPARATOR).getBytes(StandardCharsets.UTF_8));
+    }
+
+    for (byte[] bytes = spool.peek(); bytes != null; bytes = spool.peek()) {
+      try {
+        writer.writeBytes(bytes);
+        spool.remove();
+        forwarded.mark(count(bytes));
+      } catch (final Exception e) {
+        failed.mark();
+        log.warn("failed to forward metrics; {} batches spooled", spool.batches(), e);
+        try {
+          writer.close();
+        } catch (final Exception e2) {
+          log.warn("failed to close metrics connection", e2);
+        }
+        return;
+      }
+    }
+  }
+
+  private static long count(final byte[] bytes) {
+    long lines = 0L;
+    for (final byte b : bytes) {
+      if (b == '\n') {
+        lines++;
+      }
+    }
+    return lines;
+  }
+}
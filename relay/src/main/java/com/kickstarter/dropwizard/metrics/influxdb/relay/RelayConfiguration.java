@@ -0,0 +1,147 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.kickstarter.dropwizard.metrics.influxdb.io.InfluxDbWriter;
+import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import io.dropwizard.validation.MaxSize;
+import io.dropwizard.validation.MinSize;
+import io.dropwizard.validation.ValidationMethod;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.NotBlank;
+import org.hibernate.validator.constraints.Range;
+
+/**
+ * The relay configuration.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>bindHost</td>
+ *         <td><i>127.0.0.1</i></td>
+ *         <td>the address the listeners bind to.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>tcpPort</td>
+ *         <td><i>8094</i></td>
+ *         <td>the TCP listener port; {@code null} disables the TCP listener.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>udpPort</td>
+ *         <td><i>8089</i></td>
+ *         <td>the UDP listener port; {@code null} disables the UDP listener.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>maxBatchSize</td>
+ *         <td><i>1 megabyte</i></td>
+ *         <td>the batch size at which a batch is forwarded without waiting.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>flushInterval</td>
+ *         <td><i>1 second</i></td>
+ *         <td>the longest a received line waits before it is forwarded.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>aggregate</td>
+ *         <td><i>false</i></td>
+ *         <td>whether to merge lines of the same series and timestamp within a batch.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>spoolSize</td>
+ *         <td><i>64 megabytes</i></td>
+ *         <td>the most failed batches held for retry; the oldest are dropped first. At least maxBatchSize.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>maxLineLength</td>
+ *         <td><i>64 kilobytes</i></td>
+ *         <td>the longest line accepted over TCP; longer lines are dropped.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>sender</td>
+ *         <td><i>none</i></td>
+ *         <td>the {@link InfluxDbWriter} batches are forwarded with.</td>
+ *     </tr>
+ * </table>
+ */
+public class RelayConfiguration extends Configuration {
+  @NotBlank
+  @JsonProperty
+  private String bindHost = "127.0.0.1";
+  public String bindHost() {
+    return bindHost;
+  }
+
+  @Range(min = 0, max = 65535)
+  @JsonProperty
+  private Integer tcpPort = 8094;
+  public Integer tcpPort() {
+    return tcpPort;
+  }
+
+  @Range(min = 0, max = 65535)
+  @JsonProperty
+  private Integer udpPort = 8089;
+  public Integer udpPort() {
+    return udpPort;
+  }
+
+  @NotNull
+  @MinSize(1)
+  @JsonProperty
+  private Size maxBatchSize = Size.megabytes(1);
+  public Size maxBatchSize() {
+    return maxBatchSize;
+  }
+
+  @NotNull
+  @JsonProperty
+  private Duration flushInterval = Duration.seconds(1);
+  public Duration flushInterval() {
+    return flushInterval;
+  }
+
+  @JsonProperty
+  private boolean aggregate = false;
+  public boolean aggregate() {
+    return aggregate;
+  }
+
+  @NotNull
+  @MinSize(1)
+  @JsonProperty
+  private Size spoolSize = Size.megabytes(64);
+  public Size spoolSize() {
+    return spoolSize;
+  }
+
+  @NotNull
+  @MinSize(1)
+  @MaxSize(Integer.MAX_VALUE)
+  @JsonProperty
+  private Size maxLineLength = Size.kilobytes(64);
+  public Size maxLineLength() {
+    return maxLineLength;
+  }
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private InfluxDbWriter.Factory sender;
+  public InfluxDbWriter.Factory sender() {
+    return sender;
+  }
+
+  @JsonIgnore
+  @ValidationMethod(message = "spoolSize must be at least maxBatchSize")
+  public boolean isSpoolSizeAtLeastMaxBatchSize() {
+    return spoolSize == null || maxBatchSize == null || spoolSize.toBytes() >= maxBatchSize.toBytes();
+  }
+}
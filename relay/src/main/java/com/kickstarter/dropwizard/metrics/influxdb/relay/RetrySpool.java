@@ -0,0 +1,56 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A bounded, in-memory FIFO of batches that failed to forward.
+ * When full, the oldest batches are dropped to make room for new ones. A batch larger than the
+ * spool replaces every other batch, so that it is still forwarded, or retried until the next batch.
+ *
+ * <p>Batches are added and written from the {@link RelayBatcher} flusher thread;
+ * its size may be read from any thread.
+ */
+class RetrySpool {
+  private final long maxBytes;
+  private final Deque<byte[]> batches = new ArrayDeque<>();
+  private long bytes = 0L;
+  private long dropped = 0L;
+
+  RetrySpool(final long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  synchronized void add(final byte[] batch) {
+    while (!batches.isEmpty() && bytes + batch.length > maxBytes) {
+      bytes -= batches.removeFirst().length;
+      dropped++;
+    }
+
+    batches.addLast(batch);
+    bytes += batch.length;
+  }
+
+  /**
+   * Returns the oldest batch without removing it, or {@code null} if the spool is empty.
+   */
+  synchronized byte[] peek() {
+    return batches.peekFirst();
+  }
+
+  synchronized void remove() {
+    bytes -= batches.removeFirst().length;
+  }
+
+  synchronized int batches() {
+    return batches.size();
+  }
+
+  synchronized long bytes() {
+    return bytes;
+  }
+
+  synchronized long dropped() {
+    return dropped;
+  }
+}
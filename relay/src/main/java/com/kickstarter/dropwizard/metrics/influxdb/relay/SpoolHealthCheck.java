@@ -0,0 +1,22 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import com.codahale.metrics.health.HealthCheck;
+
+/**
+ * Unhealthy while batches are spooled, i.e. while forwarding to InfluxDB is failing.
+ */
+public class SpoolHealthCheck extends HealthCheck {
+  private final RelayBatcher batcher;
+
+  public SpoolHealthCheck(final RelayBatcher batcher) {
+    this.batcher = batcher;
+  }
+
+  @Override
+  protected Result check() {
+    final int spooled = batcher.spooledBatches();
+    return spooled == 0
+      ? Result.healthy()
+      : Result.unhealthy("%d batches spooled for retry, %d dropped", spooled, batcher.droppedBatches());
+  }
+}
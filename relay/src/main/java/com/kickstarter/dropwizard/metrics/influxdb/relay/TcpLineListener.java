@@ -0,0 +1,121 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Accepts newline-delimited InfluxDB lines over TCP, one reader thread per connection.
+ * Lines longer than {@code maxLineLength} characters are dropped.
+ */
+public class TcpLineListener implements Managed {
+  private static final Logger log = LoggerFactory.getLogger(TcpLineListener.class);
+
+  private final String bindHost;
+  private final int port;
+  private final int maxLineLength;
+  private final Consumer<String> lines;
+  private final ExecutorService connections = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+    .setNameFormat("influxdb-relay-tcp-%d")
+    .setDaemon(true)
+    .build());
+
+  private ServerSocket server;
+
+  public TcpLineListener(final String bindHost,
+                         final int port,
+                         final int maxLineLength,
+                         final Consumer<String> lines) {
+    this.bindHost = bindHost;
+    this.port = port;
+    this.maxLineLength = maxLineLength;
+    this.lines = lines;
+  }
+
+  @Override
+  public void start() throws IOException {
+    server = new ServerSocket(port, 50, InetAddress.getByName(bindHost));
+    connections.execute(this::accept);
+  }
+
+  @Override
+  public void stop() throws IOException {
+    server.close();
+    connections.shutdownNow();
+  }
+
+  /**
+   * Returns the bound port, which differs from the configured port when it is zero.
+   */
+  public int port() {
+    return server.getLocalPort();
+  }
+
+  private void accept() {
+    while (!server.isClosed()) {
+      try {
+        final Socket socket = server.accept();
+        connections.execute(() -> read(socket));
+      } catch (final IOException e) {
+        if (!server.isClosed()) {
+          log.warn("failed to accept relay connection", e);
+        }
+      }
+    }
+  }
+
+  private void read(final Socket socket) {
+    try (Socket s = socket;
+         BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      final StringBuilder line = new StringBuilder();
+      while (readLine(reader, line)) {
+        lines.accept(line.toString());
+      }
+    } catch (final IOException e) {
+      log.debug("relay connection closed", e);
+    }
+  }
+
+  /**
+   * Reads the next line of at most {@code maxLineLength} characters into {@code line},
+   * skipping longer lines.
+   *
+   * @return false at the end of the stream.
+   */
+  private boolean readLine(final BufferedReader reader, final StringBuilder line) throws IOException {
+    line.setLength(0);
+    boolean overlong = false;
+    for (int c = reader.read(); c >= 0; c = reader.read()) {
+      if (c == '\n') {
+        if (!overlong) {
+          if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+            line.setLength(line.length() - 1);
+          }
+          return true;
+        }
+        overlong = false;
+        line.setLength(0);
+      } else if (overlong) {
+        continue;
+      } else if (line.length() == maxLineLength) {
+        log.warn("dropped a relayed line longer than {} characters", maxLineLength);
+        overlong = true;
+      } else {
+        line.append((char) c);
+      }
+    }
+    return !overlong && line.length() > 0;
+  }
+}
@@ -0,0 +1,76 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Accepts InfluxDB lines over UDP; each datagram holds one or more newline-delimited lines.
+ */
+public class UdpLineListener implements Managed {
+  private static final Logger log = LoggerFactory.getLogger(UdpLineListener.class);
+  private static final int MAX_DATAGRAM_SIZE = 65535;
+
+  private final String bindHost;
+  private final int port;
+  private final Consumer<String> lines;
+  private final ExecutorService receiver = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+    .setNameFormat("influxdb-relay-udp-%d")
+    .setDaemon(true)
+    .build());
+
+  private DatagramSocket socket;
+
+  public UdpLineListener(final String bindHost, final int port, final Consumer<String> lines) {
+    this.bindHost = bindHost;
+    this.port = port;
+    this.lines = lines;
+  }
+
+  @Override
+  public void start() throws IOException {
+    socket = new DatagramSocket(new InetSocketAddress(InetAddress.getByName(bindHost), port));
+    receiver.execute(this::receive);
+  }
+
+  @Override
+  public void stop() {
+    socket.close();
+    receiver.shutdownNow();
+  }
+
+  /**
+   * Returns the bound port, which differs from the configured port when it is zero.
+   */
+  public int port() {
+    return socket.getLocalPort();
+  }
+
+  private void receive() {
+    final DatagramPacket packet = new DatagramPacket(new byte[MAX_DATAGRAM_SIZE], MAX_DATAGRAM_SIZE);
+    while (!socket.isClosed()) {
+      try {
+        socket.receive(packet);
+        final String datagram = new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.UTF_8);
+        for (final String line : datagram.split("\n")) {
+          lines.accept(line);
+        }
+      } catch (final IOException e) {
+        if (!socket.isClosed()) {
+          log.warn("failed to receive relay datagram", e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineAggregatorTest {
+  @Test
+  public void testAggregate_MergesSameSeriesAndTimestamp() {
+    assertEquals(
+      "should merge fields of the same series and timestamp",
+      ImmutableList.of("cpu,host=a user=1i,system=2i 100", "cpu,host=b user=3i 100"),
+      LineAggregator.aggregate(ImmutableList.of(
+        "cpu,host=a user=1i 100",
+        "cpu,host=b user=3i 100",
+        "cpu,host=a system=2i 100"
+      ))
+    );
+  }
+
+  @Test
+  public void testAggregate_KeepsDistinctTimestamps() {
+    assertEquals(
+      "should not merge different timestamps",
+      ImmutableList.of("cpu user=1i 100", "cpu user=2i 200"),
+      LineAggregator.aggregate(ImmutableList.of("cpu user=1i 100", "cpu user=2i 200"))
+    );
+  }
+
+  @Test
+  public void testAggregate_LastFieldValueWins() {
+    assertEquals(
+      "should keep the last value written for a field",
+      ImmutableList.of("cpu system=2i,user=3i 100"),
+      LineAggregator.aggregate(ImmutableList.of("cpu user=1i,system=2i 100", "cpu user=3i 100"))
+    );
+  }
+
+  @Test
+  public void testAggregate_RespectsEscapesAndQuotes() {
+    assertEquals(
+      "should not split on escaped or quoted separators",
+      ImmutableList.of("disk\\ io,path=/a\\,b msg=\"a b,c=d\",x=1i 100"),
+      LineAggregator.aggregate(ImmutableList.of(
+        "disk\\ io,path=/a\\,b msg=\"a b,c=d\" 100",
+        "disk\\ io,path=/a\\,b x=1i 100"
+      ))
+    );
+  }
+
+  @Test
+  public void testAggregate_PassesThroughUnparsedLines() {
+    assertEquals(
+      "should pass through lines without a field set",
+      ImmutableList.of("garbage", "garbage"),
+      LineAggregator.aggregate(ImmutableList.of("garbage", "garbage"))
+    );
+  }
+}
@@ -0,0 +1,118 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.kickstarter.dropwizard.metrics.influxdb.io.InfluxDbWriter;
+import io.dropwizard.util.Duration;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RelayBatcherTest {
+  private final RecordingWriter writer = new RecordingWriter();
+
+  @Test
+  public void testFlush_ForwardsBatch() {
+    final RelayBatcher batcher = batcher(1024, false, 1024);
+    batcher.add("a x=1i 1");
+    batcher.add("");
+    batcher.add("b x=2i 1");
+    batcher.flush();
+
+    assertEquals("should forward received lines in one write", ImmutableList.of("a x=1i 1\nb x=2i 1\n"), writer.writes);
+  }
+
+  @Test
+  public void testFlush_Aggregates() {
+    final RelayBatcher batcher = batcher(1024, true, 1024);
+    batcher.add("a x=1i 1");
+    batcher.add("a y=2i 1");
+    batcher.flush();
+
+    assertEquals("should merge lines of the same point", ImmutableList.of("a x=1i,y=2i 1\n"), writer.writes);
+  }
+
+  @Test
+  public void testAdd_ForwardsFullBatch() throws Exception {
+    final RelayBatcher batcher = batcher(10, false, 1024);
+    batcher.add("a x=1i 1");
+    batcher.add("b x=2i 1");
+    batcher.stop();
+
+    assertEquals("should forward the full batch", "a x=1i 1\nb x=2i 1\n", writer.writes.get(0));
+  }
+
+  @Test
+  public void testFlush_SpoolsAndRetriesFailedBatches() {
+    final RelayBatcher batcher = batcher(1024, false, 1024);
+    writer.failing = true;
+    batcher.add("a x=1i 1");
+    batcher.flush();
+    assertEquals("should spool the failed batch", 1, batcher.spooledBatches());
+    assertEquals("should close the writer after a failure", 1, writer.closes);
+
+    writer.failing = false;
+    batcher.add("b x=2i 2");
+    batcher.flush();
+    assertEquals("should retry the spooled batch first", ImmutableList.of("a x=1i 1\n", "b x=2i 2\n"), writer.writes);
+    assertEquals("should empty the spool", 0, batcher.spooledBatches());
+  }
+
+  @Test
+  public void testFlush_DropsOldestSpooledBatches() {
+    final RelayBatcher batcher = batcher(1024, false, 20);
+    writer.failing = true;
+    batcher.add("a x=1i 1");
+    batcher.flush();
+    batcher.add("b x=2i 2");
+    batcher.flush();
+    batcher.add("c x=3i 3");
+    batcher.flush();
+
+    assertEquals("should bound the spool", 2, batcher.spooledBatches());
+    assertEquals("should drop the oldest batch", 1, batcher.droppedBatches());
+
+    writer.failing = false;
+    batcher.flush();
+    assertEquals("should retry the remaining batches", ImmutableList.of("b x=2i 2\n", "c x=3i 3\n"), writer.writes);
+  }
+
+  @Test
+  public void testFlush_ForwardsBatchesLargerThanTheSpool() {
+    final RelayBatcher batcher = batcher(1024, false, 4);
+    batcher.add("a x=1i 1");
+    batcher.flush();
+
+    assertEquals("should forward the oversized batch", ImmutableList.of("a x=1i 1\n"), writer.writes);
+    assertEquals("should not drop the oversized batch", 0, batcher.droppedBatches());
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private RelayBatcher batcher(final long maxBatchSize, final boolean aggregate, final long spoolSize) {
+    return new RelayBatcher(writer, maxBatchSize, Duration.seconds(1), aggregate, spoolSize, new MetricRegistry());
+  }
+
+  private static class RecordingWriter implements InfluxDbWriter {
+    private final List<String> writes = new ArrayList<>();
+    private volatile boolean failing = false;
+    private int closes = 0;
+
+    @Override public synchronized void writeBytes(final byte[] bytes) throws IOException {
+      if (failing) {
+        throw new IOException("failing");
+      }
+      writes.add(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Override public synchronized void close() {
+      closes++;
+    }
+  }
+}
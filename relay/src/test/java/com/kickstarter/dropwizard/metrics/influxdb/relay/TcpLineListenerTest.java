@@ -0,0 +1,34 @@
+package com.kickstarter.dropwizard.metrics.influxdb.relay;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class TcpLineListenerTest {
+  @Test
+  public void testRead_DropsOverlongLines() throws Exception {
+    final List<String> received = new CopyOnWriteArrayList<>();
+    final TcpLineListener listener = new TcpLineListener("127.0.0.1", 0, 10, received::add);
+    listener.start();
+    try (Socket socket = new Socket("127.0.0.1", listener.port()); OutputStream out = socket.getOutputStream()) {
+      out.write("a x=1i 1\r\nb x=2i 12345\nc x=3i 1\nd".getBytes(StandardCharsets.UTF_8));
+    }
+
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (received.size() < 3 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    listener.stop();
+
+    assertEquals("should drop lines longer than the maximum",
+      ImmutableList.of("a x=1i 1", "c x=3i 1", "d"), received);
+  }
+}
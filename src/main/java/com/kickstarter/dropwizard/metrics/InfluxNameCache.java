@@ -0,0 +1,186 @@
+package com.kickstarter.dropwizard.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.DropwizardMeasurement;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.Escaping;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, concurrent cache of InfluxDb metric names, keyed by measurement, field and tags, for
+ * building names on hot paths such as request handlers.
+ *
+ * <pre>{@code
+ *   final Timer timer = registry.timer(names.name("Http", "route", route, "status", status));
+ * }</pre>
+ *
+ * <p>Names are held in a lossy set-associative table: each key hashes to a set of {@value #WAYS}
+ * slots, which are read without locking, and a miss replaces a random slot of a full set.
+ * A hit compares the key in place and returns the cached name instance, so repeated calls do not
+ * allocate beyond their varargs array. A miss builds the name as {@link DropwizardMeasurement} does.
+ */
+public final class InfluxNameCache {
+  /**
+   * The default number of cached names.
+   */
+  public static final int DEFAULT_SIZE = 4096;
+
+  private static final int WAYS = 4;
+
+  private final AtomicReferenceArray<Entry> entries;
+  private final int setMask;
+  private final Escaping escaping;
+
+  /**
+   * @param size     the number of cached names, rounded up to a power of two.
+   * @param escaping how names escape InfluxDb's special characters.
+   */
+  public InfluxNameCache(final int size, final Escaping escaping) {
+    if (size < 1) {
+      throw new IllegalArgumentException("size must be positive");
+    }
+
+    final int minSets = (size + WAYS - 1) / WAYS;
+    final int sets = minSets == 1 ? 1 : Integer.highestOneBit(minSets - 1) << 1;
+    this.entries = new AtomicReferenceArray<>(sets * WAYS);
+    this.setMask = sets - 1;
+    this.escaping = escaping;
+  }
+
+  /**
+   * Returns the name of {@code measurement} tagged with {@code tags}, given as alternating keys and values.
+   *
+   * @throws IllegalArgumentException if a key has no value.
+   */
+  public String name(final String measurement, final String... tags) {
+    return get(measurement, null, tags);
+  }
+
+  /**
+   * Returns the name of {@code measurement}'s {@code field}, tagged with {@code tags}, given as alternating
+   * keys and values.
+   *
+   * @throws IllegalArgumentException if a key has no value.
+   */
+  public String fieldName(final String measurement, final String field, final String... tags) {
+    return get(measurement, field, tags);
+  }
+
+  /**
+   * Returns the name of {@code measurement} tagged with {@code tags}.
+   */
+  public String name(final String measurement, final Map<String, String> tags) {
+    return get(measurement, null, tags);
+  }
+
+  /**
+   * Returns the name of {@code measurement}'s {@code field}, tagged with {@code tags}.
+   */
+  public String fieldName(final String measurement, final String field, final Map<String, String> tags) {
+    return get(measurement, field, tags);
+  }
+
+  private String get(final String measurement, final String field, final String[] tags) {
+    if (tags.length % 2 != 0) {
+      throw new IllegalArgumentException("tags must be key/value pairs");
+    }
+
+    int hash = 31 * measurement.hashCode() + Objects.hashCode(field);
+    for (final String tag : tags) {
+      hash = 31 * hash + tag.hashCode();
+    }
+
+    final int set = set(hash);
+    for (int way = 0; way < WAYS; way++) {
+      final Entry entry = entries.get(set + way);
+      if (entry != null && entry.hash == hash && entry.matches(measurement, field)
+        && entry.pairs != null && Arrays.equals(entry.pairs, tags)) {
+        return entry.name;
+      }
+    }
+
+    final Map<String, String> tagMap = new HashMap<>(tags.length);
+    for (int i = 0; i < tags.length; i += 2) {
+      tagMap.put(tags[i], tags[i + 1]);
+    }
+    final String name = build(measurement, field, tagMap);
+    put(set, new Entry(hash, measurement, field, tags.clone(), null, name));
+    return name;
+  }
+
+  private String get(final String measurement, final String field, final Map<String, String> tags) {
+    final int hash = 31 * (31 * measurement.hashCode() + Objects.hashCode(field)) + tags.hashCode() + 1;
+
+    final int set = set(hash);
+    for (int way = 0; way < WAYS; way++) {
+      final Entry entry = entries.get(set + way);
+      if (entry != null && entry.hash == hash && entry.matches(measurement, field)
+        && entry.tags != null && entry.tags.equals(tags)) {
+        return entry.name;
+      }
+    }
+
+    final String name = build(measurement, field, tags);
+    put(set, new Entry(hash, measurement, field, null, ImmutableMap.copyOf(tags), name));
+    return name;
+  }
+
+  private String build(final String measurement, final String field, final Map<String, String> tags) {
+    return DropwizardMeasurement.create(measurement, tags, Optional.ofNullable(field), escaping).toString();
+  }
+
+  /**
+   * Returns the index of the first slot of {@code hash}'s set.
+   */
+  private int set(final int hash) {
+    return ((hash ^ (hash >>> 16)) & setMask) * WAYS;
+  }
+
+  /**
+   * Caches {@code entry} in an empty slot of {@code set}, or in place of a random one.
+   */
+  private void put(final int set, final Entry entry) {
+    for (int way = 0; way < WAYS; way++) {
+      if (entries.get(set + way) == null && entries.compareAndSet(set + way, null, entry)) {
+        return;
+      }
+    }
+    entries.set(set + ThreadLocalRandom.current().nextInt(WAYS), entry);
+  }
+
+  /**
+   * A cached name, keyed by either tag {@code pairs} or a {@code tags} map.
+   */
+  private static class Entry {
+    private final int hash;
+    private final String measurement;
+    private final String field;
+    private final String[] pairs;
+    private final Map<String, String> tags;
+    private final String name;
+
+    Entry(final int hash,
+          final String measurement,
+          final String field,
+          final String[] pairs,
+          final Map<String, String> tags,
+          final String name) {
+      this.hash = hash;
+      this.measurement = measurement;
+      this.field = field;
+      this.pairs = pairs;
+      this.tags = tags;
+      this.name = name;
+    }
+
+    boolean matches(final String measurement, final String field) {
+      return this.measurement.equals(measurement) && Objects.equals(this.field, field);
+    }
+  }
+}
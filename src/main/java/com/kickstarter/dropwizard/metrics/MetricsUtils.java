@@ -1,26 +1,53 @@
 package com.kickstarter.dropwizard.metrics;
 
-import com.kickstarter.dropwizard.metrics.influxdb.transformer.DropwizardMeasurement;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.Escaping;
+import com.kickstarter.dropwizard.metrics.reservoir.LogBucketReservoir;
 
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.Optional;
+import java.util.function.Supplier;
 
 public final class MetricsUtils {
+  private static final Map<Escaping, InfluxNameCache> NAMES = new EnumMap<>(Escaping.class);
+  static {
+    for (final Escaping escaping : Escaping.values()) {
+      NAMES.put(escaping, new InfluxNameCache(InfluxNameCache.DEFAULT_SIZE, escaping));
+    }
+  }
+
   private MetricsUtils(){}
 
   /**
-   * Generate the name for an InfluxDb metric with the given measurement name and tags.
+   * Generate the name for an InfluxDb metric with the given measurement name and tags. Names are cached.
    *
    * <pre>{@code
    *   final Timer timer = registry.timer(influxName("Measurement", ImmutableMap.of("action", "restore")));
    * }</pre>
    */
   public static String influxName(final String measurement, final Map<String, String> tags) {
-    return DropwizardMeasurement.create(measurement, tags, Optional.empty()).toString();
+    return influxName(measurement, tags, Escaping.SANITIZE);
+  }
+
+  /**
+   * Generate the name for an InfluxDb metric with the given measurement name and tags, given as alternating
+   * keys and values. Names are cached, so repeated calls return the same name without building a tag map.
+   *
+   * <pre>{@code
+   *   final Timer timer = registry.timer(influxName("Http", "route", route, "status", status));
+   * }</pre>
+   *
+   * @throws IllegalArgumentException if a key has no value.
+   */
+  public static String influxName(final String measurement, final String... tags) {
+    return NAMES.get(Escaping.SANITIZE).name(measurement, tags);
   }
 
   /**
-   * Generate the name for an InfluxDb metric with the given measurement name, field name, and tags.
+   * Generate the name for an InfluxDb metric with the given measurement name, field name, and tags. Names are cached.
    *
    * <pre>{@code
    * registry.gauge(
@@ -30,6 +57,100 @@ public final class MetricsUtils {
    * }</pre>
    */
   public static String influxName(final String measurement, final String field, final Map<String, String> tags) {
-    return DropwizardMeasurement.create(measurement, tags, Optional.of(field)).toString();
+    return influxName(measurement, field, tags, Escaping.SANITIZE);
+  }
+
+  /**
+   * Generate the name for an InfluxDb metric with the given measurement name, field name, and tags, given as
+   * alternating keys and values. Names are cached, so repeated calls return the same name without building
+   * a tag map.
+   *
+   * @throws IllegalArgumentException if a key has no value.
+   */
+  public static String influxFieldName(final String measurement, final String field, final String... tags) {
+    return NAMES.get(Escaping.SANITIZE).fieldName(measurement, field, tags);
+  }
+
+  /**
+   * Generate the name for an InfluxDb metric with the given measurement name and tags, escaped by {@code escaping},
+   * which should match the reporter's {@code escaping}.
+   */
+  public static String influxName(final String measurement, final Map<String, String> tags, final Escaping escaping) {
+    return NAMES.get(escaping).name(measurement, tags);
+  }
+
+  /**
+   * Generate the name for an InfluxDb metric with the given measurement name, field name, and tags, escaped by
+   * {@code escaping}, which should match the reporter's {@code escaping}.
+   */
+  public static String influxName(final String measurement,
+                                  final String field,
+                                  final Map<String, String> tags,
+                                  final Escaping escaping) {
+    return NAMES.get(escaping).fieldName(measurement, field, tags);
+  }
+
+  /**
+   * Get or register a timer backed by a {@link LogBucketReservoir}, which reports exact bucket counts
+   * for each reporting interval.
+   *
+   * <pre>{@code
+   *   final Timer timer = logBucketTimer(registry, influxName("Measurement", ImmutableMap.of("action", "restore")));
+   * }</pre>
+   *
+   * @throws IllegalArgumentException if {@code name} is registered to a metric that is not a log-bucket timer.
+   */
+  public static Timer logBucketTimer(final MetricRegistry registry, final String name) {
+    return getOrAdd(registry, name, LogBucketTimer.class, LogBucketTimer::new);
+  }
+
+  /**
+   * Get or register a histogram backed by a {@link LogBucketReservoir}, which reports exact bucket counts
+   * for each reporting interval.
+   *
+   * @throws IllegalArgumentException if {@code name} is registered to a metric that is not a log-bucket histogram.
+   */
+  public static Histogram logBucketHistogram(final MetricRegistry registry, final String name) {
+    return getOrAdd(registry, name, LogBucketHistogram.class, LogBucketHistogram::new);
+  }
+
+  private static <T extends Metric> T getOrAdd(final MetricRegistry registry,
+                                               final String name,
+                                               final Class<T> type,
+                                               final Supplier<T> builder) {
+    final Metric metric = registry.getMetrics().get(name);
+    if (type.isInstance(metric)) {
+      return type.cast(metric);
+    } else if (metric == null) {
+      try {
+        return registry.register(name, builder.get());
+      } catch (final IllegalArgumentException e) {
+        // registered concurrently.
+        final Metric added = registry.getMetrics().get(name);
+        if (type.isInstance(added)) {
+          return type.cast(added);
+        }
+      }
+    }
+    throw new IllegalArgumentException(name + " is already used for a metric not backed by a LogBucketReservoir");
+  }
+
+  /**
+   * A timer backed by a {@link LogBucketReservoir}, recognizable without reading, and so resetting, its reservoir.
+   */
+  private static final class LogBucketTimer extends Timer {
+    LogBucketTimer() {
+      super(new LogBucketReservoir());
+    }
+  }
+
+  /**
+   * A histogram backed by a {@link LogBucketReservoir}, recognizable without reading, and so resetting,
+   * its reservoir.
+   */
+  private static final class LogBucketHistogram extends Histogram {
+    LogBucketHistogram() {
+      super(new LogBucketReservoir());
+    }
   }
 }
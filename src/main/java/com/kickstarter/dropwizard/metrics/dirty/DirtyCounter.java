@@ -0,0 +1,27 @@
+package com.kickstarter.dropwizard.metrics.dirty;
+
+import com.codahale.metrics.Counter;
+
+/**
+ * A {@link Counter} that is marked dirty whenever it is incremented or decremented.
+ */
+public class DirtyCounter extends Counter implements DirtyMetric {
+  private final DirtyFlag flag = new DirtyFlag();
+
+  @Override
+  public void inc(final long n) {
+    super.inc(n);
+    flag.mark();
+  }
+
+  @Override
+  public void dec(final long n) {
+    super.dec(n);
+    flag.mark();
+  }
+
+  @Override
+  public boolean markClean() {
+    return flag.clear();
+  }
+}
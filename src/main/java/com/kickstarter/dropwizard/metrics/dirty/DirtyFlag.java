@@ -0,0 +1,26 @@
+package com.kickstarter.dropwizard.metrics.dirty;
+
+/**
+ * The dirty bit of a single {@link DirtyMetric}.
+ *
+ * <p>Each metric has its own flag, so updates to different metrics never contend. An update only
+ * writes the flag if it is clean, so a busy metric's updates read it without invalidating the
+ * cache lines of other updating threads.
+ */
+final class DirtyFlag {
+  private volatile boolean dirty = true;
+
+  void mark() {
+    if (!dirty) {
+      dirty = true;
+    }
+  }
+
+  boolean clear() {
+    if (!dirty) {
+      return false;
+    }
+    dirty = false;
+    return true;
+  }
+}
@@ -0,0 +1,26 @@
+package com.kickstarter.dropwizard.metrics.dirty;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Reservoir;
+
+/**
+ * A {@link Histogram} that is marked dirty whenever it is updated.
+ */
+public class DirtyHistogram extends Histogram implements DirtyMetric {
+  private final DirtyFlag flag = new DirtyFlag();
+
+  public DirtyHistogram(final Reservoir reservoir) {
+    super(reservoir);
+  }
+
+  @Override
+  public void update(final long value) {
+    super.update(value);
+    flag.mark();
+  }
+
+  @Override
+  public boolean markClean() {
+    return flag.clear();
+  }
+}
@@ -0,0 +1,21 @@
+package com.kickstarter.dropwizard.metrics.dirty;
+
+import com.codahale.metrics.Meter;
+
+/**
+ * A {@link Meter} that is marked dirty whenever it is marked.
+ */
+public class DirtyMeter extends Meter implements DirtyMetric {
+  private final DirtyFlag flag = new DirtyFlag();
+
+  @Override
+  public void mark(final long n) {
+    super.mark(n);
+    flag.mark();
+  }
+
+  @Override
+  public boolean markClean() {
+    return flag.clear();
+  }
+}
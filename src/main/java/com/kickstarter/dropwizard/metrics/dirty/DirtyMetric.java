@@ -0,0 +1,20 @@
+package com.kickstarter.dropwizard.metrics.dirty;
+
+import com.codahale.metrics.Metric;
+
+/**
+ * A {@link Metric} that records whether it was updated since it was last reported, so that the
+ * InfluxDB reporter can skip reading metrics that have been idle.
+ *
+ * @see DirtyTrackingMetricRegistry
+ */
+public interface DirtyMetric extends Metric {
+  /**
+   * Marks the metric clean, returning true if it was updated since it was last marked clean.
+   * New metrics start dirty.
+   *
+   * <p>A metric must be marked clean before it is read, so that an update racing with the read is
+   * either read or leaves the metric dirty for the next report.
+   */
+  boolean markClean();
+}
@@ -0,0 +1,44 @@
+package com.kickstarter.dropwizard.metrics.dirty;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Timer} that is marked dirty whenever it is updated, directly or by a timed event.
+ */
+public class DirtyTimer extends Timer implements DirtyMetric {
+  private final DirtyFlag flag = new DirtyFlag();
+
+  public DirtyTimer() {
+  }
+
+  public DirtyTimer(final Reservoir reservoir) {
+    super(reservoir);
+  }
+
+  /**
+   * Also updated by the {@link Timer.Context contexts} of {@link #time()}.
+   */
+  @Override
+  public void update(final long duration, final TimeUnit unit) {
+    super.update(duration, unit);
+    flag.mark();
+  }
+
+  @Override
+  public <T> T time(final Callable<T> event) throws Exception {
+    try {
+      return super.time(event);
+    } finally {
+      flag.mark();
+    }
+  }
+
+  @Override
+  public boolean markClean() {
+    return flag.clear();
+  }
+}
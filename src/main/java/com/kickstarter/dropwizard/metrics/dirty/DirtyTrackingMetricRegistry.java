@@ -0,0 +1,65 @@
+package com.kickstarter.dropwizard.metrics.dirty;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link MetricRegistry} whose counters, histograms, meters and timers are {@link DirtyMetric dirty-tracked},
+ * so that the InfluxDB reporter reads and reports only the metrics updated since its last report.
+ *
+ * <pre>{@code
+ *   bootstrap.setMetricRegistry(new DirtyTrackingMetricRegistry());
+ * }</pre>
+ *
+ * <p>Metrics created by {@link #counter}, {@link #histogram}, {@link #meter} and {@link #timer} are tracked;
+ * metrics {@link #register registered} directly are tracked only if they are {@link DirtyMetric}s, and are
+ * otherwise reported every time. Gauges are always reported.
+ *
+ * <p>Reporting marks metrics clean, so a registry's metrics should be dirty-tracked by a single reporter.
+ */
+public class DirtyTrackingMetricRegistry extends MetricRegistry {
+  @Override
+  public Counter counter(final String name) {
+    return getOrAdd(name, Counter.class, DirtyCounter::new);
+  }
+
+  @Override
+  public Histogram histogram(final String name) {
+    return getOrAdd(name, Histogram.class, () -> new DirtyHistogram(new ExponentiallyDecayingReservoir()));
+  }
+
+  @Override
+  public Meter meter(final String name) {
+    return getOrAdd(name, Meter.class, DirtyMeter::new);
+  }
+
+  @Override
+  public Timer timer(final String name) {
+    return getOrAdd(name, Timer.class, DirtyTimer::new);
+  }
+
+  private <T extends Metric> T getOrAdd(final String name, final Class<T> type, final Supplier<T> builder) {
+    final Metric metric = getMetrics().get(name);
+    if (type.isInstance(metric)) {
+      return type.cast(metric);
+    } else if (metric == null) {
+      try {
+        return register(name, builder.get());
+      } catch (final IllegalArgumentException e) {
+        // registered concurrently.
+        final Metric added = getMetrics().get(name);
+        if (type.isInstance(added)) {
+          return type.cast(added);
+        }
+      }
+    }
+    throw new IllegalArgumentException(name + " is already used for a different type of metric");
+  }
+}
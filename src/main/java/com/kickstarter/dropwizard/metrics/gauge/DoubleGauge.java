@@ -0,0 +1,20 @@
+package com.kickstarter.dropwizard.metrics.gauge;
+
+import com.codahale.metrics.Gauge;
+
+/**
+ * A {@link Gauge} of a primitive double, which the InfluxDB reporter reads without boxing.
+ *
+ * <pre>{@code
+ *   registry.register("cache.hit-ratio", (DoubleGauge) () -> cache.stats().hitRate());
+ * }</pre>
+ */
+@FunctionalInterface
+public interface DoubleGauge extends Gauge<Double> {
+  double getDoubleValue();
+
+  @Override
+  default Double getValue() {
+    return getDoubleValue();
+  }
+}
@@ -0,0 +1,20 @@
+package com.kickstarter.dropwizard.metrics.gauge;
+
+import com.codahale.metrics.Gauge;
+
+/**
+ * A {@link Gauge} of a primitive long, which the InfluxDB reporter reads without boxing.
+ *
+ * <pre>{@code
+ *   registry.register("queue.size", (LongGauge) queue::size);
+ * }</pre>
+ */
+@FunctionalInterface
+public interface LongGauge extends Gauge<Long> {
+  long getLongValue();
+
+  @Override
+  default Long getValue() {
+    return getLongValue();
+  }
+}
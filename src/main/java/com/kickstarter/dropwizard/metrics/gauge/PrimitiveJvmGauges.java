@@ -0,0 +1,143 @@
+package com.kickstarter.dropwizard.metrics.gauge;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@link LongGauge} and {@link DoubleGauge} versions of the common JVM gauge sets, named like their
+ * {@code metrics-jvm} counterparts so that existing dashboards keep working.
+ *
+ * <pre>{@code
+ *   // replace the boxed JVM gauges Dropwizard registers at startup
+ *   PrimitiveJvmGauges.registerAll(environment.metrics());
+ * }</pre>
+ */
+public final class PrimitiveJvmGauges {
+  private PrimitiveJvmGauges() {}
+
+  /**
+   * Replaces the {@code jvm.memory}, {@code jvm.threads}, {@code jvm.gc} and {@code jvm.classloader}
+   * gauges registered by Dropwizard with primitive gauges of the same names. Gauges without a primitive
+   * version, such as per-state thread counts, are kept.
+   */
+  public static void registerAll(final MetricRegistry registry) {
+    register(registry, "jvm.memory", memory());
+    register(registry, "jvm.threads", threads());
+    register(registry, "jvm.gc", garbageCollectors());
+    register(registry, "jvm.classloader", classLoading());
+  }
+
+  /**
+   * Heap, non-heap, total and per-pool memory usage, like {@code MemoryUsageGaugeSet}.
+   */
+  public static MetricSet memory() {
+    final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    final Map<String, Metric> gauges = new HashMap<>();
+
+    putUsage(gauges, "heap.", memory::getHeapMemoryUsage);
+    putUsage(gauges, "non-heap.", memory::getNonHeapMemoryUsage);
+    putTotal(gauges, "init", memory, MemoryUsage::getInit);
+    putTotal(gauges, "used", memory, MemoryUsage::getUsed);
+    putTotal(gauges, "max", memory, MemoryUsage::getMax);
+    putTotal(gauges, "committed", memory, MemoryUsage::getCommitted);
+
+    for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      putUsage(gauges, "pools." + pool.getName().replaceAll("\\s+", "-") + ".", pool::getUsage);
+    }
+
+    return unmodifiable(gauges);
+  }
+
+  /**
+   * Live, daemon, peak and deadlocked thread counts, like {@code ThreadStatesGaugeSet}.
+   * Per-state counts are omitted, since each requires a dump of every thread.
+   */
+  public static MetricSet threads() {
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    final Map<String, Metric> gauges = new HashMap<>();
+
+    gauges.put("count", (LongGauge) threads::getThreadCount);
+    gauges.put("daemon.count", (LongGauge) threads::getDaemonThreadCount);
+    gauges.put("peak.count", (LongGauge) threads::getPeakThreadCount);
+    gauges.put("deadlock.count", (LongGauge) () -> {
+      final long[] deadlocked = threads.findDeadlockedThreads();
+      return deadlocked == null ? 0 : deadlocked.length;
+    });
+
+    return unmodifiable(gauges);
+  }
+
+  /**
+   * Collection counts and times of each garbage collector, like {@code GarbageCollectorMetricSet}.
+   */
+  public static MetricSet garbageCollectors() {
+    final Map<String, Metric> gauges = new HashMap<>();
+    for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      final String name = gc.getName().replaceAll("\\s+", "-");
+      gauges.put(name + ".count", (LongGauge) gc::getCollectionCount);
+      gauges.put(name + ".time", (LongGauge) gc::getCollectionTime);
+    }
+    return unmodifiable(gauges);
+  }
+
+  /**
+   * Loaded and unloaded class counts, like {@code ClassLoadingGaugeSet}.
+   */
+  public static MetricSet classLoading() {
+    final ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+    final Map<String, Metric> gauges = new HashMap<>();
+    gauges.put("loaded", (LongGauge) classLoading::getTotalLoadedClassCount);
+    gauges.put("unloaded", (LongGauge) classLoading::getUnloadedClassCount);
+    return unmodifiable(gauges);
+  }
+
+  private static void register(final MetricRegistry registry, final String prefix, final MetricSet gauges) {
+    gauges.getMetrics().forEach((name, gauge) -> {
+      final String fullName = MetricRegistry.name(prefix, name);
+      registry.remove(fullName);
+      registry.register(fullName, gauge);
+    });
+  }
+
+  private static void putUsage(final Map<String, Metric> gauges,
+                               final String prefix,
+                               final Supplier<MemoryUsage> usage) {
+    gauges.put(prefix + "init", (LongGauge) () -> usage.get().getInit());
+    gauges.put(prefix + "used", (LongGauge) () -> usage.get().getUsed());
+    gauges.put(prefix + "max", (LongGauge) () -> usage.get().getMax());
+    gauges.put(prefix + "committed", (LongGauge) () -> usage.get().getCommitted());
+    gauges.put(prefix + "usage", (DoubleGauge) () -> {
+      final MemoryUsage u = usage.get();
+      final long max = u.getMax() == -1 ? u.getCommitted() : u.getMax();
+      return (double) u.getUsed() / max;
+    });
+  }
+
+  private static void putTotal(final Map<String, Metric> gauges,
+                               final String field,
+                               final MemoryMXBean memory,
+                               final ToLongFunction<MemoryUsage> value) {
+    gauges.put("total." + field, (LongGauge) () ->
+      value.applyAsLong(memory.getHeapMemoryUsage()) + value.applyAsLong(memory.getNonHeapMemoryUsage())
+    );
+  }
+
+  private static MetricSet unmodifiable(final Map<String, Metric> gauges) {
+    final Map<String, Metric> metrics = Collections.unmodifiableMap(gauges);
+    return () -> metrics;
+  }
+}
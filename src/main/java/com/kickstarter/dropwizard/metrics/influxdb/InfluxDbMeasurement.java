@@ -158,16 +158,24 @@ public abstract class InfluxDbMeasurement {
      *         null, String, primitive, or a Collection of Strings and primitives.
      */
     public <T> Builder putField(final String key, final T value) {
+      fieldValue(key, value).ifPresent(s -> fields.put(key, s));
+      return this;
+    }
+
+    /**
+     * Returns {@code value} formatted as a field value, or Optional.empty() if it is one of: null, NaN, +-Inf.
+     *
+     * @throws IllegalArgumentException if the value is not one of:
+     *         null, String, primitive, or a Collection of Strings and primitives.
+     */
+    public static <T> Optional<String> fieldValue(final String key, final T value) {
       if (value instanceof Collection<?>) {
-        final Collection collection = (Collection) value;
-        final String collString = validatedPrimitiveCollection(key, collection);
-        fields.put(key, collString);
+        return Optional.of(validatedPrimitiveCollection(key, (Collection) value));
       } else if (value != null) {
-        final Optional<String> fieldString = validatedPrimitiveField(key, value);
-        fieldString.ifPresent(s -> fields.put(key, s));
+        return validatedPrimitiveField(key, value);
       }
 
-      return this;
+      return Optional.empty();
     }
 
     /**
@@ -221,7 +229,7 @@ public abstract class InfluxDbMeasurement {
         }
       } else if (value instanceof Number) {
         // Serialize Byte, Short, Integer, and Long values as integers.
-        return Optional.of(String.format("%di", ((Number) value).longValue()));
+        return Optional.of(Long.toString(((Number) value).longValue()) + 'i');
       } else if (value instanceof String || value instanceof Character || value instanceof Boolean) {
         return Optional.of(value.toString());
       } else {
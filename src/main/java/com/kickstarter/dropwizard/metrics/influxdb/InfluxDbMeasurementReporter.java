@@ -4,17 +4,32 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
 import com.codahale.metrics.ScheduledReporter;
 import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.kickstarter.dropwizard.metrics.dirty.DirtyMetric;
+import com.kickstarter.dropwizard.metrics.dirty.DirtyTrackingMetricRegistry;
 import com.kickstarter.dropwizard.metrics.influxdb.io.Sender;
 import com.kickstarter.dropwizard.metrics.influxdb.transformer.DropwizardMeasurement;
 import com.kickstarter.dropwizard.metrics.influxdb.transformer.DropwizardTransformer;
+import io.dropwizard.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -23,11 +38,31 @@ import java.util.concurrent.TimeUnit;
  * <p>
  * <p>Supports global tags, tagged templating, counter/gauge grouping,
  * and per-metric tagging via {@link DropwizardMeasurement#toString}.
+ *
+ * <p>Metrics are {@link DropwizardTransformer#evict evicted} from the transformer's caches on a background
+ * thread once they are removed from the registry. If enabled, they are also
+ * {@link DropwizardTransformer#prepare prepared} as they are registered, so that reports rarely parse metric names.
+ *
+ * <p>If enabled, the reporter also keeps an index of the metrics its filter matches, updated as they
+ * are registered and removed, so that each report reads the index rather than filtering the whole
+ * registry into sorted maps.
+ *
+ * <p>If the registry is a {@link DirtyTrackingMetricRegistry}, only the {@link DirtyMetric dirty-tracked} metrics
+ * updated since the previous report are read and reported, along with every metric once per idle heartbeat,
+ * if any, so that the cost of a report follows the registry's activity rather than its size.
  */
 public class InfluxDbMeasurementReporter extends ScheduledReporter {
+  private static final Logger log = LoggerFactory.getLogger(InfluxDbMeasurementReporter.class);
+
   private final Clock clock;
   private final Sender sender;
   private final DropwizardTransformer transformer;
+  private final MetricRegistry registry;
+  private final Preparer preparer;
+  private final Optional<MetricIndex> index;
+  private final boolean skipIdleMetrics;
+  private final Optional<Duration> idleHeartbeat;
+  private long nextHeartbeat;
 
   public InfluxDbMeasurementReporter(final Sender sender,
                                      final MetricRegistry registry,
@@ -41,6 +76,12 @@ public class InfluxDbMeasurementReporter extends ScheduledReporter {
     this.clock = clock;
     this.sender = sender;
     this.transformer = transformer;
+    this.registry = registry;
+    this.preparer = new Preparer(this, transformer, filter, false);
+    this.index = Optional.empty();
+    this.skipIdleMetrics = registry instanceof DirtyTrackingMetricRegistry;
+    this.idleHeartbeat = Optional.empty();
+    registry.addListener(preparer);
   }
 
   public InfluxDbMeasurementReporter(final Sender sender,
@@ -50,10 +91,100 @@ public class InfluxDbMeasurementReporter extends ScheduledReporter {
                                      final TimeUnit durationUnit,
                                      final Clock clock,
                                      final DropwizardTransformer transformer) {
-    super(registry, "influxdb-measurement-reporter", filter, rateUnit, durationUnit);
-    this.clock = clock;
-    this.sender = sender;
-    this.transformer = transformer;
+    this(new Builder(sender, registry, filter, rateUnit, durationUnit, clock, transformer));
+  }
+
+  private InfluxDbMeasurementReporter(final Builder builder) {
+    super(builder.registry, "influxdb-measurement-reporter", builder.filter, builder.rateUnit, builder.durationUnit);
+    this.clock = builder.clock;
+    this.sender = builder.sender;
+    this.transformer = builder.transformer;
+    this.registry = builder.registry;
+    this.preparer = new Preparer(this, transformer, builder.filter, builder.prepareMetrics);
+    this.index = builder.indexMetrics ? Optional.of(new MetricIndex(builder.filter)) : Optional.empty();
+    this.skipIdleMetrics = registry instanceof DirtyTrackingMetricRegistry;
+    this.idleHeartbeat = builder.idleHeartbeat;
+    // the registry notifies the listeners of every metric already registered, in order,
+    // so a removed metric leaves the index before its eviction is queued.
+    this.index.ifPresent(registry::addListener);
+    registry.addListener(preparer);
+  }
+
+  /**
+   * Builds an {@link InfluxDbMeasurementReporter}, which by default neither prepares nor indexes metrics,
+   * and reports idle dirty-tracked metrics only once they are updated.
+   */
+  public static class Builder {
+    private final Sender sender;
+    private final MetricRegistry registry;
+    private final MetricFilter filter;
+    private final TimeUnit rateUnit;
+    private final TimeUnit durationUnit;
+    private final Clock clock;
+    private final DropwizardTransformer transformer;
+    private boolean prepareMetrics = false;
+    private boolean indexMetrics = false;
+    private Optional<Duration> idleHeartbeat = Optional.empty();
+
+    public Builder(final Sender sender,
+                   final MetricRegistry registry,
+                   final MetricFilter filter,
+                   final TimeUnit rateUnit,
+                   final TimeUnit durationUnit,
+                   final Clock clock,
+                   final DropwizardTransformer transformer) {
+      this.sender = sender;
+      this.registry = registry;
+      this.filter = filter;
+      this.rateUnit = rateUnit;
+      this.durationUnit = durationUnit;
+      this.clock = clock;
+      this.transformer = transformer;
+    }
+
+    /**
+     * Prepares metrics as they are registered.
+     */
+    public Builder prepareMetrics(final boolean prepareMetrics) {
+      this.prepareMetrics = prepareMetrics;
+      return this;
+    }
+
+    /**
+     * Indexes the metrics matching the filter as they are registered and removed.
+     */
+    public Builder indexMetrics(final boolean indexMetrics) {
+      this.indexMetrics = indexMetrics;
+      return this;
+    }
+
+    /**
+     * Reports every dirty-tracked metric once per {@code idleHeartbeat}, even if it was not updated.
+     */
+    public Builder idleHeartbeat(final Duration idleHeartbeat) {
+      this.idleHeartbeat = Optional.of(idleHeartbeat);
+      return this;
+    }
+
+    public InfluxDbMeasurementReporter build() {
+      return new InfluxDbMeasurementReporter(this);
+    }
+  }
+
+  /**
+   * Reports the indexed metrics if the reporter keeps an index, or else the registry's metrics matching the filter.
+   */
+  @Override
+  public void report() {
+    if (!index.isPresent()) {
+      super.report();
+      return;
+    }
+
+    final MetricIndex metrics = index.get();
+    synchronized (this) {
+      report(metrics.gauges, metrics.counters, metrics.histograms, metrics.meters, metrics.timers);
+    }
   }
 
   @Override
@@ -62,16 +193,220 @@ public class InfluxDbMeasurementReporter extends ScheduledReporter {
                      final SortedMap<String, Histogram> histograms,
                      final SortedMap<String, Meter> meters,
                      final SortedMap<String, Timer> timers) {
+    report((Map<String, Gauge>) gauges, counters, histograms, meters, timers);
+  }
+
+  private void report(final Map<String, Gauge> gauges,
+                      final Map<String, Counter> counters,
+                      final Map<String, Histogram> histograms,
+                      final Map<String, Meter> meters,
+                      final Map<String, Timer> timers) {
     final long timestamp = clock.instant().toEpochMilli();
+    final boolean heartbeat = skipIdleMetrics && isHeartbeat(timestamp);
 
     final ImmutableList<InfluxDbMeasurement> influxDbMeasurements = ImmutableList.<InfluxDbMeasurement>builder()
       .addAll(transformer.fromGauges(gauges, timestamp))
-      .addAll(transformer.fromCounters(counters, timestamp))
-      .addAll(transformer.fromHistograms(histograms, timestamp))
-      .addAll(transformer.fromMeters(meters, timestamp))
-      .addAll(transformer.fromTimers(timers, timestamp))
+      .addAll(transformer.fromCounters(updated(counters, heartbeat), timestamp))
+      .addAll(transformer.fromHistograms(updated(histograms, heartbeat), timestamp))
+      .addAll(transformer.fromMeters(updated(meters, heartbeat), timestamp))
+      .addAll(transformer.fromTimers(updated(timers, heartbeat), timestamp))
       .build();
 
     sender.send(influxDbMeasurements);
   }
+
+  /**
+   * Returns true if every metric is due to be reported at {@code timestamp}, scheduling the next heartbeat if so.
+   */
+  private boolean isHeartbeat(final long timestamp) {
+    if (!idleHeartbeat.isPresent() || timestamp < nextHeartbeat) {
+      return false;
+    }
+    nextHeartbeat = timestamp + idleHeartbeat.get().toMilliseconds();
+    return true;
+  }
+
+  /**
+   * Returns the {@code metrics} that are not dirty-tracked or were updated since the last report, marking them clean.
+   * On a heartbeat, every metric is returned, and the dirty-tracked ones are marked clean.
+   */
+  private <T extends Metric> Map<String, T> updated(final Map<String, T> metrics, final boolean heartbeat) {
+    if (!skipIdleMetrics) {
+      return metrics;
+    }
+
+    final Map<String, T> updated = new LinkedHashMap<>();
+    metrics.forEach((name, metric) -> {
+      final boolean dirty = !(metric instanceof DirtyMetric) || ((DirtyMetric) metric).markClean();
+      if (dirty || heartbeat) {
+        updated.put(name, metric);
+      }
+    });
+    return updated;
+  }
+
+  @Override
+  public void stop() {
+    registry.removeListener(preparer);
+    preparer.executor.shutdownNow();
+    index.ifPresent(registry::removeListener);
+    super.stop();
+    transformer.close();
+    try {
+      sender.close();
+    } catch (final IOException e) {
+      log.warn("failed to close metrics connection", e);
+    }
+  }
+
+  /**
+   * The registered metrics matching the filter, by type. The filter is evaluated once per metric,
+   * when it is registered.
+   */
+  private static class MetricIndex extends MetricRegistryListener.Base {
+    private final MetricFilter filter;
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Meter> meters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    MetricIndex(final MetricFilter filter) {
+      this.filter = filter;
+    }
+
+    private <T extends Metric> void added(final Map<String, T> metrics, final String name, final T metric) {
+      if (filter.matches(name, metric)) {
+        metrics.put(name, metric);
+      }
+    }
+
+    @Override public void onGaugeAdded(final String name, final Gauge<?> gauge) {
+      added(gauges, name, gauge);
+    }
+
+    @Override public void onGaugeRemoved(final String name) {
+      gauges.remove(name);
+    }
+
+    @Override public void onCounterAdded(final String name, final Counter counter) {
+      added(counters, name, counter);
+    }
+
+    @Override public void onCounterRemoved(final String name) {
+      counters.remove(name);
+    }
+
+    @Override public void onHistogramAdded(final String name, final Histogram histogram) {
+      added(histograms, name, histogram);
+    }
+
+    @Override public void onHistogramRemoved(final String name) {
+      histograms.remove(name);
+    }
+
+    @Override public void onMeterAdded(final String name, final Meter meter) {
+      added(meters, name, meter);
+    }
+
+    @Override public void onMeterRemoved(final String name) {
+      meters.remove(name);
+    }
+
+    @Override public void onTimerAdded(final String name, final Timer timer) {
+      added(timers, name, timer);
+    }
+
+    @Override public void onTimerRemoved(final String name) {
+      timers.remove(name);
+    }
+  }
+
+  /**
+   * Evicts removed metrics, and prepares registered ones if enabled, on a single background thread,
+   * so that a removal is never overtaken by the preparation of the metric it removes.
+   *
+   * <p>Evictions hold the reporter's lock, so that a report still reading a removed metric finishes
+   * before it is evicted, rather than caching its plan again afterwards.
+   */
+  private static class Preparer extends MetricRegistryListener.Base {
+    private final Object reporter;
+    private final DropwizardTransformer transformer;
+    private final MetricFilter filter;
+    private final boolean prepare;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+      .setNameFormat("influxdb-metric-preparer-%d")
+      .setDaemon(true)
+      .build());
+
+    Preparer(final Object reporter,
+             final DropwizardTransformer transformer,
+             final MetricFilter filter,
+             final boolean prepare) {
+      this.reporter = reporter;
+      this.transformer = transformer;
+      this.filter = filter;
+      this.prepare = prepare;
+    }
+
+    private void added(final String name, final Metric metric) {
+      if (prepare && filter.matches(name, metric)) {
+        executor.execute(() -> {
+          try {
+            transformer.prepare(name, metric);
+          } catch (final RuntimeException e) {
+            log.warn("Failed to prepare metric {}", name, e);
+          }
+        });
+      }
+    }
+
+    private void removed(final String name) {
+      executor.execute(() -> {
+        synchronized (reporter) {
+          transformer.evict(name);
+        }
+      });
+    }
+
+    @Override public void onGaugeAdded(final String name, final Gauge<?> gauge) {
+      added(name, gauge);
+    }
+
+    @Override public void onGaugeRemoved(final String name) {
+      removed(name);
+    }
+
+    @Override public void onCounterAdded(final String name, final Counter counter) {
+      added(name, counter);
+    }
+
+    @Override public void onCounterRemoved(final String name) {
+      removed(name);
+    }
+
+    @Override public void onHistogramAdded(final String name, final Histogram histogram) {
+      added(name, histogram);
+    }
+
+    @Override public void onHistogramRemoved(final String name) {
+      removed(name);
+    }
+
+    @Override public void onMeterAdded(final String name, final Meter meter) {
+      added(name, meter);
+    }
+
+    @Override public void onMeterRemoved(final String name) {
+      removed(name);
+    }
+
+    @Override public void onTimerAdded(final String name, final Timer timer) {
+      added(name, timer);
+    }
+
+    @Override public void onTimerRemoved(final String name) {
+      removed(name);
+    }
+  }
 }
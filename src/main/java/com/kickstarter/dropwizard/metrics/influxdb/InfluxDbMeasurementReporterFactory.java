@@ -1,22 +1,44 @@
 package com.kickstarter.dropwizard.metrics.influxdb;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.ScheduledReporter;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.MetricsUtils;
+import com.kickstarter.dropwizard.metrics.dirty.DirtyTrackingMetricRegistry;
 import com.kickstarter.dropwizard.metrics.influxdb.io.InfluxDbHttpWriter;
 import com.kickstarter.dropwizard.metrics.influxdb.io.InfluxDbWriter;
 import com.kickstarter.dropwizard.metrics.influxdb.io.Sender;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.CardinalityLimiter;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.DeltaTracker;
 import com.kickstarter.dropwizard.metrics.influxdb.transformer.DropwizardMeasurementParser;
 import com.kickstarter.dropwizard.metrics.influxdb.transformer.DropwizardTransformer;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.Escaping;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.FieldSelection;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.GaugeEvaluator;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.GlobTemplate;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.ParallelCollector;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.ParserDiagnostics;
 import com.kickstarter.dropwizard.metrics.influxdb.transformer.TaggedPattern;
 import io.dropwizard.metrics.BaseReporterFactory;
+import io.dropwizard.util.Duration;
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import java.time.Clock;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A factory for {@link InfluxDbMeasurementReporter} instances.
@@ -39,6 +61,41 @@ import java.util.Map;
  *       <td>tagged metric templates for converting names passed through MetricRegistry.</td>
  *     </tr>
  *     <tr>
+ *       <td>globTemplates</td>
+ *       <td>None</td>
+ *       <td>Graphite-style "[filter] template [tags]" templates, tried in order before metricTemplates.</td>
+ *     </tr>
+ *     <tr>
+ *       <td>parserCacheSize</td>
+ *       <td>100000</td>
+ *       <td>the maximum number of parsed metric names cached; the least recently used are evicted.</td>
+ *     </tr>
+ *     <tr>
+ *       <td>escaping</td>
+ *       <td>sanitize</td>
+ *       <td>whether special characters in names, tags and fields become dashes, or are escaped with backslashes.</td>
+ *     </tr>
+ *     <tr>
+ *       <td>prepareMetrics</td>
+ *       <td>true</td>
+ *       <td>whether metrics are parsed and planned in the background when registered, not when first reported.</td>
+ *     </tr>
+ *     <tr>
+ *       <td>indexMetrics</td>
+ *       <td>true</td>
+ *       <td>whether the metrics matching the filter are indexed when registered, not filtered on every report.</td>
+ *     </tr>
+ *     <tr>
+ *       <td>idleHeartbeat</td>
+ *       <td>None</td>
+ *       <td>how often metrics of a {@link DirtyTrackingMetricRegistry} are reported even if they were not updated.</td>
+ *     </tr>
+ *     <tr>
+ *       <td>fieldSelections</td>
+ *       <td>None</td>
+ *       <td>the fields reported for timers, histograms and meters, by measurement name pattern.</td>
+ *     </tr>
+ *     <tr>
  *         <td>groupGauges</td>
  *         <td><i>true</i></td>
  *         <td>A boolean to signal whether to group gauges when reporting.</td>
@@ -49,6 +106,56 @@ import java.util.Map;
  *         <td>A boolean to signal whether to group counters when reporting.</td>
  *     </tr>
  *     <tr>
+ *         <td>collectionParallelism</td>
+ *         <td><i>1</i></td>
+ *         <td>the number of threads that transform timers, histograms, meters and ungrouped counters/gauges.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>collectionChunkSize</td>
+ *         <td><i>1024</i></td>
+ *         <td>the number of metrics transformed per parallel task; smaller maps are transformed sequentially.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>deltaCounts</td>
+ *         <td><i>false</i></td>
+ *         <td>whether to also report the increment of counter, meter, timer and histogram counts since the last report.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>deltaRates</td>
+ *         <td><i>false</i></td>
+ *         <td>whether to also report each increment per rate unit; requires deltaCounts.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>gaugeParallelism</td>
+ *         <td><i>1</i></td>
+ *         <td>the number of threads that evaluate gauges; more than one evaluates them concurrently with a deadline.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>gaugeDeadline</td>
+ *         <td><i>1 second</i></td>
+ *         <td>how long the reporter waits for concurrently evaluated gauges.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>gaugeLastValueOnTimeout</td>
+ *         <td><i>true</i></td>
+ *         <td>whether a gauge that misses the deadline reports its last value, rather than nothing.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>maxSeriesPerMeasurement</td>
+ *         <td><i>None</i></td>
+ *         <td>the maximum number of distinct tag sets reported per measurement.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>maxSeries</td>
+ *         <td><i>None</i></td>
+ *         <td>the maximum number of distinct tag sets reported over all measurements.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>seriesOverflow</td>
+ *         <td><i>aggregate</i></td>
+ *         <td>whether series beyond the caps are aggregated into an overflow series, or dropped.</td>
+ *     </tr>
+ *     <tr>
  *       <td>sender</td>
  *       <td>http</td>
  *       <td>The type and configuration for reporting measurements to a receiver.</td>
@@ -71,6 +178,53 @@ public class InfluxDbMeasurementReporterFactory extends BaseReporterFactory {
     return metricTemplates;
   }
 
+  @NotNull
+  @JsonProperty
+  private List<GlobTemplate> globTemplates = new ArrayList<>();
+  @VisibleForTesting List<GlobTemplate> globTemplates() {
+    return globTemplates;
+  }
+
+  @Min(1)
+  @JsonProperty
+  private long parserCacheSize = DropwizardMeasurementParser.DEFAULT_CACHE_SIZE;
+  @VisibleForTesting long parserCacheSize() {
+    return parserCacheSize;
+  }
+
+  @NotNull
+  @JsonProperty
+  private Escaping escaping = Escaping.SANITIZE;
+  @VisibleForTesting Escaping escaping() {
+    return escaping;
+  }
+
+  @JsonProperty
+  private boolean prepareMetrics = true;
+  @VisibleForTesting boolean prepareMetrics() {
+    return prepareMetrics;
+  }
+
+  @JsonProperty
+  private boolean indexMetrics = true;
+  @VisibleForTesting boolean indexMetrics() {
+    return indexMetrics;
+  }
+
+  @JsonProperty
+  private Duration idleHeartbeat;
+  @VisibleForTesting Optional<Duration> idleHeartbeat() {
+    return Optional.ofNullable(idleHeartbeat);
+  }
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private List<FieldSelection> fieldSelections = new ArrayList<>();
+  @VisibleForTesting List<FieldSelection> fieldSelections() {
+    return fieldSelections;
+  }
+
   @NotNull
   @JsonProperty
   private boolean groupGauges = true;
@@ -85,6 +239,73 @@ public class InfluxDbMeasurementReporterFactory extends BaseReporterFactory {
     return groupCounters;
   }
 
+  @Min(1)
+  @JsonProperty
+  private int collectionParallelism = 1;
+  @VisibleForTesting int collectionParallelism() {
+    return collectionParallelism;
+  }
+
+  @Min(1)
+  @JsonProperty
+  private int collectionChunkSize = 1024;
+  @VisibleForTesting int collectionChunkSize() {
+    return collectionChunkSize;
+  }
+
+  @JsonProperty
+  private boolean deltaCounts = false;
+  @VisibleForTesting boolean deltaCounts() {
+    return deltaCounts;
+  }
+
+  @JsonProperty
+  private boolean deltaRates = false;
+  @VisibleForTesting boolean deltaRates() {
+    return deltaRates;
+  }
+
+  @Min(1)
+  @JsonProperty
+  private int gaugeParallelism = 1;
+  @VisibleForTesting int gaugeParallelism() {
+    return gaugeParallelism;
+  }
+
+  @NotNull
+  @JsonProperty
+  private Duration gaugeDeadline = Duration.seconds(1);
+  @VisibleForTesting Duration gaugeDeadline() {
+    return gaugeDeadline;
+  }
+
+  @JsonProperty
+  private boolean gaugeLastValueOnTimeout = true;
+  @VisibleForTesting boolean gaugeLastValueOnTimeout() {
+    return gaugeLastValueOnTimeout;
+  }
+
+  @Min(1)
+  @JsonProperty
+  private Integer maxSeriesPerMeasurement;
+  @VisibleForTesting Optional<Integer> maxSeriesPerMeasurement() {
+    return Optional.ofNullable(maxSeriesPerMeasurement);
+  }
+
+  @Min(1)
+  @JsonProperty
+  private Integer maxSeries;
+  @VisibleForTesting Optional<Integer> maxSeries() {
+    return Optional.ofNullable(maxSeries);
+  }
+
+  @NotNull
+  @JsonProperty
+  private CardinalityLimiter.Overflow seriesOverflow = CardinalityLimiter.Overflow.AGGREGATE;
+  @VisibleForTesting CardinalityLimiter.Overflow seriesOverflow() {
+    return seriesOverflow;
+  }
+
   @NotNull
   @JsonProperty
   private InfluxDbWriter.Factory sender = new InfluxDbHttpWriter.Factory();
@@ -95,23 +316,84 @@ public class InfluxDbMeasurementReporterFactory extends BaseReporterFactory {
   @Override
   public ScheduledReporter build(final MetricRegistry registry) {
     final Sender builtSender = new Sender(sender.build(registry));
-    final DropwizardTransformer transformer = new DropwizardTransformer(
+    final DropwizardMeasurementParser parser =
+      DropwizardMeasurementParser.withTemplates(globTemplates, metricTemplates, parserCacheSize, escaping);
+    registerParserGauges(registry, parser);
+    final Optional<DeltaTracker> deltas = deltaCounts
+      ? Optional.of(new DeltaTracker(deltaRates, getRateUnit()))
+      : Optional.empty();
+    final Optional<GaugeEvaluator> gaugeEvaluator = gaugeParallelism > 1
+      ? Optional.of(new GaugeEvaluator(
+          gaugeParallelism,
+          gaugeDeadline,
+          gaugeLastValueOnTimeout,
+          registry.counter("influxdb-reporter.slow-gauges")
+        ))
+      : Optional.empty();
+    final Optional<CardinalityLimiter> limiter = maxSeriesPerMeasurement != null || maxSeries != null
+      ? Optional.of(new CardinalityLimiter(
+          maxSeriesPerMeasurement().orElse(Integer.MAX_VALUE),
+          maxSeries().orElse(Integer.MAX_VALUE),
+          seriesOverflow,
+          registry
+        ))
+      : Optional.empty();
+
+    final DropwizardTransformer.Builder transformer = new DropwizardTransformer.Builder(
       globalTags,
-      DropwizardMeasurementParser.withTemplates(metricTemplates),
+      parser,
       groupCounters,
       groupGauges,
       getRateUnit(),
       getDurationUnit()
-    );
+    )
+      .collector(ParallelCollector.create(collectionParallelism, collectionChunkSize))
+      .fieldSelections(fieldSelections);
+    deltas.ifPresent(transformer::deltas);
+    gaugeEvaluator.ifPresent(transformer::gaugeEvaluator);
+    limiter.ifPresent(transformer::limiter);
 
-    return new InfluxDbMeasurementReporter(
+    final InfluxDbMeasurementReporter.Builder reporter = new InfluxDbMeasurementReporter.Builder(
       builtSender,
       registry,
       getFilter(),
       getRateUnit(),
       getDurationUnit(),
       Clock.systemUTC(),
-      transformer
-    );
+      transformer.build()
+    )
+      .prepareMetrics(prepareMetrics)
+      .indexMetrics(indexMetrics);
+    idleHeartbeat().ifPresent(reporter::idleHeartbeat);
+
+    return reporter.build();
+  }
+
+  /**
+   * Registers gauges of the parse cache's size, hits, misses and evictions,
+   * replacing those of any previously built reporter.
+   */
+  private static void registerParserGauges(final MetricRegistry registry, final DropwizardMeasurementParser parser) {
+    // gauges read in the same report share a diagnostics snapshot.
+    final Supplier<ParserDiagnostics> diagnostics =
+      Suppliers.memoizeWithExpiration(parser::diagnostics, 1, TimeUnit.SECONDS);
+
+    final Map<String, Gauge<Long>> gauges = new LinkedHashMap<>();
+    gauges.put("influxdb-reporter.parser-cache.size", parser::cacheSize);
+    gauges.put("influxdb-reporter.parser-cache.hits", () -> parser.cacheStats().hitCount());
+    gauges.put("influxdb-reporter.parser-cache.misses", () -> parser.cacheStats().missCount());
+    gauges.put("influxdb-reporter.parser-cache.evictions", () -> parser.cacheStats().evictionCount());
+    gauges.put("influxdb-reporter.parser.match-nanos", () -> diagnostics.get().matchNanos());
+    gauges.put("influxdb-reporter.parser.unmatched", () -> diagnostics.get().unmatched());
+    gauges.put("influxdb-reporter.parser.failures", () -> diagnostics.get().failures());
+    parser.diagnostics().templateHits().keySet().forEach(template -> gauges.put(
+      MetricsUtils.influxName("influxdb-reporter.parser-templates", "hits", ImmutableMap.of("template", template)),
+      () -> diagnostics.get().templateHits().get(template)
+    ));
+
+    gauges.forEach((name, gauge) -> {
+      registry.remove(name);
+      registry.register(name, gauge);
+    });
   }
 }
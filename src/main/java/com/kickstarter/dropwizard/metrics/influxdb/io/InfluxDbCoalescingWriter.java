@@ -0,0 +1,355 @@
+package com.kickstarter.dropwizard.metrics.influxdb.io;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import io.dropwizard.validation.MinSize;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.NotBlank;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An {@link InfluxDbWriter} that coalesces payloads from several callers into a single write.
+ *
+ * <p>The first payload of a batch opens a {@code linger} window; every payload written within the
+ * window is appended to the same batch, which is written to the underlying writer when the window
+ * closes or the batch reaches {@code maxBatchSize}. Callers block until their batch is written, and
+ * receive its exception if it fails, so that each {@link Sender} retries its own measurements.
+ *
+ * <p>The flusher thread is started by the first write after the writer is created or closed,
+ * and stopped when it is closed.
+ */
+public class InfluxDbCoalescingWriter implements InfluxDbWriter {
+  private final InfluxDbWriter writer;
+  private final long lingerMillis;
+  private final long maxBatchSize;
+
+  private final Object lock = new Object();
+  private ScheduledExecutorService flusher;
+  private Batch current;
+
+  public InfluxDbCoalescingWriter(final InfluxDbWriter writer, final Duration linger, final long maxBatchSize) {
+    this.writer = writer;
+    this.lingerMillis = linger.toMilliseconds();
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  @Override
+  public void writeBytes(final byte[] bytes) throws Exception {
+    final Batch batch;
+    final boolean full;
+    final ScheduledExecutorService flusher;
+
+    synchronized (lock) {
+      if (this.flusher == null) {
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("influxdb-coalescing-writer-%d")
+          .setDaemon(true)
+          .build());
+      }
+      flusher = this.flusher;
+
+      if (current == null) {
+        final Batch opened = new Batch();
+        flusher.schedule(() -> flush(opened), lingerMillis, TimeUnit.MILLISECONDS);
+        current = opened;
+      }
+
+      batch = current;
+      batch.bytes.write(bytes, 0, bytes.length);
+      full = batch.bytes.size() >= maxBatchSize;
+      if (full) {
+        current = null;
+      }
+    }
+
+    if (full) {
+      try {
+        flusher.execute(() -> flush(batch));
+      } catch (final RejectedExecutionException e) {
+        // closed since the batch was filled.
+        flush(batch);
+      }
+    }
+
+    try {
+      batch.written.get();
+    } catch (final ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+
+  /**
+   * Writes the open batch, closes the underlying writer's connection once in-flight batches are written,
+   * and stops the flusher thread.
+   */
+  @Override
+  public void close() throws IOException {
+    final ScheduledExecutorService flusher;
+    final Batch batch;
+    synchronized (lock) {
+      flusher = this.flusher;
+      batch = current;
+      this.flusher = null;
+      current = null;
+    }
+
+    if (flusher == null) {
+      writer.close();
+      return;
+    }
+
+    try {
+      flusher.submit(() -> {
+        if (batch != null) {
+          flush(batch);
+        }
+        writer.close();
+        return null;
+      }).get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (final ExecutionException e) {
+      throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+    } finally {
+      flusher.shutdownNow();
+    }
+  }
+
+  /**
+   * Writes {@code batch} to the underlying writer, if it has not already been written.
+   * Only called from the flusher thread, or by the writer of a full batch once the writer is closed.
+   */
+  private void flush(final Batch batch) {
+    synchronized (lock) {
+      if (current == batch) {
+        current = null;
+      }
+    }
+
+    if (!batch.flushed.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      writer.writeBytes(batch.bytes.toByteArray());
+      batch.written.complete(null);
+    } catch (final Exception e) {
+      batch.written.completeExceptionally(e);
+    }
+  }
+
+  private static class Batch {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final AtomicBoolean flushed = new AtomicBoolean();
+    private final CompletableFuture<Void> written = new CompletableFuture<>();
+  }
+
+  // ===================================================================================================================
+  // Builder
+
+  /**
+   * A factory for named {@link InfluxDbCoalescingWriter}s shared between reporters.
+   *
+   * <p>The first reporter to reference a name must configure its {@code writer};
+   * every later reporter that references the same name shares the same writer and batches.
+   * Later references must use the same {@code linger} and {@code maxBatchSize}, and may only configure
+   * a {@code writer} identical to the first. The shared writer is closed and forgotten once every
+   * reporter that references it is closed.
+   * <p/>
+   * <b>Configuration Parameters:</b>
+   * <table>
+   *     <tr>
+   *         <td>Name</td>
+   *         <td>Default</td>
+   *         <td>Description</td>
+   *     </tr>
+   *     <tr>
+   *         <td>name</td>
+   *         <td><i>none</i></td>
+   *         <td>the name of the shared writer.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>writer</td>
+   *         <td><i>none</i></td>
+   *         <td>the underlying writer; required where the shared writer is first defined.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>linger</td>
+   *         <td><i>100 milliseconds</i></td>
+   *         <td>how long a batch waits for more payloads before it is written.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>maxBatchSize</td>
+   *         <td><i>1 megabyte</i></td>
+   *         <td>the batch size at which a batch is written without waiting.</td>
+   *     </tr>
+   * </table>
+   */
+  public static class Factory implements InfluxDbWriter.Factory {
+    private static final Map<String, Shared> SHARED_WRITERS = new HashMap<>();
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    @NotBlank
+    @JsonProperty
+    private String name;
+    public String name() {
+      return name;
+    }
+
+    @Valid
+    @JsonProperty
+    private InfluxDbWriter.Factory writer;
+    public InfluxDbWriter.Factory writer() {
+      return writer;
+    }
+
+    @NotNull
+    @JsonProperty
+    private Duration linger = Duration.milliseconds(100);
+    public Duration linger() {
+      return linger;
+    }
+
+    @NotNull
+    @MinSize(1)
+    @JsonProperty
+    private Size maxBatchSize = Size.megabytes(1);
+    public Size maxBatchSize() {
+      return maxBatchSize;
+    }
+
+    @Override public InfluxDbWriter build(final MetricRegistry metrics) {
+      synchronized (SHARED_WRITERS) {
+        final Shared existing = SHARED_WRITERS.get(name);
+        if (existing == null) {
+          if (writer == null) {
+            throw new IllegalStateException(
+              String.format("shared writer '%s' must configure a writer where it is first referenced", name)
+            );
+          }
+          return new Reference(new Definition(this, metrics));
+        }
+
+        if (!existing.definition.matches(this)) {
+          throw new IllegalStateException(
+            String.format("shared writer '%s' is already defined with a different configuration", name)
+          );
+        }
+        return new Reference(existing.definition);
+      }
+    }
+
+    /**
+     * The configuration of a shared writer where it is first referenced, from which it is rebuilt if
+     * every reference was closed.
+     */
+    private static class Definition {
+      private final String name;
+      private final InfluxDbWriter.Factory writer;
+      private final Duration linger;
+      private final Size maxBatchSize;
+      private final MetricRegistry metrics;
+
+      Definition(final Factory factory, final MetricRegistry metrics) {
+        this.name = factory.name;
+        this.writer = factory.writer;
+        this.linger = factory.linger;
+        this.maxBatchSize = factory.maxBatchSize;
+        this.metrics = metrics;
+      }
+
+      boolean matches(final Factory factory) {
+        return linger.equals(factory.linger)
+          && maxBatchSize.equals(factory.maxBatchSize)
+          && (factory.writer == null || MAPPER.valueToTree(writer).equals(MAPPER.valueToTree(factory.writer)));
+      }
+    }
+
+    /**
+     * A shared writer and the number of open references to it.
+     */
+    private static class Shared {
+      private final Definition definition;
+      private final InfluxDbCoalescingWriter writer;
+      private int references;
+
+      Shared(final Definition definition) {
+        this.definition = definition;
+        this.writer = new InfluxDbCoalescingWriter(
+          definition.writer.build(definition.metrics),
+          definition.linger,
+          definition.maxBatchSize.toBytes()
+        );
+      }
+    }
+
+    /**
+     * One reporter's reference to a shared writer. Closing the reference resets the shared writer's
+     * connection and releases it, closing the shared writer with the last reference;
+     * the next write acquires it again.
+     */
+    @VisibleForTesting static class Reference implements InfluxDbWriter {
+      private final Definition definition;
+      private Shared shared;
+
+      Reference(final Definition definition) {
+        this.definition = definition;
+        acquire();
+      }
+
+      @Override
+      public void writeBytes(final byte[] bytes) throws Exception {
+        acquire().writer.writeBytes(bytes);
+      }
+
+      @Override
+      public void close() throws IOException {
+        final Shared released;
+        synchronized (SHARED_WRITERS) {
+          released = shared;
+          shared = null;
+          if (released == null) {
+            return;
+          }
+          if (--released.references == 0) {
+            SHARED_WRITERS.remove(definition.name, released);
+          }
+        }
+        released.writer.close();
+      }
+
+      private Shared acquire() {
+        synchronized (SHARED_WRITERS) {
+          if (shared == null) {
+            shared = SHARED_WRITERS.computeIfAbsent(definition.name, __ -> new Shared(definition));
+            shared.references++;
+          }
+          return shared;
+        }
+      }
+
+      @VisibleForTesting InfluxDbCoalescingWriter shared() {
+        return acquire().writer;
+      }
+    }
+  }
+}
@@ -0,0 +1,326 @@
+package com.kickstarter.dropwizard.metrics.influxdb.io;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import io.dropwizard.validation.MaxSize;
+import io.dropwizard.validation.MinSize;
+import javax.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.NotBlank;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link InfluxDbWriter} that appends InfluxDB lines to a memory-mapped, pre-allocated file,
+ * for shipping by a log tailer (e.g. Telegraf's {@code tail} input or Filebeat).
+ *
+ * <p>The active file is rotated to {@code <file>.<epoch-millis>} when it is full or older than the
+ * rotation interval. Rotated files are truncated to their written length; the active file is
+ * pre-allocated, so readers of the active file should stop at the first NUL byte.
+ *
+ * <p>Payloads are only split across files on line boundaries, unless a single line is larger than
+ * the maximum file size.
+ *
+ * <p>Written lines are synced to disk by a background thread once per sync interval, or after every
+ * write if the interval is zero. Closed and rotated files are unmapped immediately, rather than when
+ * their buffers are garbage collected.
+ */
+public class InfluxDbFileWriter implements InfluxDbWriter {
+  private static final Logger log = LoggerFactory.getLogger(InfluxDbFileWriter.class);
+  private static final byte LINE_SEPARATOR = '\n';
+
+  private final Path file;
+  private final int maxFileSize;
+  private final long rotationIntervalMillis;
+  private final long syncIntervalMillis;
+  private final Clock clock;
+
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private long openedAt;
+  private boolean unsynced;
+  private ScheduledExecutorService syncer;
+
+  public InfluxDbFileWriter(final Path file,
+                            final int maxFileSize,
+                            final Duration rotationInterval,
+                            final Duration syncInterval,
+                            final Clock clock) {
+    this.file = file;
+    this.maxFileSize = maxFileSize;
+    this.rotationIntervalMillis = rotationInterval.toMilliseconds();
+    this.syncIntervalMillis = syncInterval.toMilliseconds();
+    this.clock = clock;
+  }
+
+  @Override
+  public synchronized void writeBytes(final byte[] bytes) throws IOException {
+    if (buffer != null && clock.millis() - openedAt >= rotationIntervalMillis) {
+      rotate();
+    }
+
+    int offset = 0;
+    while (offset < bytes.length) {
+      if (buffer == null) {
+        open();
+      }
+
+      final int remaining = bytes.length - offset;
+      if (remaining <= buffer.remaining()) {
+        buffer.put(bytes, offset, remaining);
+        offset += remaining;
+      } else {
+        // Fill the current file up to the last complete line that fits, then rotate.
+        // A line longer than an empty file is split across files.
+        int chunk = lastLineLength(bytes, offset, buffer.remaining());
+        if (chunk == 0 && buffer.position() == 0) {
+          chunk = buffer.remaining();
+        }
+        buffer.put(bytes, offset, chunk);
+        offset += chunk;
+        rotate();
+      }
+    }
+
+    unsynced = true;
+    if (syncIntervalMillis == 0) {
+      sync();
+    }
+  }
+
+  /**
+   * Truncates the active file to its written length and closes it, and stops syncing.
+   * The file is rotated when the writer is next used.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (syncer != null) {
+      syncer.shutdownNow();
+      syncer = null;
+    }
+    closeFile();
+  }
+
+  /**
+   * Forces lines written since the last sync to disk.
+   */
+  private synchronized void sync() {
+    if (buffer != null && unsynced) {
+      buffer.force();
+      unsynced = false;
+    }
+  }
+
+  /**
+   * Unmaps the active file, truncates it to its written length and closes it.
+   */
+  private void closeFile() throws IOException {
+    if (channel != null) {
+      buffer.force();
+      final long written = buffer.position();
+      unmap(buffer);
+      buffer = null;
+      unsynced = false;
+      channel.truncate(written);
+      channel.close();
+      channel = null;
+    }
+  }
+
+  /**
+   * Returns the length of the longest run of complete lines in {@code bytes[offset, offset + limit)},
+   * or zero if the first line does not fit.
+   */
+  private static int lastLineLength(final byte[] bytes, final int offset, final int limit) {
+    for (int i = offset + limit - 1; i >= offset; i--) {
+      if (bytes[i] == LINE_SEPARATOR) {
+        return i - offset + 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Opens and maps a fresh active file, rotating away any file left behind by a previous writer.
+   */
+  private void open() throws IOException {
+    if (Files.exists(file)) {
+      recover();
+    }
+
+    // mapping past the end of the file pre-allocates it.
+    channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, maxFileSize);
+    openedAt = clock.millis();
+
+    if (syncer == null && syncIntervalMillis > 0) {
+      syncer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("influxdb-file-sync-%d")
+        .setDaemon(true)
+        .build());
+      syncer.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Truncates an existing active file at its first trailing NUL byte and rotates it.
+   */
+  private void recover() throws IOException {
+    try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      final long size = existing.size();
+      if (size > 0) {
+        final MappedByteBuffer mapped = existing.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        int end = (int) size;
+        while (end > 0 && mapped.get(end - 1) == 0) {
+          end--;
+        }
+        unmap(mapped);
+        existing.truncate(end);
+      }
+    }
+
+    moveToRotated();
+  }
+
+  /**
+   * Closes the active file and moves it to a timestamped name.
+   */
+  private void rotate() throws IOException {
+    closeFile();
+    moveToRotated();
+  }
+
+  private void moveToRotated() throws IOException {
+    Path target = rotatedPath(clock.millis());
+    for (int i = 1; Files.exists(target); i++) {
+      target = Paths.get(target.toString() + "-" + i);
+    }
+    Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Releases {@code mapped}'s mapping, which must not be used afterwards. The JDK only exposes this through
+   * {@code Unsafe.invokeCleaner} since Java 9, and the buffer's cleaner before; if neither is accessible,
+   * the mapping is released when the buffer is garbage collected.
+   */
+  private static void unmap(final MappedByteBuffer mapped) {
+    try {
+      try {
+        final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        invokeCleaner.invoke(theUnsafe.get(null), mapped);
+      } catch (final NoSuchMethodException e) {
+        final Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        final Object cleaner = cleanerMethod.invoke(mapped);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      }
+    } catch (final ReflectiveOperationException | RuntimeException e) {
+      log.debug("Could not unmap file buffer; it will be released when garbage collected", e);
+    }
+  }
+
+  @VisibleForTesting Path rotatedPath(final long timestamp) {
+    return file.resolveSibling(file.getFileName() + "." + timestamp);
+  }
+
+  // ===================================================================================================================
+  // Builder
+
+  /**
+   * A factory for {@link InfluxDbFileWriter}.
+   * <p/>
+   * <b>Configuration Parameters:</b>
+   * <table>
+   *     <tr>
+   *         <td>Name</td>
+   *         <td>Default</td>
+   *         <td>Description</td>
+   *     </tr>
+   *     <tr>
+   *         <td>file</td>
+   *         <td><i>none</i></td>
+   *         <td>the path of the active file.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>maxFileSize</td>
+   *         <td><i>64 megabytes</i></td>
+   *         <td>the pre-allocated file size; files are rotated when full.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>rotationInterval</td>
+   *         <td><i>1 hour</i></td>
+   *         <td>the maximum age of the active file.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>syncInterval</td>
+   *         <td><i>1 second</i></td>
+   *         <td>how often written lines are synced to disk; zero syncs after every write.</td>
+   *     </tr>
+   * </table>
+   */
+  public static class Factory implements InfluxDbWriter.Factory {
+    @NotBlank
+    @JsonProperty
+    private String file;
+    public String file() {
+      return file;
+    }
+
+    @NotNull
+    @MinSize(1)
+    @MaxSize(Integer.MAX_VALUE)
+    @JsonProperty
+    private Size maxFileSize = Size.megabytes(64);
+    public Size maxFileSize() {
+      return maxFileSize;
+    }
+
+    @NotNull
+    @JsonProperty
+    private Duration rotationInterval = Duration.hours(1);
+    public Duration rotationInterval() {
+      return rotationInterval;
+    }
+
+    @NotNull
+    @JsonProperty
+    private Duration syncInterval = Duration.seconds(1);
+    public Duration syncInterval() {
+      return syncInterval;
+    }
+
+    @Override public InfluxDbWriter build(final MetricRegistry __) {
+      return new InfluxDbFileWriter(
+        Paths.get(file),
+        (int) maxFileSize.toBytes(),
+        rotationInterval,
+        syncInterval,
+        Clock.systemUTC()
+      );
+    }
+  }
+}
@@ -0,0 +1,387 @@
+package com.kickstarter.dropwizard.metrics.influxdb.io;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import io.dropwizard.validation.MinSize;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.NotBlank;
+import org.hibernate.validator.constraints.Range;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * An {@link InfluxDbWriter} that writes to a pool of TCP connections in parallel.
+ *
+ * <p>Each payload is split on line boundaries into at most one chunk per healthy connection,
+ * and each chunk is written to the least-loaded connection. Connections that fail a write are
+ * marked unhealthy and reconnected in the background, or by the next write if none is left healthy.
+ * The writer and reconnector threads are started by the first write after the writer is created or closed,
+ * and stopped when it is closed.
+ *
+ * <p>If any chunk fails, the whole write fails so that the payload is retried;
+ * retried lines that were already written are identical points, which InfluxDB overwrites.
+ */
+public class InfluxDbPooledTcpWriter implements InfluxDbWriter {
+  private static final Logger log = LoggerFactory.getLogger(InfluxDbPooledTcpWriter.class);
+  private static final byte LINE_SEPARATOR = '\n';
+
+  private final ImmutableList<Connection> connections;
+  private final int minChunkSize;
+  private final long reconnectIntervalMillis;
+
+  private ExecutorService writers;
+  private ScheduledExecutorService reconnector;
+
+  public InfluxDbPooledTcpWriter(final List<InfluxDbTcpWriter> connections,
+                                 final int minChunkSize,
+                                 final Duration reconnectInterval) {
+    this.connections = ImmutableList.copyOf(connections.stream().map(Connection::new).collect(toList()));
+    this.minChunkSize = minChunkSize;
+    this.reconnectIntervalMillis = reconnectInterval.toMilliseconds();
+  }
+
+  @Override
+  public void writeBytes(final byte[] bytes) throws Exception {
+    final ExecutorService writers = writers();
+    List<Connection> healthy = healthy();
+
+    if (healthy.isEmpty()) {
+      // the background reconnector may not have run yet, e.g. right after a failed write closed the pool.
+      reconnectUnhealthy();
+      healthy = healthy();
+    }
+
+    if (healthy.isEmpty()) {
+      throw new IOException("no healthy InfluxDB TCP connections");
+    }
+
+    final int maxChunks = Math.max(1, Math.min(healthy.size(), bytes.length / minChunkSize));
+    final List<int[]> chunks = split(bytes, maxChunks);
+
+    if (chunks.size() == 1) {
+      healthy.get(0).write(bytes, 0, bytes.length);
+      return;
+    }
+
+    final List<Future<?>> writes = new ArrayList<>(chunks.size());
+    for (int i = 0; i < chunks.size(); i++) {
+      final Connection connection = healthy.get(i);
+      final int[] chunk = chunks.get(i);
+      writes.add(writers.submit(() -> {
+        connection.write(bytes, chunk[0], chunk[1]);
+        return null;
+      }));
+    }
+
+    Exception failure = null;
+    for (final Future<?> write : writes) {
+      try {
+        write.get();
+      } catch (final ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+      }
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Closes every pooled connection and stops the writer and reconnector threads;
+   * connections are reopened and threads restarted on the next write.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (writers != null) {
+        writers.shutdownNow();
+        reconnector.shutdownNow();
+        writers = null;
+        reconnector = null;
+      }
+    }
+    connections.forEach(Connection::close);
+  }
+
+  /**
+   * Returns the writer threads, starting them and the reconnector if the writer is new or was closed.
+   */
+  private synchronized ExecutorService writers() {
+    if (writers == null) {
+      writers = Executors.newFixedThreadPool(connections.size(), new ThreadFactoryBuilder()
+        .setNameFormat("influxdb-tcp-pool-writer-%d")
+        .setDaemon(true)
+        .build());
+      reconnector = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("influxdb-tcp-pool-reconnector-%d")
+        .setDaemon(true)
+        .build());
+      reconnector.scheduleWithFixedDelay(
+        this::reconnectUnhealthy,
+        reconnectIntervalMillis,
+        reconnectIntervalMillis,
+        TimeUnit.MILLISECONDS
+      );
+    }
+    return writers;
+  }
+
+  private List<Connection> healthy() {
+    return connections.stream()
+      .filter(Connection::isHealthy)
+      .sorted(Comparator.comparingLong(Connection::pendingBytes))
+      .collect(toList());
+  }
+
+  @VisibleForTesting long healthyConnections() {
+    return connections.stream().filter(Connection::isHealthy).count();
+  }
+
+  /**
+   * Splits {@code bytes} on line boundaries into at most {@code maxChunks} similarly-sized chunks.
+   * The last chunk takes every remaining byte, whether or not it ends with a line separator.
+   *
+   * @return a list of {@code [offset, length]} pairs.
+   */
+  @VisibleForTesting static List<int[]> split(final byte[] bytes, final int maxChunks) {
+    final List<int[]> chunks = new ArrayList<>(maxChunks);
+    final int targetSize = bytes.length / maxChunks;
+
+    int start = 0;
+    while (start < bytes.length) {
+      if (chunks.size() == maxChunks - 1) {
+        chunks.add(new int[] {start, bytes.length - start});
+        break;
+      }
+      final int target = Math.min(bytes.length, start + Math.max(targetSize, 1));
+
+      // cut the chunk after the last complete line before the target,
+      // or extend it to the end of its first line if there is none.
+      int end = target;
+      while (end > start && bytes[end - 1] != LINE_SEPARATOR) {
+        end--;
+      }
+      if (end == start) {
+        end = target;
+        while (end < bytes.length && bytes[end - 1] != LINE_SEPARATOR) {
+          end++;
+        }
+      }
+
+      chunks.add(new int[] {start, end - start});
+      start = end;
+    }
+
+    return chunks;
+  }
+
+  @VisibleForTesting void reconnectUnhealthy() {
+    for (final Connection connection : connections) {
+      if (!connection.isHealthy()) {
+        connection.reconnect();
+      }
+    }
+  }
+
+  /**
+   * A pooled connection with its health and in-flight byte count.
+   */
+  private static class Connection {
+    private final InfluxDbTcpWriter writer;
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile boolean healthy = true;
+
+    Connection(final InfluxDbTcpWriter writer) {
+      this.writer = writer;
+    }
+
+    boolean isHealthy() {
+      return healthy;
+    }
+
+    long pendingBytes() {
+      return pendingBytes.get();
+    }
+
+    void write(final byte[] bytes, final int offset, final int length) throws IOException {
+      pendingBytes.addAndGet(length);
+      try {
+        synchronized (this) {
+          writer.writeBytes(bytes, offset, length);
+        }
+      } catch (final IOException | RuntimeException e) {
+        healthy = false;
+        close();
+        throw e;
+      } finally {
+        pendingBytes.addAndGet(-length);
+      }
+    }
+
+    synchronized void reconnect() {
+      try {
+        writer.connect();
+        healthy = true;
+      } catch (final IOException e) {
+        log.debug("failed to reconnect to InfluxDB TCP input", e);
+        close();
+      }
+    }
+
+    synchronized void close() {
+      try {
+        writer.close();
+      } catch (final IOException e) {
+        log.warn("failed to close InfluxDB TCP connection", e);
+      }
+    }
+  }
+
+  // ===================================================================================================================
+  // Builder
+
+  /**
+   * A factory for {@link InfluxDbPooledTcpWriter}.
+   * <p/>
+   * <b>Configuration Parameters:</b>
+   * <table>
+   *     <tr>
+   *         <td>Name</td>
+   *         <td>Default</td>
+   *         <td>Description</td>
+   *     </tr>
+   *     <tr>
+   *         <td>host</td>
+   *         <td><i>localhost</i></td>
+   *         <td>the consumer hostname.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>port</td>
+   *         <td><i>8086</i></td>
+   *         <td>the consumer port.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>timeout</td>
+   *         <td><i>500 milliseconds</i></td>
+   *         <td>the socket timeout duration.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>connections</td>
+   *         <td><i>4</i></td>
+   *         <td>the number of pooled connections.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>resolveAll</td>
+   *         <td><i>false</i></td>
+   *         <td>whether to spread connections over every address the host resolves to.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>minChunkSize</td>
+   *         <td><i>64 kilobytes</i></td>
+   *         <td>the smallest payload chunk written to a single connection.</td>
+   *     </tr>
+   *     <tr>
+   *         <td>reconnectInterval</td>
+   *         <td><i>5 seconds</i></td>
+   *         <td>the delay between background reconnects of unhealthy connections.</td>
+   *     </tr>
+   * </table>
+   */
+  public static class Factory implements InfluxDbWriter.Factory {
+    @NotBlank
+    @JsonProperty
+    private String host = "localhost";
+    public String host() {
+      return host;
+    }
+
+    @Range(min = 0, max = 49151)
+    @JsonProperty
+    private int port = 8086;
+    public int port() {
+      return port;
+    }
+
+    @NotNull
+    @JsonProperty
+    private Duration timeout = Duration.milliseconds(500);
+    public Duration timeout() {
+      return timeout;
+    }
+
+    @Min(1)
+    @JsonProperty
+    private int connections = 4;
+    public int connections() {
+      return connections;
+    }
+
+    @JsonProperty
+    private boolean resolveAll = false;
+    public boolean resolveAll() {
+      return resolveAll;
+    }
+
+    @NotNull
+    @MinSize(1)
+    @JsonProperty
+    private Size minChunkSize = Size.kilobytes(64);
+    public Size minChunkSize() {
+      return minChunkSize;
+    }
+
+    @NotNull
+    @JsonProperty
+    private Duration reconnectInterval = Duration.seconds(5);
+    public Duration reconnectInterval() {
+      return reconnectInterval;
+    }
+
+    @Override public InfluxDbWriter build(final MetricRegistry __) {
+      final List<String> hosts = resolveAll ? resolve(host) : ImmutableList.of(host);
+      final List<InfluxDbTcpWriter> writers = new ArrayList<>(connections);
+      for (int i = 0; i < connections; i++) {
+        writers.add(new InfluxDbTcpWriter(hosts.get(i % hosts.size()), port, timeout));
+      }
+
+      return new InfluxDbPooledTcpWriter(writers, (int) minChunkSize.toBytes(), reconnectInterval);
+    }
+
+    private static List<String> resolve(final String host) {
+      try {
+        final List<String> addresses = new ArrayList<>();
+        for (final InetAddress address : InetAddress.getAllByName(host)) {
+          addresses.add(address.getHostAddress());
+        }
+        return addresses;
+      } catch (final UnknownHostException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+  }
+}
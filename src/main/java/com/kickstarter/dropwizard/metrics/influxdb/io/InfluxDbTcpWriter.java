@@ -28,14 +28,32 @@ public class InfluxDbTcpWriter implements InfluxDbWriter {
 
   @Override
   public void writeBytes(final byte[] bytes) throws IOException {
+    writeBytes(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Write {@code length} bytes from {@code offset} to the connection, opening it if necessary.
+   *
+   * @throws IOException if an error occurs while connecting or writing.
+   */
+  public void writeBytes(final byte[] bytes, final int offset, final int length) throws IOException {
+    connect();
+
+    final OutputStream outputStream = tcpSocket.getOutputStream();
+    outputStream.write(bytes, offset, length);
+    outputStream.flush();
+  }
+
+  /**
+   * Open the connection, if it is not already open.
+   *
+   * @throws IOException if an error occurs while connecting.
+   */
+  public void connect() throws IOException {
     if (tcpSocket == null) {
       tcpSocket = new Socket(host, port);
       tcpSocket.setSoTimeout((int) timeout.toMilliseconds());
     }
-
-    final OutputStream outputStream = tcpSocket.getOutputStream();
-    outputStream.write(bytes);
-    outputStream.flush();
   }
 
   @Override
@@ -26,7 +26,10 @@ public interface InfluxDbWriter {
   @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
   @JsonSubTypes({
     @JsonSubTypes.Type(value = InfluxDbHttpWriter.Factory.class, name = "http"),
-    @JsonSubTypes.Type(value = InfluxDbTcpWriter.Factory.class, name = "tcp")})
+    @JsonSubTypes.Type(value = InfluxDbTcpWriter.Factory.class, name = "tcp"),
+    @JsonSubTypes.Type(value = InfluxDbPooledTcpWriter.Factory.class, name = "tcp-pool"),
+    @JsonSubTypes.Type(value = InfluxDbFileWriter.Factory.class, name = "file"),
+    @JsonSubTypes.Type(value = InfluxDbCoalescingWriter.Factory.class, name = "shared")})
   interface Factory {
     InfluxDbWriter build(final MetricRegistry metrics);
   }
@@ -6,6 +6,7 @@ import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Collection;
 
@@ -78,4 +79,13 @@ public class Sender {
 
     return false;
   }
+
+  /**
+   * Closes the writer, releasing its connections and threads.
+   *
+   * @throws IOException if an I/O error occurs when closing the writer.
+   */
+  public void close() throws IOException {
+    writer.close();
+  }
 }
@@ -0,0 +1,19 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * The bucket upper bounds used to report timers and histograms as cumulative bucket counts.
+ * Bounds are in the reporter's duration unit for timers, and in recorded units for histograms.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+  @JsonSubTypes.Type(value = FixedBucketLayout.class, name = "fixed"),
+  @JsonSubTypes.Type(value = LogLinearBucketLayout.class, name = "log-linear")})
+public interface BucketLayout {
+  /**
+   * Returns the strictly ascending upper bounds of the finite buckets.
+   */
+  double[] bounds();
+}
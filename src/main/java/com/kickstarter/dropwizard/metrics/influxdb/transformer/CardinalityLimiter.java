@@ -0,0 +1,224 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Caps the number of distinct tag sets reported per measurement, and overall.
+ *
+ * <p>Each metric's series is admitted once, when its emit plan or group is built, and {@link #release released}
+ * when the metric is evicted; a series counts towards the caps while any metric admitted to it remains. Once
+ * a cap is reached, metrics of new series are either {@link Overflow#AGGREGATE aggregated} into one series
+ * per measurement whose tag values are all {@value #OVERFLOW_VALUE}, or {@link Overflow#DROP dropped}.
+ *
+ * <p>Measurements of the overflow series are {@link #aggregate merged} every report. Integer fields are summed,
+ * except {@code min} and {@code max}, which keep the least and greatest value, and the snapshot size
+ * {@code count} of timers and histograms, which is omitted. Other fields are omitted, and a
+ * {@value #SERIES_FIELD} field counts the merged measurements. Untagged series cannot be aggregated,
+ * and are always dropped.
+ *
+ * <p>Every metric that overflows increments the {@value #OVERFLOW_MEASUREMENT} counter tagged with
+ * its measurement, which is itself exempt from the caps.
+ */
+public class CardinalityLimiter {
+  private static final Logger log = LoggerFactory.getLogger(CardinalityLimiter.class);
+
+  static final String OVERFLOW_VALUE = "__overflow__";
+  static final String OVERFLOW_MEASUREMENT = "influxdb-reporter.overflow";
+  static final String SERIES_FIELD = "__series__";
+
+  /**
+   * What happens to metrics of series beyond the caps.
+   */
+  public enum Overflow {
+    AGGREGATE,
+    DROP
+  }
+
+  private final int maxSeriesPerMeasurement;
+  private final int maxSeries;
+  private final Overflow overflow;
+  private final MetricRegistry registry;
+
+  private final Map<String, GroupKey> admitted = new HashMap<>();
+  private final Map<GroupKey, Integer> references = new HashMap<>();
+  private final Map<String, Integer> seriesPerMeasurement = new HashMap<>();
+  private final Set<String> overflowedMeasurements = new HashSet<>();
+  private volatile boolean overflowed;
+
+  /**
+   * @param maxSeriesPerMeasurement the maximum number of tag sets per measurement.
+   * @param maxSeries               the maximum number of tag sets over all measurements.
+   * @param overflow                what happens to metrics of series beyond the caps.
+   * @param registry                the registry of the overflow counters.
+   */
+  public CardinalityLimiter(final int maxSeriesPerMeasurement,
+                            final int maxSeries,
+                            final Overflow overflow,
+                            final MetricRegistry registry) {
+    this.maxSeriesPerMeasurement = maxSeriesPerMeasurement;
+    this.maxSeries = maxSeries;
+    this.overflow = overflow;
+    this.registry = registry;
+  }
+
+  /**
+   * Admits {@code metricName} to the series of {@code measurement} tagged with {@code tags}, not including
+   * global tags.
+   *
+   * @return the tags to report the series with: {@code tags} if the series fits under the caps,
+   * the overflow tags if it is aggregated, or empty if it is dropped.
+   */
+  synchronized Optional<Map<String, String>> admit(final String metricName,
+                                                   final String measurement,
+                                                   final Map<String, String> tags) {
+    if (measurement.equals(OVERFLOW_MEASUREMENT)) {
+      return Optional.of(tags);
+    }
+
+    final GroupKey series = GroupKey.create(measurement, ImmutableMap.copyOf(tags));
+    final GroupKey previous = admitted.get(metricName);
+    if (series.equals(previous)) {
+      return Optional.of(tags);
+    } else if (previous != null) {
+      release(metricName);
+    }
+
+    if (references.containsKey(series)
+      || (seriesPerMeasurement.getOrDefault(measurement, 0) < maxSeriesPerMeasurement
+        && references.size() < maxSeries)) {
+      if (references.merge(series, 1, Integer::sum) == 1) {
+        seriesPerMeasurement.merge(measurement, 1, Integer::sum);
+      }
+      admitted.put(metricName, series);
+      return Optional.of(tags);
+    }
+
+    if (overflowedMeasurements.add(measurement)) {
+      log.warn(
+        "Measurement {} reached the series cap; its further series are {}",
+        measurement,
+        overflow == Overflow.DROP ? "dropped" : "aggregated"
+      );
+    }
+    overflowed = true;
+    registry.counter(DropwizardMeasurement.create(
+      OVERFLOW_MEASUREMENT, ImmutableMap.of("measurement", measurement), Optional.empty()
+    ).toString()).inc();
+
+    if (overflow == Overflow.DROP || tags.isEmpty()) {
+      return Optional.empty();
+    }
+
+    final Map<String, String> overflowTags = new HashMap<>(tags.size() * 2);
+    tags.keySet().forEach(key -> overflowTags.put(key, OVERFLOW_VALUE));
+    return Optional.of(overflowTags);
+  }
+
+  /**
+   * Releases the series {@code metricName} was admitted to, if any, freeing it for new series
+   * once no other metric shares it.
+   */
+  synchronized void release(final String metricName) {
+    final GroupKey key = admitted.remove(metricName);
+    if (key == null) {
+      return;
+    }
+
+    if (references.merge(key, -1, Integer::sum) == 0) {
+      references.remove(key);
+      seriesPerMeasurement.computeIfPresent(key.measurement(), (__, count) -> count == 1 ? null : count - 1);
+    }
+  }
+
+  /**
+   * Returns {@code measurements} without dropped (null) measurements, with the measurements of each
+   * overflow series merged into one.
+   */
+  List<InfluxDbMeasurement> aggregate(final List<InfluxDbMeasurement> measurements) {
+    if (!overflowed) {
+      return measurements;
+    }
+
+    final List<InfluxDbMeasurement> aggregated = new ArrayList<>(measurements.size());
+    final Map<GroupKey, Merged> merged = new LinkedHashMap<>();
+    for (final InfluxDbMeasurement measurement : measurements) {
+      if (measurement == null) {
+        continue;
+      }
+
+      if (measurement.tags().containsValue(OVERFLOW_VALUE)) {
+        merged
+          .computeIfAbsent(GroupKey.create(measurement.name(), measurement.tags()), __ -> new Merged(measurement))
+          .add(measurement);
+      } else {
+        aggregated.add(measurement);
+      }
+    }
+
+    merged.values().forEach(m -> aggregated.add(m.build()));
+    return aggregated;
+  }
+
+  /**
+   * The merged fields of an overflow series.
+   */
+  private static class Merged {
+    private final InfluxDbMeasurement first;
+    private final Map<String, Long> values = new LinkedHashMap<>();
+    private long count;
+
+    Merged(final InfluxDbMeasurement first) {
+      this.first = first;
+    }
+
+    void add(final InfluxDbMeasurement measurement) {
+      count++;
+      // timers and histograms report their snapshot's size as `count`, which is not summable.
+      final boolean hasSnapshot = measurement.fields().containsKey("run-count");
+      measurement.fields().forEach((field, value) -> {
+        if (!value.endsWith("i") || (hasSnapshot && field.equals("count"))) {
+          return;
+        }
+
+        final long parsed;
+        try {
+          parsed = Long.parseLong(value.substring(0, value.length() - 1));
+        } catch (final NumberFormatException e) {
+          // not an integer field.
+          return;
+        }
+
+        switch (field) {
+          case "min":
+            values.merge(field, parsed, Math::min);
+            break;
+          case "max":
+            values.merge(field, parsed, Math::max);
+            break;
+          default:
+            values.merge(field, parsed, Long::sum);
+        }
+      });
+    }
+
+    InfluxDbMeasurement build() {
+      final Map<String, String> fields = new HashMap<>(values.size() * 2 + 2);
+      values.forEach((field, value) -> fields.put(field, FieldExtractor.formatLong(value)));
+      fields.put(SERIES_FIELD, FieldExtractor.formatLong(count));
+      return InfluxDbMeasurement.create(first.name(), first.tags(), fields, first.timestamp());
+    }
+  }
+}
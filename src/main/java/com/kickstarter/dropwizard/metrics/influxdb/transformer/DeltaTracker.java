@@ -0,0 +1,184 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Clock;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the previous count of each series, to report per-interval increments of cumulative counts.
+ *
+ * <p>Series are identified by a 64-bit hash of their metric name. Previous counts are kept in
+ * striped open-addressing maps of primitive longs, so tracking hundreds of thousands of series
+ * allocates nothing per report and parallel collection rarely contends.
+ *
+ * <p>The first observation of a series reports its whole count, since the metric started counting
+ * from zero when the process started. A monotonic count that decreases was reset, e.g. by being
+ * re-registered, and also reports its whole count.
+ */
+public class DeltaTracker {
+  private static final HashFunction SERIES_HASH = Hashing.murmur3_128();
+  private static final int STRIPES = 16;
+
+  private final boolean rates;
+  private final long rateFactor;
+  private final Clock clock;
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  /**
+   * @param rates    whether to also report the increment per {@code rateUnit}.
+   * @param rateUnit the unit of reported rates.
+   */
+  public DeltaTracker(final boolean rates, final TimeUnit rateUnit) {
+    this(rates, rateUnit, Clock.defaultClock());
+  }
+
+  DeltaTracker(final boolean rates, final TimeUnit rateUnit, final Clock clock) {
+    this.rates = rates;
+    this.rateFactor = rateUnit.toSeconds(1);
+    this.clock = clock;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Returns the series id of {@code metricName}.
+   */
+  static long seriesId(final String metricName) {
+    final long id = SERIES_HASH.hashString(metricName, StandardCharsets.UTF_8).asLong();
+    // zero marks empty map slots.
+    return id == 0 ? 1 : id;
+  }
+
+  /**
+   * Records {@code count} for the series, and puts its increment since the previous observation
+   * into {@code fields} as {@code <field>-delta}, and its rate as {@code <field>-rate} if enabled.
+   *
+   * @param monotonic whether the count only increases, so that a decrease is a reset.
+   */
+  void emit(final long seriesId,
+            final long count,
+            final boolean monotonic,
+            final String field,
+            final Map<String, ? super String> fields) {
+    final long now = clock.getTick();
+    final Stripe stripe = stripes[(int) (seriesId >>> 60)];
+
+    final long delta;
+    final long elapsed;
+    synchronized (stripe) {
+      final int slot = stripe.slot(seriesId);
+      if (stripe.ids[slot] == 0) {
+        delta = count;
+        elapsed = 0;
+        stripe.insert(slot, seriesId, count, now);
+      } else {
+        final long previous = stripe.counts[slot];
+        delta = monotonic && count < previous ? count : count - previous;
+        elapsed = now - stripe.ticks[slot];
+        stripe.counts[slot] = count;
+        stripe.ticks[slot] = now;
+      }
+    }
+
+    fields.put(field + "-delta", FieldExtractor.formatLong(delta));
+    if (rates && elapsed > 0) {
+      final double perSecond = delta * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+      fields.put(field + "-rate", Double.toString(perSecond * rateFactor));
+    }
+  }
+
+  /**
+   * Forgets the previous count of the series, e.g. once its metric is removed.
+   */
+  void evict(final long seriesId) {
+    final Stripe stripe = stripes[(int) (seriesId >>> 60)];
+    synchronized (stripe) {
+      stripe.remove(seriesId);
+    }
+  }
+
+  /**
+   * An open-addressing map from series id to its previous count and observation tick.
+   */
+  private static class Stripe {
+    private long[] ids = new long[64];
+    private long[] counts = new long[64];
+    private long[] ticks = new long[64];
+    private int size;
+
+    /**
+     * Returns the slot holding {@code id}, or the empty slot where it belongs.
+     */
+    int slot(final long id) {
+      final int mask = ids.length - 1;
+      int slot = (int) id & mask;
+      while (ids[slot] != 0 && ids[slot] != id) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    void insert(final int slot, final long id, final long count, final long tick) {
+      ids[slot] = id;
+      counts[slot] = count;
+      ticks[slot] = tick;
+      if (++size * 2 > ids.length) {
+        grow();
+      }
+    }
+
+    /**
+     * Removes {@code id}, shifting back later entries of its probe sequence into the freed slot.
+     */
+    void remove(final long id) {
+      final int mask = ids.length - 1;
+      int free = slot(id);
+      if (ids[free] == 0) {
+        return;
+      }
+
+      int slot = free;
+      while (true) {
+        slot = (slot + 1) & mask;
+        if (ids[slot] == 0) {
+          break;
+        }
+
+        // an entry may move back to the freed slot unless its home slot lies cyclically in (free, slot].
+        final int home = (int) ids[slot] & mask;
+        if (free <= slot ? (home <= free || home > slot) : (home <= free && home > slot)) {
+          ids[free] = ids[slot];
+          counts[free] = counts[slot];
+          ticks[free] = ticks[slot];
+          free = slot;
+        }
+      }
+
+      ids[free] = 0;
+      size--;
+    }
+
+    private void grow() {
+      final long[] oldIds = ids;
+      final long[] oldCounts = counts;
+      final long[] oldTicks = ticks;
+      ids = new long[oldIds.length * 2];
+      counts = new long[oldIds.length * 2];
+      ticks = new long[oldIds.length * 2];
+
+      for (int i = 0; i < oldIds.length; i++) {
+        if (oldIds[i] != 0) {
+          final int slot = slot(oldIds[i]);
+          ids[slot] = oldIds[i];
+          counts[slot] = oldCounts[i];
+          ticks[slot] = oldTicks[i];
+        }
+      }
+    }
+  }
+}
@@ -6,12 +6,10 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.auto.value.AutoValue;
 
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
-import static java.util.stream.Collectors.toMap;
-
 /**
  * A Dropwizard measurement associated with a {@link MetricRegistry} component
  * (e.g. {@link Timer timers}, {@link Counter counters}, and {@link Gauge gauges}).
@@ -24,11 +22,9 @@ import static java.util.stream.Collectors.toMap;
 @AutoValue
 public abstract class DropwizardMeasurement {
   // Serializer constants.
-  private static final String FIELD_SEPARATOR = " ";
-  private static final String TAG_SEPARATOR = ",";
-  private static final String VALUE_SEPARATOR = "=";
-  private static final String ESCAPE_CHARS = " |,|=";
-  private static final String SANITIZER = "-";
+  private static final char FIELD_SEPARATOR = ' ';
+  private static final char TAG_SEPARATOR = ',';
+  private static final char VALUE_SEPARATOR = '=';
 
   // Fields
   abstract String name();
@@ -40,24 +36,30 @@ public abstract class DropwizardMeasurement {
   abstract Optional<String> field();
 
   /**
-   * Sanitizes InfluxDb escape characters.
+   * Creates a new {@link DropwizardMeasurement} with sanitized values.
    */
-  private static String sanitize(final String s) {
-    return s.replaceAll(ESCAPE_CHARS, SANITIZER);
+  public static DropwizardMeasurement create(final String name, final Map<String, String> tags, final Optional<String> field) {
+    return create(name, tags, field, Escaping.SANITIZE);
   }
 
   /**
-   * Creates a new {@link DropwizardMeasurement} with sanitized values.
+   * Creates a new {@link DropwizardMeasurement} with values escaped by {@code escaping}.
    */
-  public static DropwizardMeasurement create(final String name, final Map<String, String> tags, final Optional<String> field) {
-    final Map<String, String> sanitizedTags = tags.entrySet()
-      .stream()
-      .collect(toMap(
-        e -> DropwizardMeasurement.sanitize(e.getKey()),
-        e -> DropwizardMeasurement.sanitize(e.getValue())
-      ));
-
-    return new AutoValue_DropwizardMeasurement(sanitize(name), sanitizedTags, field.map(DropwizardMeasurement::sanitize));
+  public static DropwizardMeasurement create(final String name,
+                                             final Map<String, String> tags,
+                                             final Optional<String> field,
+                                             final Escaping escaping) {
+    final Map<String, String> escapedTags = new HashMap<>(tags.size() * 2);
+    tags.forEach((k, v) -> escapedTags.put(
+      escaping.escape(k, Escaping.KEY_SPECIALS),
+      escaping.escape(v, Escaping.KEY_SPECIALS)
+    ));
+
+    return new AutoValue_DropwizardMeasurement(
+      escaping.escape(name, Escaping.MEASUREMENT_SPECIALS),
+      escapedTags,
+      field.map(f -> escaping.escape(f, Escaping.KEY_SPECIALS))
+    );
   }
 
   /**
@@ -67,38 +69,91 @@ public abstract class DropwizardMeasurement {
    * }
    */
   public static DropwizardMeasurement fromLine(final String line) {
+    return fromLine(line, Escaping.SANITIZE);
+  }
+
+  /**
+   * Deserializes a measurement line string, in which separators escaped by {@code escaping} are
+   * part of the name, tag or field they appear in.
+   *
+   * @see #fromLine(String)
+   */
+  public static DropwizardMeasurement fromLine(final String line, final Escaping escaping) {
+    final boolean escapes = escaping.escapesSeparators();
+
+    // trailing separators are ignored, as by String#split.
+    final int lineEnd = trimEnd(line, FIELD_SEPARATOR, line.length(), escapes);
+
     // split measurement-name/tags and field name
-    final String[] initialParts = line.split(FIELD_SEPARATOR);
-    if (initialParts.length > 2) {
+    final int fieldStart = indexOf(line, FIELD_SEPARATOR, 0, escapes, lineEnd);
+    final Optional<String> field;
+    if (fieldStart < 0) {
+      field = Optional.empty();
+    } else if (indexOf(line, FIELD_SEPARATOR, fieldStart + 1, escapes, lineEnd) >= 0) {
       throw new IllegalArgumentException("too many spaces in measurement line");
+    } else {
+      field = Optional.of(line.substring(fieldStart + 1, lineEnd));
     }
 
-    // parse optional field
-    final Optional<String> field;
-    if (initialParts.length == 2) {
-      field = Optional.of(initialParts[1]);
-    } else {
-      field = Optional.empty();
+    // split measurement-name and tags, parsing tags as a key-val map
+    final int end = trimEnd(line, TAG_SEPARATOR, fieldStart < 0 ? lineEnd : fieldStart, escapes);
+    int tagStart = indexOf(line, TAG_SEPARATOR, 0, escapes, end);
+    final String name = line.substring(0, tagStart < 0 ? end : tagStart);
+    final Map<String, String> tags = new HashMap<>();
+    while (tagStart >= 0 && tagStart + 1 < end) {
+      final int tagEnd = indexOf(line, TAG_SEPARATOR, tagStart + 1, escapes, end);
+      final int valueStart = indexOf(line, VALUE_SEPARATOR, tagStart + 1, escapes, tagEnd < 0 ? end : tagEnd);
+      final int valueEnd = tagEnd < 0 ? end : tagEnd;
+      if (valueStart < 0
+        || valueStart + 1 == valueEnd
+        || indexOf(line, VALUE_SEPARATOR, valueStart + 1, escapes, valueEnd) >= 0) {
+        throw new IllegalArgumentException("tags must contain exactly one '=' character");
+      }
+
+      tags.put(line.substring(tagStart + 1, valueStart), line.substring(valueStart + 1, valueEnd));
+      tagStart = tagEnd;
     }
 
-    // split measurement-name and tags
-    final String[] parts = initialParts[0].split(TAG_SEPARATOR);
-    final String name = parts[0];
-
-    // parse tags as a key-val map
-    final Map<String, String> tags = Arrays.asList(parts)
-      .subList(1, parts.length)
-      .stream()
-      .map(s -> s.split(VALUE_SEPARATOR))
-      .filter(arr -> arr.length == 2)
-      .collect(toMap(arr -> arr[0], arr -> arr[1]));
-
-    // if the sizes aren't one-to-one, we filtered some tag parts out.
-    if (tags.size() != parts.length - 1) {
-      throw new IllegalArgumentException("tags must contain exactly one '=' character");
+    return DropwizardMeasurement.create(name, tags, field, escaping);
+  }
+
+  /**
+   * Returns the index of the first {@code separator} in {@code line[from, to)}, skipping characters escaped
+   * by a backslash if {@code escapes}, or -1 if there is none.
+   */
+  private static int indexOf(final String line,
+                             final char separator,
+                             final int from,
+                             final boolean escapes,
+                             final int to) {
+    for (int i = from; i < to; i++) {
+      final char c = line.charAt(i);
+      if (c == separator) {
+        return i;
+      } else if (escapes && c == '\\') {
+        i++;
+      }
     }
+    return -1;
+  }
 
-    return DropwizardMeasurement.create(name, tags, field);
+  /**
+   * Returns the end of {@code line[0, to)} without its trailing {@code separator}s, which are escaped
+   * if preceded by an odd number of backslashes and {@code escapes}.
+   */
+  private static int trimEnd(final String line, final char separator, final int to, final boolean escapes) {
+    int end = to;
+    while (end > 0 && line.charAt(end - 1) == separator) {
+      int backslashes = 0;
+      while (escapes && end - 2 - backslashes >= 0 && line.charAt(end - 2 - backslashes) == '\\') {
+        backslashes++;
+      }
+      if (backslashes % 2 == 1) {
+        break;
+      }
+      end--;
+    }
+    return end;
   }
 
   @Override
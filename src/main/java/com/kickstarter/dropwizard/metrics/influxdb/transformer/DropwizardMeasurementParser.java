@@ -1,11 +1,19 @@
 package com.kickstarter.dropwizard.metrics.influxdb.transformer;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.tagged.TaggedMetric;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A dropwizard measurement parser that holds metric templates for mapping between
@@ -13,9 +21,18 @@ import java.util.Optional;
  * given metric name, it will attempt to parse it as a {@link DropwizardMeasurement} line.
  *
  * This transformer caches mappings from metric names to {@link DropwizardMeasurement}
- * objects to avoid extraneous regex matching and string parsing.
+ * objects to avoid extraneous regex matching and string parsing. The cache is bounded, evicting
+ * the least recently used names, so that names of removed metrics do not accumulate. It is safe
+ * to use from multiple threads.
+ *
+ * <p>Names missing from the cache are instrumented: each template counts its matches, and the time spent
+ * matching, the names that match no template, and the names that fail to parse are recorded, as
+ * {@link #diagnostics() diagnostics}.
  */
 public class DropwizardMeasurementParser {
+  public static final long DEFAULT_CACHE_SIZE = 100_000;
+  private static final int SAMPLE_SIZE = 32;
+
   /**
    * Templates for provided Dropwizard metrics. I'm so sorry for these regexes.
    */
@@ -39,11 +56,47 @@ public class DropwizardMeasurementParser {
     .put("data_sources",    new TaggedPattern("io\\.dropwizard\\.db\\.ManagedPooledDataSource\\.(?<metric>.*)", "metric"))
     .build();
 
-  private final ImmutableMap<String, TaggedPattern> metricTemplates;
-  private final Map<String, DropwizardMeasurement> cache = new HashMap<>();
+  private final Escaping escaping;
+  private final ImmutableList<GlobTemplate> globTemplates;
+  private final TemplateMatcher metricTemplates;
+  private final Cache<String, DropwizardMeasurement> cache;
+
+  // diagnostics
+  private final LongAdder[] globHits;
+  private final LongAdder matchNanos = new LongAdder();
+  private final LongAdder unmatched = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final RecentSample unmatchedSample = new RecentSample(SAMPLE_SIZE);
+  private final RecentSample failureSample = new RecentSample(SAMPLE_SIZE);
 
   @VisibleForTesting DropwizardMeasurementParser(final ImmutableMap<String, TaggedPattern> metricTemplates) {
-    this.metricTemplates = metricTemplates;
+    this(metricTemplates, DEFAULT_CACHE_SIZE);
+  }
+
+  @VisibleForTesting DropwizardMeasurementParser(final ImmutableMap<String, TaggedPattern> metricTemplates,
+                                                 final long cacheSize) {
+    this(metricTemplates, cacheSize, Escaping.SANITIZE);
+  }
+
+  @VisibleForTesting DropwizardMeasurementParser(final ImmutableMap<String, TaggedPattern> metricTemplates,
+                                                 final long cacheSize,
+                                                 final Escaping escaping) {
+    this(ImmutableList.of(), metricTemplates, cacheSize, escaping);
+  }
+
+  @VisibleForTesting DropwizardMeasurementParser(final List<GlobTemplate> globTemplates,
+                                                 final ImmutableMap<String, TaggedPattern> metricTemplates,
+                                                 final long cacheSize,
+                                                 final Escaping escaping) {
+    this.escaping = escaping;
+    this.globTemplates = ImmutableList.copyOf(globTemplates);
+    this.globHits = new LongAdder[globTemplates.size()];
+    Arrays.setAll(globHits, __ -> new LongAdder());
+    this.metricTemplates = new TemplateMatcher(metricTemplates, escaping);
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(cacheSize)
+      .recordStats()
+      .build();
   }
 
   /**
@@ -51,44 +104,168 @@ public class DropwizardMeasurementParser {
    * and the user-provided {@code metricTemplates}.
    */
   public static DropwizardMeasurementParser withTemplates(final Map<String, TaggedPattern> metricTemplates) {
-    return new DropwizardMeasurementParser(
-      new ImmutableMap.Builder<String, TaggedPattern>()
-        .putAll(metricTemplates)
-        .putAll(DROPWIZARD_METRIC_MAPPINGS)
-        .build()
+    return withTemplates(metricTemplates, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Returns a new {@link DropwizardMeasurementParser} with default {@link #DROPWIZARD_METRIC_MAPPINGS}
+   * and the user-provided {@code metricTemplates}, caching at most {@code cacheSize} parsed names.
+   */
+  public static DropwizardMeasurementParser withTemplates(final Map<String, TaggedPattern> metricTemplates,
+                                                          final long cacheSize) {
+    return withTemplates(metricTemplates, cacheSize, Escaping.SANITIZE);
+  }
+
+  /**
+   * Returns a new {@link DropwizardMeasurementParser} with default {@link #DROPWIZARD_METRIC_MAPPINGS}
+   * and the user-provided {@code metricTemplates}, caching at most {@code cacheSize} parsed names
+   * and escaping measurements with {@code escaping}.
+   */
+  public static DropwizardMeasurementParser withTemplates(final Map<String, TaggedPattern> metricTemplates,
+                                                          final long cacheSize,
+                                                          final Escaping escaping) {
+    return new DropwizardMeasurementParser(templates(metricTemplates), cacheSize, escaping);
+  }
+
+  /**
+   * Returns a new {@link DropwizardMeasurementParser} with the user-provided {@code globTemplates}, which are
+   * tried first, then the user-provided {@code metricTemplates} and default {@link #DROPWIZARD_METRIC_MAPPINGS},
+   * caching at most {@code cacheSize} parsed names and escaping measurements with {@code escaping}.
+   */
+  public static DropwizardMeasurementParser withTemplates(final List<GlobTemplate> globTemplates,
+                                                          final Map<String, TaggedPattern> metricTemplates,
+                                                          final long cacheSize,
+                                                          final Escaping escaping) {
+    return new DropwizardMeasurementParser(globTemplates, templates(metricTemplates), cacheSize, escaping);
+  }
+
+  /**
+   * Returns the user-provided {@code metricTemplates}, followed by the default
+   * {@link #DROPWIZARD_METRIC_MAPPINGS}.
+   */
+  @VisibleForTesting
+  static ImmutableMap<String, TaggedPattern> templates(final Map<String, TaggedPattern> metricTemplates) {
+    return new ImmutableMap.Builder<String, TaggedPattern>()
+      .putAll(metricTemplates)
+      .putAll(DROPWIZARD_METRIC_MAPPINGS)
+      .build();
+  }
+
+  /**
+   * Returns the hit, miss and eviction counts of the parse cache.
+   */
+  public CacheStats cacheStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns the approximate number of cached names.
+   */
+  public long cacheSize() {
+    return cache.size();
+  }
+
+  /**
+   * Returns a snapshot of the parser's template hits, match time, and unmatched and failed names.
+   */
+  public ParserDiagnostics diagnostics() {
+    final Map<String, Long> hits = new LinkedHashMap<>();
+    for (int i = 0; i < globTemplates.size(); i++) {
+      hits.merge(globTemplates.get(i).toString(), globHits[i].sum(), Long::sum);
+    }
+    metricTemplates.hits().forEach((template, count) -> hits.merge(template, count, Long::sum));
+
+    return ParserDiagnostics.create(
+      ImmutableMap.copyOf(hits),
+      matchNanos.sum(),
+      unmatched.sum(),
+      failures.sum(),
+      unmatchedSample.snapshot(),
+      failureSample.snapshot()
     );
   }
 
+  /**
+   * Evicts the parsed {@code metricName} from the cache.
+   */
+  /*package*/ void evict(final String metricName) {
+    cache.invalidate(metricName);
+  }
+
   /**
    * Returns a {@link DropwizardMeasurement} from a matched template, or parses it as a measurement line.
    *
    * @throws IllegalArgumentException if the measurement does not match a template and is not in the
    * measurement line format.
    *
-   * @see DropwizardMeasurement#fromLine(String)
+   * @see DropwizardMeasurement#fromLine(String, Escaping)
    */
   /*package*/ DropwizardMeasurement parse(final String metricName) {
-    return cache.computeIfAbsent(metricName, __ ->
-      templatedMeasurement(metricName)
-        .orElseGet(() -> DropwizardMeasurement.fromLine(metricName))
-    );
+    final DropwizardMeasurement cached = cache.getIfPresent(metricName);
+    if (cached != null) {
+      return cached;
+    }
+
+    // concurrent misses may both parse the name; parsing is idempotent, so the last one wins.
+    final long start = System.nanoTime();
+    try {
+      final DropwizardMeasurement parsed = templatedMeasurement(metricName).orElseGet(() -> fromLine(metricName));
+      cache.put(metricName, parsed);
+      return parsed;
+    } finally {
+      matchNanos.add(System.nanoTime() - start);
+    }
   }
 
   /**
-   * Searches the configured templates for a match to {@code metricName}.
+   * Parses {@code metricName}, which matched no template, as a measurement line, recording it as unmatched
+   * or failed.
+   */
+  private DropwizardMeasurement fromLine(final String metricName) {
+    final DropwizardMeasurement parsed;
+    try {
+      parsed = DropwizardMeasurement.fromLine(metricName, escaping);
+    } catch (final IllegalArgumentException e) {
+      failures.increment();
+      failureSample.add(metricName + ": " + e.getMessage());
+      throw e;
+    }
+
+    unmatched.increment();
+    if (parsed.tags().isEmpty() && !parsed.field().isPresent()) {
+      // a plain name, rather than a measurement line, that a template may have been meant for.
+      unmatchedSample.add(metricName);
+    }
+    return parsed;
+  }
+
+  /**
+   * Returns a {@link DropwizardMeasurement} from the measurement and tags of {@code metric}, without parsing or
+   * caching its name.
+   */
+  /*package*/ DropwizardMeasurement parse(final TaggedMetric metric) {
+    return DropwizardMeasurement.create(metric.measurement(), metric.tags(), Optional.empty(), escaping);
+  }
+
+  /**
+   * Searches the configured glob templates, then the regex templates, in order, for a match to {@code metricName}.
    *
-   * @return an Optional-wrapped {@link DropwizardMeasurement} with any matched tags, and no field value.
+   * @return an Optional-wrapped {@link DropwizardMeasurement} with any matched tags, and the field of
+   * a matched glob template.
+   * @see GlobTemplate
+   * @see TemplateMatcher
    */
   private Optional<DropwizardMeasurement> templatedMeasurement(final String metricName) {
-    for (final Map.Entry<String, TaggedPattern> entry : metricTemplates.entrySet()) {
-      final Optional<DropwizardMeasurement> measurement = entry.getValue().tags(metricName)
-        .map(tags -> DropwizardMeasurement.create(entry.getKey(), tags, Optional.empty()));
-
-      if (measurement.isPresent()) {
-        return measurement;
+    if (!globTemplates.isEmpty()) {
+      final String[] segments = GlobTemplate.split(metricName);
+      for (int i = 0; i < globTemplates.size(); i++) {
+        final Optional<DropwizardMeasurement> measurement = globTemplates.get(i).match(segments, escaping);
+        if (measurement.isPresent()) {
+          globHits[i].increment();
+          return measurement;
+        }
       }
     }
-
-    return Optional.empty();
+    return metricTemplates.match(metricName);
   }
 }
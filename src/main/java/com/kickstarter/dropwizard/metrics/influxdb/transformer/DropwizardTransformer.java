@@ -4,37 +4,63 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
-import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.kickstarter.dropwizard.metrics.gauge.DoubleGauge;
+import com.kickstarter.dropwizard.metrics.gauge.LongGauge;
 import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
+import com.kickstarter.dropwizard.metrics.tagged.TaggedMetric;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
-import static java.util.stream.Collectors.toList;
-
 /**
  * A transformer from Dropwizard metric objects to tagged and grouped {@link InfluxDbMeasurement}s.
  * 
  * <p>Supports global tags, tagged templating, counter/gauge grouping, and per-metric tagging.
+ *
+ * <p>Each metric name is resolved to an {@link EmitPlan} once by an {@link EmitPlanner}, so that
+ * steady-state reporting only reads and formats field values. Timers, histograms and meters report
+ * every default field, or only those chosen by the first matching {@link FieldSelection}; snapshots
+ * are only taken when a selected field needs one.
+ *
+ * <p>With a {@link DeltaTracker}, counters, meters, timers and histograms also report the increment
+ * of their count since the previous report. With a {@link GaugeEvaluator}, gauges are evaluated
+ * concurrently before they are transformed. With a {@link CardinalityLimiter}, series beyond its caps
+ * are aggregated into overflow series or dropped.
+ *
+ * <p>Plans and groups may be {@link #prepare prepared} as soon as metrics are registered, and must be
+ * {@link #evict evicted} once they are removed, as the reporter does, or they are cached for the life of
+ * the transformer. {@link TaggedMetric Tagged metrics} are planned from their measurement and tags,
+ * without parsing their names.
  */
-public class DropwizardTransformer {
+public class DropwizardTransformer implements Closeable {
   private static final Logger log = LoggerFactory.getLogger(DropwizardTransformer.class);
 
   private final Map<String, String> baseTags;
-  private final DropwizardMeasurementParser parser;
   private final boolean groupCounters;
   private final boolean groupGauges;
 
-  private final long rateFactor;
-  private final long durationFactor;
+  private final ParallelCollector collector;
+  private final Optional<DeltaTracker> deltas;
+  private final Optional<GaugeEvaluator> gaugeEvaluator;
+  private final Optional<CardinalityLimiter> limiter;
+
+  private final EmitPlanner plans;
+  private final GroupLayout counterLayout;
+  private final GroupLayout gaugeLayout;
 
   public DropwizardTransformer(final Map<String, String> baseTags,
                                final DropwizardMeasurementParser parser,
@@ -42,20 +68,158 @@ public class DropwizardTransformer {
                                final boolean groupGauges,
                                final TimeUnit rateUnit,
                                final TimeUnit durationUnit) {
-    this.baseTags = baseTags;
-    this.parser = parser;
-    this.groupCounters = groupCounters;
-    this.groupGauges = groupGauges;
-    this.rateFactor = rateUnit.toSeconds(1);
-    this.durationFactor = durationUnit.toNanos(1);
+    this(new Builder(baseTags, parser, groupCounters, groupGauges, rateUnit, durationUnit));
+  }
+
+  private DropwizardTransformer(final Builder builder) {
+    this.baseTags = builder.baseTags;
+    this.groupCounters = builder.groupCounters;
+    this.groupGauges = builder.groupGauges;
+    this.collector = builder.collector;
+    this.deltas = builder.deltas;
+    this.gaugeEvaluator = builder.gaugeEvaluator;
+    this.limiter = builder.limiter;
+
+    this.plans = new EmitPlanner(
+      builder.baseTags,
+      builder.parser,
+      builder.groupCounters,
+      builder.groupGauges,
+      builder.rateUnit.toSeconds(1),
+      builder.durationUnit.toNanos(1),
+      builder.fieldSelections,
+      builder.deltas,
+      builder.limiter
+    );
+    this.counterLayout = plans.counterLayout();
+    this.gaugeLayout = plans.gaugeLayout();
+  }
+
+  /**
+   * Builds a {@link DropwizardTransformer}, which by default collects sequentially, reports every default field,
+   * and does not track deltas, evaluate gauges concurrently or limit cardinality.
+   */
+  public static class Builder {
+    private final Map<String, String> baseTags;
+    private final DropwizardMeasurementParser parser;
+    private final boolean groupCounters;
+    private final boolean groupGauges;
+    private final TimeUnit rateUnit;
+    private final TimeUnit durationUnit;
+    private ParallelCollector collector = ParallelCollector.sequential();
+    private ImmutableList<FieldSelection> fieldSelections = ImmutableList.of();
+    private Optional<DeltaTracker> deltas = Optional.empty();
+    private Optional<GaugeEvaluator> gaugeEvaluator = Optional.empty();
+    private Optional<CardinalityLimiter> limiter = Optional.empty();
+
+    public Builder(final Map<String, String> baseTags,
+                   final DropwizardMeasurementParser parser,
+                   final boolean groupCounters,
+                   final boolean groupGauges,
+                   final TimeUnit rateUnit,
+                   final TimeUnit durationUnit) {
+      this.baseTags = baseTags;
+      this.parser = parser;
+      this.groupCounters = groupCounters;
+      this.groupGauges = groupGauges;
+      this.rateUnit = rateUnit;
+      this.durationUnit = durationUnit;
+    }
+
+    /**
+     * Collects measurements from metric maps with {@code collector}.
+     */
+    public Builder collector(final ParallelCollector collector) {
+      this.collector = collector;
+      return this;
+    }
+
+    /**
+     * Reports the fields of the first of {@code fieldSelections} matching each measurement.
+     */
+    public Builder fieldSelections(final List<FieldSelection> fieldSelections) {
+      this.fieldSelections = ImmutableList.copyOf(fieldSelections);
+      return this;
+    }
+
+    /**
+     * Reports the increments of counts tracked by {@code deltas}.
+     */
+    public Builder deltas(final DeltaTracker deltas) {
+      this.deltas = Optional.of(deltas);
+      return this;
+    }
+
+    /**
+     * Evaluates gauges with {@code gaugeEvaluator} before they are transformed.
+     */
+    public Builder gaugeEvaluator(final GaugeEvaluator gaugeEvaluator) {
+      this.gaugeEvaluator = Optional.of(gaugeEvaluator);
+      return this;
+    }
+
+    /**
+     * Limits the series reported to those admitted by {@code limiter}.
+     */
+    public Builder limiter(final CardinalityLimiter limiter) {
+      this.limiter = Optional.of(limiter);
+      return this;
+    }
+
+    public DropwizardTransformer build() {
+      return new DropwizardTransformer(this);
+    }
+  }
+
+  /**
+   * Stops the threads of the collector and the gauge evaluator, if any.
+   */
+  @Override
+  public void close() {
+    collector.close();
+    gaugeEvaluator.ifPresent(GaugeEvaluator::close);
   }
 
   @VisibleForTesting double convertDuration(final double duration) {
-    return duration / durationFactor;
+    return plans.convertDuration(duration);
   }
 
   @VisibleForTesting double convertRate(final double rate) {
-    return rate * rateFactor;
+    return plans.convertRate(rate);
+  }
+
+  /**
+   * Returns {@code measurements} without dropped or empty (null) measurements, with overflow series aggregated.
+   */
+  private List<InfluxDbMeasurement> limit(final List<InfluxDbMeasurement> measurements) {
+    if (limiter.isPresent()) {
+      return limiter.get().aggregate(measurements);
+    }
+    measurements.removeIf(Objects::isNull);
+    return measurements;
+  }
+
+  // ===================================================================================================================
+  // preparation and eviction
+
+  /**
+   * Resolves the emit plan or group of {@code metric} ahead of its first report,
+   * so that the report only reads and formats its values.
+   *
+   * @throws IllegalArgumentException if the metric's name cannot be parsed.
+   */
+  public void prepare(final String metricName, final Metric metric) {
+    plans.prepare(metricName, metric);
+  }
+
+  /**
+   * Evicts {@code metricName} from every cache, e.g. once it is removed from the registry,
+   * and releases its series from the {@link CardinalityLimiter}.
+   *
+   * <p>A report that still reads the metric caches it again, so metrics should be evicted between reports.
+   */
+  public void evict(final String metricName) {
+    plans.evict(metricName);
   }
 
   // ===================================================================================================================
@@ -65,39 +229,15 @@ public class DropwizardTransformer {
    * Build a List of {@link InfluxDbMeasurement}s from a timer map.
    */
   public List<InfluxDbMeasurement> fromTimers(final Map<String, Timer> timers, final long timestamp) {
-    return timers.entrySet().stream()
-      .map(e -> fromTimer(e.getKey(), e.getValue(), timestamp))
-      .collect(toList());
+    return limit(collector.collect(timers, (name, timer) -> fromTimer(name, timer, timestamp)));
   }
 
   /**
    * Build an {@link InfluxDbMeasurement} from a timer.
    */
   @VisibleForTesting InfluxDbMeasurement fromTimer(final String metricName, final Timer t, final long timestamp) {
-    final Snapshot snapshot = t.getSnapshot();
-    final DropwizardMeasurement measurement = parser.parse(metricName);
-
-    final Map<String, String> tags = new HashMap<>(baseTags);
-    tags.putAll(measurement.tags());
-
-    return new InfluxDbMeasurement.Builder(measurement.name(), timestamp)
-      .putTags(tags)
-      .putField("count", snapshot.size())
-      .putField("min", convertDuration(snapshot.getMin()))
-      .putField("max", convertDuration(snapshot.getMax()))
-      .putField("mean", convertDuration(snapshot.getMean()))
-      .putField("std-dev", convertDuration(snapshot.getStdDev()))
-      .putField("50-percentile", convertDuration(snapshot.getMedian()))
-      .putField("75-percentile", convertDuration(snapshot.get75thPercentile()))
-      .putField("95-percentile", convertDuration(snapshot.get95thPercentile()))
-      .putField("99-percentile", convertDuration(snapshot.get99thPercentile()))
-      .putField("999-percentile", convertDuration(snapshot.get999thPercentile()))
-      .putField("one-minute", convertRate(t.getOneMinuteRate()))
-      .putField("five-minute", convertRate(t.getFiveMinuteRate()))
-      .putField("fifteen-minute", convertRate(t.getFifteenMinuteRate()))
-      .putField("mean-minute", convertRate(t.getMeanRate()))
-      .putField("run-count", t.getCount())
-      .build();
+    final EmitPlan<Timer> plan = plans.timerPlan(metricName, t);
+    return plan.emit(t, plan.needsSnapshot() ? t.getSnapshot() : null, timestamp);
   }
 
   // ===================================================================================================================
@@ -107,28 +247,14 @@ public class DropwizardTransformer {
    * Build a List of {@link InfluxDbMeasurement}s from a meter map.
    */
   public List<InfluxDbMeasurement> fromMeters(final Map<String, Meter> meters, final long timestamp) {
-    return meters.entrySet().stream()
-      .map(e -> fromMeter(e.getKey(), e.getValue(), timestamp))
-      .collect(toList());
+    return limit(collector.collect(meters, (name, meter) -> fromMeter(name, meter, timestamp)));
   }
 
   /**
    * Build an {@link InfluxDbMeasurement} from a meter.
    */
   @VisibleForTesting InfluxDbMeasurement fromMeter(final String metricName, final Meter mt, final long timestamp) {
-    final DropwizardMeasurement measurement = parser.parse(metricName);
-
-    final Map<String, String> tags = new HashMap<>(baseTags);
-    tags.putAll(measurement.tags());
-
-    return new InfluxDbMeasurement.Builder(measurement.name(), timestamp)
-      .putTags(tags)
-      .putField("count", mt.getCount())
-      .putField("one-minute", convertRate(mt.getOneMinuteRate()))
-      .putField("five-minute", convertRate(mt.getFiveMinuteRate()))
-      .putField("fifteen-minute", convertRate(mt.getFifteenMinuteRate()))
-      .putField("mean-minute", convertRate(mt.getMeanRate()))
-      .build();
+    return plans.meterPlan(metricName, mt).emit(mt, null, timestamp);
   }
 
   // ===================================================================================================================
@@ -138,35 +264,15 @@ public class DropwizardTransformer {
    * Build a List of {@link InfluxDbMeasurement}s from a histogram map.
    */
   public List<InfluxDbMeasurement> fromHistograms(final Map<String, Histogram> histograms, final long timestamp) {
-    return histograms.entrySet().stream()
-      .map(e -> fromHistogram(e.getKey(), e.getValue(), timestamp))
-      .collect(toList());
+    return limit(collector.collect(histograms, (name, histogram) -> fromHistogram(name, histogram, timestamp)));
   }
 
   /**
    * Build an {@link InfluxDbMeasurement} from a histogram.
    */
   @VisibleForTesting InfluxDbMeasurement fromHistogram(final String metricName, final Histogram h, final long timestamp) {
-    final Snapshot snapshot = h.getSnapshot();
-    final DropwizardMeasurement measurement = parser.parse(metricName);
-
-    final Map<String, String> tags = new HashMap<>(baseTags);
-    tags.putAll(measurement.tags());
-
-    return new InfluxDbMeasurement.Builder(measurement.name(), timestamp)
-      .putTags(tags)
-      .putField("count", snapshot.size())
-      .putField("min", snapshot.getMin())
-      .putField("max", snapshot.getMax())
-      .putField("mean", snapshot.getMean())
-      .putField("std-dev", snapshot.getStdDev())
-      .putField("50-percentile", snapshot.getMedian())
-      .putField("75-percentile", snapshot.get75thPercentile())
-      .putField("95-percentile", snapshot.get95thPercentile())
-      .putField("99-percentile", snapshot.get99thPercentile())
-      .putField("999-percentile", snapshot.get999thPercentile())
-      .putField("run-count", h.getCount())
-      .build();
+    final EmitPlan<Histogram> plan = plans.histogramPlan(metricName, h);
+    return plan.emit(h, plan.needsSnapshot() ? h.getSnapshot() : null, timestamp);
   }
 
   // ===================================================================================================================
@@ -176,35 +282,59 @@ public class DropwizardTransformer {
    * Build a List of {@link InfluxDbMeasurement}s from a counter map.
    */
   public List<InfluxDbMeasurement> fromCounters(final Map<String, Counter> counters, final long timestamp) {
-    return fromCounterOrGauge(counters, "count", Counter::getCount, timestamp, groupCounters);
+    if (groupCounters) {
+      return limit(
+        fromGroupedValues(counterLayout, counters, "count", DropwizardTransformer::putCounter, deltas, timestamp)
+      );
+    } else if (deltas.isPresent()) {
+      return limit(collector.collect(counters, (name, counter) -> fromCounter(name, counter, timestamp)));
+    } else {
+      return limit(collector.collect(
+        counters,
+        (name, counter) ->
+          fromFieldValue(name, counter, "count", FieldExtractor.formatLong(counter.getCount()), timestamp)
+      ));
+    }
   }
 
   /**
    * Build a List of {@link InfluxDbMeasurement}s from a gauge map.
    */
   public List<InfluxDbMeasurement> fromGauges(final Map<String, Gauge> gauges, final long timestamp) {
-    return fromCounterOrGauge(gauges, "value", Gauge::getValue, timestamp, groupGauges);
+    final Map<String, Gauge> evaluated = gaugeEvaluator.isPresent() ? gaugeEvaluator.get().evaluate(gauges) : gauges;
+    if (groupGauges) {
+      return limit(fromGroupedValues(
+        gaugeLayout, evaluated, "value", DropwizardTransformer::putGauge, Optional.empty(), timestamp
+      ));
+    } else {
+      return limit(collector.collect(evaluated, (name, gauge) -> fromGauge(name, gauge, timestamp)));
+    }
   }
 
-  private <T, R> List<InfluxDbMeasurement> fromCounterOrGauge(final Map<String, T> items,
-                                                              final String defaultFieldName,
-                                                              final Function<T, R> valueExtractor,
-                                                              final long timestamp,
-                                                              final boolean group) {
-    if (group) {
-      final Map<GroupKey, Map<String, R>> groupedItems = groupValues(items, defaultFieldName, valueExtractor);
-      return groupedItems.entrySet().stream()
-        .map(entry -> fromValueGroup(entry.getKey(), entry.getValue(), timestamp))
-        .filter(Optional::isPresent)
-        .map(Optional::get)
-        .collect(toList());
+  /**
+   * Build an {@link InfluxDbMeasurement} from an ungrouped gauge, reading {@link LongGauge}
+   * and {@link DoubleGauge} values without boxing.
+   */
+  private InfluxDbMeasurement fromGauge(final String metricName, final Gauge gauge, final long timestamp) {
+    if (gauge instanceof LongGauge) {
+      final long value = ((LongGauge) gauge).getLongValue();
+      return fromFieldValue(metricName, gauge, "value", FieldExtractor.formatLong(value), timestamp);
+    } else if (gauge instanceof DoubleGauge) {
+      final double value = ((DoubleGauge) gauge).getDoubleValue();
+      return fromFieldValue(metricName, gauge, "value", FieldExtractor.formatDouble(value), timestamp);
     } else {
-      return items.entrySet().stream()
-        .map(entry -> fromKeyValue(entry.getKey(), defaultFieldName, valueExtractor.apply(entry.getValue()), timestamp))
-        .collect(toList());
+      final Optional<String> formatted = InfluxDbMeasurement.Builder.fieldValue("value", gauge.getValue());
+      return fromFieldValue(metricName, gauge, "value", formatted.orElse(null), timestamp);
     }
   }
 
+  /**
+   * Build an {@link InfluxDbMeasurement} from an ungrouped counter and its increment.
+   */
+  private InfluxDbMeasurement fromCounter(final String metricName, final Counter c, final long timestamp) {
+    return plans.counterPlan(metricName, c).emit(c, null, timestamp);
+  }
+
   /**
    * Build an {@link InfluxDbMeasurement} directly from given values.
    */
@@ -212,14 +342,123 @@ public class DropwizardTransformer {
                                                           final String defaultFieldName,
                                                           final T value,
                                                           final long timestamp) {
-    final DropwizardMeasurement measurement = parser.parse(metricName);
-    final Map<String, String> tags = new HashMap<>(baseTags);
-    tags.putAll(measurement.tags());
+    final Optional<String> formatted = InfluxDbMeasurement.Builder.fieldValue(defaultFieldName, value);
+    return fromFieldValue(metricName, null, defaultFieldName, formatted.orElse(null), timestamp);
+  }
+
+  /**
+   * Build an {@link InfluxDbMeasurement} with a single formatted field value, or no fields if it is null.
+   * Returns null if the metric's series is dropped.
+   */
+  private InfluxDbMeasurement fromFieldValue(final String metricName,
+                                             final Metric metric,
+                                             final String field,
+                                             final String value,
+                                             final long timestamp) {
+    final EmitPlan<Object> plan = plans.valuePlan(metricName, metric);
+    if (plan.dropped()) {
+      return null;
+    }
+
+    final Map<String, String> fields =
+      value == null ? Collections.emptyMap() : Collections.singletonMap(field, value);
+
+    return InfluxDbMeasurement.create(plan.measurement(), plan.tags(), fields, timestamp);
+  }
+
+  /**
+   * Build grouped {@link InfluxDbMeasurement}s from {@code items}, grouped as described by {@link #groupValues}.
+   *
+   * <p>Each metric name's group and field is resolved once and cached in {@code layout},
+   * so steady-state grouping only puts each value into its group's field array.
+   */
+  private <T extends Metric> List<InfluxDbMeasurement> fromGroupedValues(final GroupLayout layout,
+                                                          final Map<String, T> items,
+                                                          final String defaultFieldName,
+                                                          final GroupValueWriter<T> writer,
+                                                          final Optional<DeltaTracker> groupDeltas,
+                                                          final long timestamp) {
+    final List<InfluxDbMeasurement> measurements = new ArrayList<>();
+
+    synchronized (layout) {
+      for (final Map.Entry<String, T> item : items.entrySet()) {
+        final GroupLayout.Slot slot = plans.slot(layout, item.getKey(), item.getValue(), defaultFieldName);
+        if (slot.dropped()) {
+          continue;
+        }
+        writer.put(layout, slot, item.getValue());
+      }
 
-    return new InfluxDbMeasurement.Builder(measurement.name(), timestamp)
-      .putTags(tags)
-      .putField(defaultFieldName, value)
-      .build();
+      layout.drain(group -> fromGroup(group, groupDeltas, timestamp).ifPresent(measurements::add));
+    }
+
+    return measurements;
+  }
+
+  /**
+   * Build an {@link InfluxDbMeasurement} from a group's field values, and their increments if deltas are tracked.
+   */
+  private Optional<InfluxDbMeasurement> fromGroup(final GroupLayout.Group group,
+                                                  final Optional<DeltaTracker> groupDeltas,
+                                                  final long timestamp) {
+    final Map<String, String> fields = new HashMap<>(group.size() * 2);
+    for (int i = 0; i < group.size(); i++) {
+      final String field = group.field(i);
+      switch (group.kind(i)) {
+        case GroupLayout.Group.LONG:
+          fields.put(field, FieldExtractor.formatLong(group.longValue(i)));
+          if (groupDeltas.isPresent()) {
+            groupDeltas.get().emit(group.seriesId(i), group.longValue(i), false, field, fields);
+          }
+          break;
+        case GroupLayout.Group.DOUBLE:
+          final String value = FieldExtractor.formatDouble(group.doubleValue(i));
+          if (value != null) {
+            fields.put(field, value);
+          }
+          break;
+        case GroupLayout.Group.OBJECT:
+          try {
+            final Optional<String> formatted = InfluxDbMeasurement.Builder.fieldValue(field, group.value(i));
+            if (formatted.isPresent()) {
+              fields.put(field, formatted.get());
+            }
+          } catch (final IllegalArgumentException e) {
+            log.warn(e.getMessage());
+          }
+          break;
+        default:
+          // no value this report.
+      }
+    }
+
+    if (fields.isEmpty()) {
+      log.warn("Measurement has no valid fields: {}", group.measurement());
+      return Optional.empty();
+    }
+
+    return Optional.of(InfluxDbMeasurement.create(group.measurement(), group.tags(), fields, timestamp));
+  }
+
+  private static void putCounter(final GroupLayout layout, final GroupLayout.Slot slot, final Counter counter) {
+    layout.putLong(slot, counter.getCount());
+  }
+
+  private static void putGauge(final GroupLayout layout, final GroupLayout.Slot slot, final Gauge gauge) {
+    if (gauge instanceof LongGauge) {
+      layout.putLong(slot, ((LongGauge) gauge).getLongValue());
+    } else if (gauge instanceof DoubleGauge) {
+      layout.putDouble(slot, ((DoubleGauge) gauge).getDoubleValue());
+    } else {
+      layout.put(slot, gauge.getValue());
+    }
+  }
+
+  /**
+   * Puts a grouped item's value into its slot.
+   */
+  private interface GroupValueWriter<T> {
+    void put(GroupLayout layout, GroupLayout.Slot slot, T item);
   }
 
   /**
@@ -274,47 +513,18 @@ public class DropwizardTransformer {
   @VisibleForTesting <T, R> Map<GroupKey, Map<String, R>> groupValues(final Map<String, T> items,
                                                                       final String defaultFieldName,
                                                                       final Function<T, R> valueExtractor) {
+    final GroupLayout layout = new GroupLayout();
     final Map<GroupKey, Map<String, R>> groupedValues = new HashMap<>();
 
     items.forEach((key, item) -> {
-      final String measurementKey;
-      final String field;
-
-      if (key.contains(" ") || key.contains(",")) {
-        // Inlined key with tag or field -- formatted as seen in Measurement.toString().
-        measurementKey = key;
-        field = parser.parse(key).field().orElse(defaultFieldName);
-      } else {
-        // Templated key -- formatted in Dropwizard/Graphite-style directory notation.
-
-        // If the key ends in `.count`, we try to include the previous part in the field name.
-        // This is an odd hack to group Dropwizard jvm.threads gauge measurements.
-        // e.g. for 'jvm.threads.deadlock.count': key=jvm.threads, field=deadlock.count.
-        final boolean hasCountPostfix = key.endsWith(".count");
-        final String mainKey = hasCountPostfix ? key.substring(0, key.length() - 6) : key;
-
-        // Parse the field name from the last key part.
-        // e.g. for `jvm.memory.heap`: key=jvm.memory, field=heap.
-        final int lastDotIndex = mainKey.lastIndexOf(".");
-        if (lastDotIndex == -1) {
-          // only one key part; use the default field name.
-          measurementKey = mainKey;
-          field = hasCountPostfix ? "count" : defaultFieldName;
-        } else {
-          // parse the last part as a field name.
-          measurementKey = mainKey.substring(0, lastDotIndex);
-          // use `key` instead of `mainKey` here
-          // to include `.count` in the field name.
-          field = key.substring(lastDotIndex + 1);
-        }
+      final Metric metric = item instanceof Metric ? (Metric) item : null;
+      final GroupLayout.Slot slot = plans.assign(layout, key, metric, defaultFieldName);
+      if (slot.dropped()) {
+        return;
       }
-
-      final DropwizardMeasurement measurement = parser.parse(measurementKey);
-      final GroupKey groupKey = GroupKey.create(measurement.name(), measurement.tags());
-
-      final Map<String, R> fields = groupedValues.getOrDefault(groupKey, new HashMap<>());
-      fields.put(field, valueExtractor.apply(item));
-      groupedValues.put(groupKey, fields);
+      groupedValues
+        .computeIfAbsent(slot.group().key(), __ -> new HashMap<>())
+        .put(slot.field(), valueExtractor.apply(item));
     });
 
     return groupedValues;
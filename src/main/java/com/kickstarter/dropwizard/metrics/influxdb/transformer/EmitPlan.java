@@ -0,0 +1,58 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Snapshot;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A precompiled plan for emitting one metric as an {@link InfluxDbMeasurement}:
+ * the resolved measurement name, the merged global and parsed tags, and the field extractors.
+ *
+ * <p>Plans are built once per metric name and reused every report. A {@link #dropping} plan
+ * emits nothing, for metrics whose series exceed the {@link CardinalityLimiter cardinality caps}.
+ */
+@AutoValue
+abstract class EmitPlan<T> {
+  abstract String measurement();
+  abstract ImmutableMap<String, String> tags();
+  abstract ImmutableList<FieldExtractor<T>> fields();
+  abstract boolean needsSnapshot();
+  abstract boolean dropped();
+
+  static <T> EmitPlan<T> create(final String measurement,
+                                final ImmutableMap<String, String> tags,
+                                final ImmutableList<FieldExtractor<T>> fields) {
+    final boolean needsSnapshot = fields.stream().anyMatch(FieldExtractor::needsSnapshot);
+    return new AutoValue_EmitPlan<>(measurement, tags, fields, needsSnapshot, false);
+  }
+
+  static <T> EmitPlan<T> dropping(final String measurement) {
+    return new AutoValue_EmitPlan<>(measurement, ImmutableMap.of(), ImmutableList.of(), false, true);
+  }
+
+  /**
+   * Emits {@code metric} as a measurement, reading statistics from {@code snapshot}.
+   * The snapshot may be null if the plan does not {@link #needsSnapshot() need one}.
+   *
+   * @return the measurement, or null if the plan is {@link #dropped} or no field has a value.
+   */
+  InfluxDbMeasurement emit(final T metric, final Snapshot snapshot, final long timestamp) {
+    if (dropped()) {
+      return null;
+    }
+
+    final Map<String, String> values = new HashMap<>(fields().size() * 2);
+    for (final FieldExtractor<T> field : fields()) {
+      field.emit(metric, snapshot, values);
+    }
+    if (values.isEmpty()) {
+      return null;
+    }
+    return InfluxDbMeasurement.create(measurement(), tags(), values, timestamp);
+  }
+}
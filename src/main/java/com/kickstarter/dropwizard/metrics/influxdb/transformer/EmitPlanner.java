@@ -0,0 +1,474 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.tagged.TaggedMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Resolves and caches how a {@link DropwizardTransformer} reports each metric name: the {@link EmitPlan}
+ * of timers, histograms, meters and ungrouped counters and gauges, and the {@link GroupLayout} slot of
+ * grouped counters and gauges.
+ *
+ * <p>Plans and slots are resolved once per metric name, admitted by the {@link CardinalityLimiter} if any,
+ * and cached until the name is {@link #evict evicted}.
+ */
+class EmitPlanner {
+  private static final Logger log = LoggerFactory.getLogger(EmitPlanner.class);
+
+  private final Map<String, String> baseTags;
+  private final DropwizardMeasurementParser parser;
+  private final boolean groupCounters;
+  private final boolean groupGauges;
+  private final long rateFactor;
+  private final long durationFactor;
+  private final ImmutableList<FieldSelection> fieldSelections;
+  private final Optional<DeltaTracker> deltas;
+  private final Optional<CardinalityLimiter> limiter;
+
+  private final ImmutableList<FieldExtractor<Timer>> timerFields;
+  private final ImmutableList<FieldExtractor<Meter>> meterFields;
+  private final ImmutableList<FieldExtractor<Histogram>> histogramFields;
+
+  private final Map<String, EmitPlan<Timer>> timerPlans = new ConcurrentHashMap<>();
+  private final Map<String, EmitPlan<Meter>> meterPlans = new ConcurrentHashMap<>();
+  private final Map<String, EmitPlan<Histogram>> histogramPlans = new ConcurrentHashMap<>();
+  private final Map<String, EmitPlan<Counter>> counterPlans = new ConcurrentHashMap<>();
+  private final Map<String, EmitPlan<Object>> valuePlans = new ConcurrentHashMap<>();
+  private final GroupLayout counterLayout = new GroupLayout();
+  private final GroupLayout gaugeLayout = new GroupLayout();
+
+  EmitPlanner(final Map<String, String> baseTags,
+              final DropwizardMeasurementParser parser,
+              final boolean groupCounters,
+              final boolean groupGauges,
+              final long rateFactor,
+              final long durationFactor,
+              final ImmutableList<FieldSelection> fieldSelections,
+              final Optional<DeltaTracker> deltas,
+              final Optional<CardinalityLimiter> limiter) {
+    this.baseTags = baseTags;
+    this.parser = parser;
+    this.groupCounters = groupCounters;
+    this.groupGauges = groupGauges;
+    this.rateFactor = rateFactor;
+    this.durationFactor = durationFactor;
+    this.fieldSelections = fieldSelections;
+    this.deltas = deltas;
+    this.limiter = limiter;
+
+    this.timerFields = timerFields();
+    this.meterFields = meterFields();
+    this.histogramFields = histogramFields();
+  }
+
+  /**
+   * Returns the layout of grouped counters, which callers synchronize on while they use it.
+   */
+  GroupLayout counterLayout() {
+    return counterLayout;
+  }
+
+  /**
+   * Returns the layout of grouped gauges, which callers synchronize on while they use it.
+   */
+  GroupLayout gaugeLayout() {
+    return gaugeLayout;
+  }
+
+  double convertDuration(final double duration) {
+    return duration / durationFactor;
+  }
+
+  double convertRate(final double rate) {
+    return rate * rateFactor;
+  }
+
+  // ===================================================================================================================
+  // emit plans
+
+  EmitPlan<Timer> timerPlan(final String metricName, final Timer timer) {
+    return plan(
+      timerPlans,
+      metricName,
+      timer,
+      name -> withDelta(
+        selectFields(name, timerFields, OptionalDouble.of(durationFactor)),
+        metricName,
+        "run-count",
+        Timer::getCount,
+        true
+      )
+    );
+  }
+
+  EmitPlan<Meter> meterPlan(final String metricName, final Meter meter) {
+    return plan(
+      meterPlans,
+      metricName,
+      meter,
+      name -> withDelta(
+        selectFields(name, meterFields, OptionalDouble.empty()),
+        metricName,
+        "count",
+        Meter::getCount,
+        true
+      )
+    );
+  }
+
+  EmitPlan<Histogram> histogramPlan(final String metricName, final Histogram histogram) {
+    return plan(
+      histogramPlans,
+      metricName,
+      histogram,
+      name -> withDelta(
+        selectFields(name, histogramFields, OptionalDouble.of(1)),
+        metricName,
+        "run-count",
+        Histogram::getCount,
+        true
+      )
+    );
+  }
+
+  EmitPlan<Counter> counterPlan(final String metricName, final Counter counter) {
+    return plan(
+      counterPlans,
+      metricName,
+      counter,
+      __ -> withDelta(
+        ImmutableList.of(FieldExtractor.ofLong("count", Counter::getCount)),
+        metricName,
+        "count",
+        Counter::getCount,
+        false
+      )
+    );
+  }
+
+  EmitPlan<Object> valuePlan(final String metricName, final Metric metric) {
+    return plan(valuePlans, metricName, metric, __ -> ImmutableList.of());
+  }
+
+  /**
+   * Returns the cached {@link EmitPlan} for {@code metricName}, building it on first use.
+   * Metrics whose series are dropped by the {@link CardinalityLimiter} get a dropping plan.
+   */
+  private <T> EmitPlan<T> plan(final Map<String, EmitPlan<T>> plans,
+                               final String metricName,
+                               final Metric metric,
+                               final Function<String, ImmutableList<FieldExtractor<T>>> fields) {
+    final EmitPlan<T> plan = plans.get(metricName);
+    return plan != null ? plan : plans.computeIfAbsent(metricName, __ -> {
+      final DropwizardMeasurement measurement = measurement(metricName, metric);
+      final Optional<Map<String, String>> tags = admit(metricName, measurement);
+      if (!tags.isPresent()) {
+        return EmitPlan.dropping(measurement.name());
+      }
+      return EmitPlan.create(measurement.name(), mergeTags(tags.get()), fields.apply(measurement.name()));
+    });
+  }
+
+  /**
+   * Returns the measurement of {@code metric}, from its tags if it is a {@link TaggedMetric},
+   * or else parsed from {@code metricName}.
+   */
+  private DropwizardMeasurement measurement(final String metricName, final Metric metric) {
+    return metric instanceof TaggedMetric ? parser.parse((TaggedMetric) metric) : parser.parse(metricName);
+  }
+
+  /**
+   * Returns the tags to report {@code metricName}'s {@code measurement} with, or empty if its series is dropped.
+   */
+  private Optional<Map<String, String>> admit(final String metricName, final DropwizardMeasurement measurement) {
+    return limiter.isPresent()
+      ? limiter.get().admit(metricName, measurement.name(), measurement.tags())
+      : Optional.of(measurement.tags());
+  }
+
+  /**
+   * Returns the fields of the first {@link FieldSelection} matching {@code measurement}, or {@code defaults}.
+   *
+   * <p>For metrics with snapshots, whose values are {@code snapshotScale} times the reported unit,
+   * selected fields that are not in {@code defaults} are computed as percentiles of the snapshot and
+   * the selection's buckets are added. Otherwise, they are ignored, and a selection may leave no fields,
+   * in which case the metric is skipped.
+   */
+  private <T> ImmutableList<FieldExtractor<T>> selectFields(final String measurement,
+                                                           final ImmutableList<FieldExtractor<T>> defaults,
+                                                           final OptionalDouble snapshotScale) {
+    final Optional<FieldSelection> selection = fieldSelections.stream()
+      .filter(s -> s.matches(measurement))
+      .findFirst();
+
+    if (!selection.isPresent()) {
+      return defaults;
+    }
+
+    final ImmutableList.Builder<FieldExtractor<T>> selected = ImmutableList.builder();
+    for (final String name : selection.get().fields().orElse(ImmutableList.of())) {
+      final Optional<FieldExtractor<T>> field = defaults.stream().filter(f -> f.name().equals(name)).findFirst();
+      if (field.isPresent()) {
+        selected.add(field.get());
+        continue;
+      }
+
+      final Optional<Double> quantile = FieldSelection.quantile(name);
+      if (quantile.isPresent() && snapshotScale.isPresent()) {
+        final double q = quantile.get();
+        final double scale = snapshotScale.getAsDouble();
+        selected.add(FieldExtractor.ofSnapshotDouble(name, s -> s.getValue(q) / scale));
+      } else {
+        log.debug("Ignoring unknown field '{}' selected for measurement {}", name, measurement);
+      }
+    }
+
+    if (!selection.get().fields().isPresent()) {
+      selected.addAll(defaults);
+    }
+
+    if (selection.get().buckets().isPresent() && snapshotScale.isPresent()) {
+      final double[] bounds = selection.get().buckets().get().bounds();
+      final double[] scaledBounds = new double[bounds.length];
+      final String[] names = new String[bounds.length];
+      for (int i = 0; i < bounds.length; i++) {
+        scaledBounds[i] = bounds[i] * snapshotScale.getAsDouble();
+        names[i] = "le-" + BigDecimal.valueOf(bounds[i]).stripTrailingZeros().toPlainString();
+      }
+      selected.add(FieldExtractor.ofSnapshotBuckets(scaledBounds, names));
+    }
+
+    final ImmutableList<FieldExtractor<T>> fields = selected.build();
+    if (fields.isEmpty()) {
+      log.warn("Field selection '{}' selects no fields of measurement {}", selection.get().pattern(), measurement);
+    }
+    return fields;
+  }
+
+  /**
+   * Returns {@code fields}, plus the increment of the {@code countField} of {@code metricName}
+   * if deltas are tracked.
+   */
+  private <T> ImmutableList<FieldExtractor<T>> withDelta(final ImmutableList<FieldExtractor<T>> fields,
+                                                         final String metricName,
+                                                         final String countField,
+                                                         final ToLongFunction<T> count,
+                                                         final boolean monotonic) {
+    if (!deltas.isPresent()) {
+      return fields;
+    }
+
+    final FieldExtractor<T> delta =
+      FieldExtractor.ofDelta(countField, count, monotonic, deltas.get(), DeltaTracker.seriesId(metricName));
+    return ImmutableList.<FieldExtractor<T>>builder().addAll(fields).add(delta).build();
+  }
+
+  private ImmutableMap<String, String> mergeTags(final Map<String, String> tags) {
+    final Map<String, String> merged = new HashMap<>(baseTags);
+    merged.putAll(tags);
+    return ImmutableMap.copyOf(merged);
+  }
+
+  private ImmutableList<FieldExtractor<Timer>> timerFields() {
+    return ImmutableList.<FieldExtractor<Timer>>builder()
+      .add(FieldExtractor.ofSnapshotLong("count", s -> s.size()))
+      .add(FieldExtractor.ofSnapshotDouble("min", s -> convertDuration(s.getMin())))
+      .add(FieldExtractor.ofSnapshotDouble("max", s -> convertDuration(s.getMax())))
+      .add(FieldExtractor.ofSnapshotDouble("mean", s -> convertDuration(s.getMean())))
+      .add(FieldExtractor.ofSnapshotDouble("std-dev", s -> convertDuration(s.getStdDev())))
+      .add(FieldExtractor.ofSnapshotDouble("50-percentile", s -> convertDuration(s.getMedian())))
+      .add(FieldExtractor.ofSnapshotDouble("75-percentile", s -> convertDuration(s.get75thPercentile())))
+      .add(FieldExtractor.ofSnapshotDouble("95-percentile", s -> convertDuration(s.get95thPercentile())))
+      .add(FieldExtractor.ofSnapshotDouble("99-percentile", s -> convertDuration(s.get99thPercentile())))
+      .add(FieldExtractor.ofSnapshotDouble("999-percentile", s -> convertDuration(s.get999thPercentile())))
+      .add(FieldExtractor.ofDouble("one-minute", t -> convertRate(t.getOneMinuteRate())))
+      .add(FieldExtractor.ofDouble("five-minute", t -> convertRate(t.getFiveMinuteRate())))
+      .add(FieldExtractor.ofDouble("fifteen-minute", t -> convertRate(t.getFifteenMinuteRate())))
+      .add(FieldExtractor.ofDouble("mean-minute", t -> convertRate(t.getMeanRate())))
+      .add(FieldExtractor.ofLong("run-count", t -> t.getCount()))
+      .build();
+  }
+
+  private ImmutableList<FieldExtractor<Meter>> meterFields() {
+    return ImmutableList.of(
+      FieldExtractor.ofLong("count", m -> m.getCount()),
+      FieldExtractor.ofDouble("one-minute", m -> convertRate(m.getOneMinuteRate())),
+      FieldExtractor.ofDouble("five-minute", m -> convertRate(m.getFiveMinuteRate())),
+      FieldExtractor.ofDouble("fifteen-minute", m -> convertRate(m.getFifteenMinuteRate())),
+      FieldExtractor.ofDouble("mean-minute", m -> convertRate(m.getMeanRate()))
+    );
+  }
+
+  private static ImmutableList<FieldExtractor<Histogram>> histogramFields() {
+    return ImmutableList.of(
+      FieldExtractor.ofSnapshotLong("count", s -> s.size()),
+      FieldExtractor.ofSnapshotLong("min", s -> s.getMin()),
+      FieldExtractor.ofSnapshotLong("max", s -> s.getMax()),
+      FieldExtractor.ofSnapshotDouble("mean", s -> s.getMean()),
+      FieldExtractor.ofSnapshotDouble("std-dev", s -> s.getStdDev()),
+      FieldExtractor.ofSnapshotDouble("50-percentile", s -> s.getMedian()),
+      FieldExtractor.ofSnapshotDouble("75-percentile", s -> s.get75thPercentile()),
+      FieldExtractor.ofSnapshotDouble("95-percentile", s -> s.get95thPercentile()),
+      FieldExtractor.ofSnapshotDouble("99-percentile", s -> s.get99thPercentile()),
+      FieldExtractor.ofSnapshotDouble("999-percentile", s -> s.get999thPercentile()),
+      FieldExtractor.ofLong("run-count", h -> h.getCount())
+    );
+  }
+
+  // ===================================================================================================================
+  // group slots
+
+  /**
+   * Returns the slot of {@code metricName} in {@code layout}, assigning it on first use.
+   */
+  GroupLayout.Slot slot(final GroupLayout layout,
+                        final String metricName,
+                        final Metric metric,
+                        final String defaultFieldName) {
+    synchronized (layout) {
+      final GroupLayout.Slot slot = layout.slot(metricName);
+      return slot != null ? slot : assign(layout, metricName, metric, defaultFieldName);
+    }
+  }
+
+  /**
+   * Assigns {@code key} to its group and field in {@code layout},
+   * as described by {@link DropwizardTransformer#groupValues}.
+   *
+   * <p>Groups are keyed by their parsed tags, so that groups aggregated into the same overflow series
+   * keep separate fields, and are merged by the {@link CardinalityLimiter}. A {@link TaggedMetric}
+   * is grouped by its measurement and tags, into the default field.
+   */
+  GroupLayout.Slot assign(final GroupLayout layout,
+                          final String key,
+                          final Metric metric,
+                          final String defaultFieldName) {
+    final String measurementKey;
+    final String field;
+
+    if (metric instanceof TaggedMetric) {
+      measurementKey = key;
+      field = defaultFieldName;
+    } else if (key.contains(" ") || key.contains(",")) {
+      // Inlined key with tag or field -- formatted as seen in Measurement.toString().
+      measurementKey = key;
+      field = parser.parse(key).field().orElse(defaultFieldName);
+    } else {
+      // Templated key -- formatted in Dropwizard/Graphite-style directory notation.
+
+      // If the key ends in `.count`, we try to include the previous part in the field name.
+      // This is an odd hack to group Dropwizard jvm.threads gauge measurements.
+      // e.g. for 'jvm.threads.deadlock.count': key=jvm.threads, field=deadlock.count.
+      final boolean hasCountPostfix = key.endsWith(".count");
+      final String mainKey = hasCountPostfix ? key.substring(0, key.length() - 6) : key;
+
+      // Parse the field name from the last key part.
+      // e.g. for `jvm.memory.heap`: key=jvm.memory, field=heap.
+      final int lastDotIndex = mainKey.lastIndexOf(".");
+      if (lastDotIndex == -1) {
+        // only one key part; use the default field name.
+        measurementKey = mainKey;
+        field = hasCountPostfix ? "count" : defaultFieldName;
+      } else {
+        // parse the last part as a field name.
+        measurementKey = mainKey.substring(0, lastDotIndex);
+        // use `key` instead of `mainKey` here
+        // to include `.count` in the field name.
+        field = key.substring(lastDotIndex + 1);
+      }
+    }
+
+    // tagged metrics are not parsed, so there is no parsed name to evict.
+    final String parsedName = metric instanceof TaggedMetric ? null : measurementKey;
+    final DropwizardMeasurement measurement = measurement(measurementKey, metric);
+    final Optional<Map<String, String>> tags = admit(key, measurement);
+    if (!tags.isPresent()) {
+      return layout.drop(key, parsedName);
+    }
+
+    final GroupKey groupKey = GroupKey.create(measurement.name(), measurement.tags());
+    return layout.assign(key, groupKey, mergeTags(tags.get()), field, parsedName);
+  }
+
+  // ===================================================================================================================
+  // preparation and eviction
+
+  /**
+   * Resolves the emit plan or group of {@code metric} ahead of its first report,
+   * so that the report only reads and formats its values.
+   *
+   * @throws IllegalArgumentException if the metric's name cannot be parsed.
+   */
+  void prepare(final String metricName, final Metric metric) {
+    if (metric instanceof Timer) {
+      timerPlan(metricName, (Timer) metric);
+    } else if (metric instanceof Meter) {
+      meterPlan(metricName, (Meter) metric);
+    } else if (metric instanceof Histogram) {
+      histogramPlan(metricName, (Histogram) metric);
+    } else if (metric instanceof Counter) {
+      if (groupCounters) {
+        slot(counterLayout, metricName, metric, "count");
+      } else if (deltas.isPresent()) {
+        counterPlan(metricName, (Counter) metric);
+      } else {
+        valuePlan(metricName, metric);
+      }
+    } else if (metric instanceof Gauge) {
+      if (groupGauges) {
+        slot(gaugeLayout, metricName, metric, "value");
+      } else {
+        valuePlan(metricName, metric);
+      }
+    }
+  }
+
+  /**
+   * Evicts {@code metricName} from every cache, e.g. once it is removed from the registry,
+   * and releases its series from the {@link CardinalityLimiter}.
+   *
+   * <p>A report that still reads the metric caches it again, so metrics should be evicted between reports.
+   */
+  void evict(final String metricName) {
+    timerPlans.remove(metricName);
+    meterPlans.remove(metricName);
+    histogramPlans.remove(metricName);
+    counterPlans.remove(metricName);
+    valuePlans.remove(metricName);
+    final String counterName;
+    synchronized (counterLayout) {
+      counterName = counterLayout.evict(metricName);
+    }
+    final String gaugeName;
+    synchronized (gaugeLayout) {
+      gaugeName = gaugeLayout.evict(metricName);
+    }
+    deltas.ifPresent(d -> d.evict(DeltaTracker.seriesId(metricName)));
+    limiter.ifPresent(l -> l.release(metricName));
+    parser.evict(metricName);
+    // grouped names are parsed without their field, e.g. `jvm.threads` for `jvm.threads.count`.
+    if (counterName != null) {
+      parser.evict(counterName);
+    }
+    if (gaugeName != null) {
+      parser.evict(gaugeName);
+    }
+  }
+}
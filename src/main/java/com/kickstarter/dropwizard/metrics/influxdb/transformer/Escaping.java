@@ -0,0 +1,93 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+/**
+ * How {@link DropwizardMeasurement} names, tags and fields escape InfluxDB's special characters.
+ *
+ * <p>Both modes scan each string once, and return it unchanged if it has nothing to escape.
+ */
+public enum Escaping {
+  /**
+   * Replaces spaces, commas and equals signs with dashes, e.g. {@code a b=c} becomes {@code a-b-c}.
+   */
+  SANITIZE {
+    @Override String escape(final String s, final String specials) {
+      int i = 0;
+      while (i < s.length() && !isSanitized(s.charAt(i))) {
+        i++;
+      }
+      if (i == s.length()) {
+        return s;
+      }
+
+      final char[] chars = s.toCharArray();
+      for (; i < chars.length; i++) {
+        if (isSanitized(chars[i])) {
+          chars[i] = '-';
+        }
+      }
+      return new String(chars);
+    }
+
+    private boolean isSanitized(final char c) {
+      return c == ' ' || c == ',' || c == '=';
+    }
+  },
+
+  /**
+   * Escapes special characters with backslashes, as in the InfluxDB line protocol, e.g. {@code a b=c} becomes
+   * {@code a\ b\=c} in tags. Characters that are already escaped are left as they are, so escaping is idempotent.
+   * A trailing backslash, which would escape the separator that follows, is escaped itself.
+   */
+  BACKSLASH {
+    @Override String escape(final String s, final String specials) {
+      int i = 0;
+      while (i < s.length() && specials.indexOf(s.charAt(i)) < 0 && !isTrailingBackslash(s, i)) {
+        // skip the character following a backslash, which is already escaped.
+        i += s.charAt(i) == '\\' ? 2 : 1;
+      }
+      if (i >= s.length()) {
+        return s;
+      }
+
+      final StringBuilder escaped = new StringBuilder(s.length() + 8).append(s, 0, i);
+      for (; i < s.length(); i++) {
+        final char c = s.charAt(i);
+        if (c == '\\') {
+          escaped.append(c).append(isTrailingBackslash(s, i) ? c : s.charAt(++i));
+          continue;
+        }
+        if (specials.indexOf(c) >= 0) {
+          escaped.append('\\');
+        }
+        escaped.append(c);
+      }
+      return escaped.toString();
+    }
+
+    private boolean isTrailingBackslash(final String s, final int i) {
+      return i == s.length() - 1 && s.charAt(i) == '\\';
+    }
+  };
+
+  /**
+   * Characters to escape in measurement names.
+   */
+  static final String MEASUREMENT_SPECIALS = ", ";
+
+  /**
+   * Characters to escape in tag keys, tag values and field names.
+   */
+  static final String KEY_SPECIALS = ", =";
+
+  /**
+   * Returns {@code s} with its {@code specials} escaped.
+   */
+  abstract String escape(String s, String specials);
+
+  /**
+   * Returns true if separators in measurement lines may be escaped with backslashes.
+   */
+  boolean escapesSeparators() {
+    return this == BACKSLASH;
+  }
+}
@@ -0,0 +1,157 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Snapshot;
+import com.kickstarter.dropwizard.metrics.reservoir.LogBucketSnapshot;
+
+import java.util.Map;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongBiFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Extracts a single field value from a metric or its snapshot, formatted for InfluxDB line protocol.
+ */
+abstract class FieldExtractor<T> {
+  static final String INFINITE_BUCKET = "le-inf";
+
+  private final String name;
+  private final boolean needsSnapshot;
+
+  private FieldExtractor(final String name, final boolean needsSnapshot) {
+    this.name = name;
+    this.needsSnapshot = needsSnapshot;
+  }
+
+  String name() {
+    return name;
+  }
+
+  /**
+   * Returns true if this field is computed from the metric's {@link Snapshot}.
+   */
+  boolean needsSnapshot() {
+    return needsSnapshot;
+  }
+
+  /**
+   * Puts this field's formatted value into {@code fields}, unless it is NaN or infinite.
+   */
+  abstract void emit(T metric, Snapshot snapshot, Map<String, String> fields);
+
+  /**
+   * Returns an extractor for an integer field of the metric.
+   */
+  static <T> FieldExtractor<T> ofLong(final String name, final ToLongFunction<T> extractor) {
+    return longField(name, false, (metric, __) -> extractor.applyAsLong(metric));
+  }
+
+  /**
+   * Returns an extractor for a float field of the metric.
+   */
+  static <T> FieldExtractor<T> ofDouble(final String name, final ToDoubleFunction<T> extractor) {
+    return doubleField(name, false, (metric, __) -> extractor.applyAsDouble(metric));
+  }
+
+  /**
+   * Returns an extractor for an integer field of the metric's snapshot.
+   */
+  static <T> FieldExtractor<T> ofSnapshotLong(final String name, final ToLongFunction<Snapshot> extractor) {
+    return longField(name, true, (__, snapshot) -> extractor.applyAsLong(snapshot));
+  }
+
+  /**
+   * Returns an extractor for a float field of the metric's snapshot.
+   */
+  static <T> FieldExtractor<T> ofSnapshotDouble(final String name, final ToDoubleFunction<Snapshot> extractor) {
+    return doubleField(name, true, (__, snapshot) -> extractor.applyAsDouble(snapshot));
+  }
+
+  /**
+   * Returns an extractor for the increment of an integer field of the metric since the previous report:
+   * {@code <name>-delta}, and {@code <name>-rate} if the tracker reports rates.
+   *
+   * @param monotonic whether the field only increases, so that a decrease is a reset.
+   */
+  static <T> FieldExtractor<T> ofDelta(final String name,
+                                       final ToLongFunction<T> extractor,
+                                       final boolean monotonic,
+                                       final DeltaTracker tracker,
+                                       final long seriesId) {
+    return new FieldExtractor<T>(name + "-delta", false) {
+      @Override void emit(final T metric, final Snapshot snapshot, final Map<String, String> fields) {
+        tracker.emit(seriesId, extractor.applyAsLong(metric), monotonic, name, fields);
+      }
+    };
+  }
+
+  /**
+   * Returns an extractor for cumulative bucket count fields of the metric's snapshot: one field per
+   * bound, counting the sampled values less than or equal to the bound, and {@code le-inf} for all values.
+   *
+   * @param bounds the ascending bucket bounds, in snapshot units.
+   * @param names  the field name of each bound.
+   */
+  static <T> FieldExtractor<T> ofSnapshotBuckets(final double[] bounds, final String[] names) {
+    return new FieldExtractor<T>(INFINITE_BUCKET, true) {
+      @Override void emit(final T metric, final Snapshot snapshot, final Map<String, String> fields) {
+        if (snapshot instanceof LogBucketSnapshot) {
+          // count straight from the reservoir's buckets rather than expanding them into values.
+          final long[] counts = ((LogBucketSnapshot) snapshot).cumulativeCounts(bounds);
+          for (int i = 0; i < bounds.length; i++) {
+            fields.put(names[i], Long.toString(counts[i]) + 'i');
+          }
+          fields.put(INFINITE_BUCKET, Long.toString(((LogBucketSnapshot) snapshot).count()) + 'i');
+          return;
+        }
+
+        final long[] values = snapshot.getValues();
+        int count = 0;
+        for (int i = 0; i < bounds.length; i++) {
+          while (count < values.length && values[count] <= bounds[i]) {
+            count++;
+          }
+          fields.put(names[i], Integer.toString(count) + 'i');
+        }
+        fields.put(INFINITE_BUCKET, Integer.toString(values.length) + 'i');
+      }
+    };
+  }
+
+  private static <T> FieldExtractor<T> longField(final String name,
+                                                 final boolean needsSnapshot,
+                                                 final ToLongBiFunction<T, Snapshot> extractor) {
+    return new FieldExtractor<T>(name, needsSnapshot) {
+      @Override void emit(final T metric, final Snapshot snapshot, final Map<String, String> fields) {
+        fields.put(name, formatLong(extractor.applyAsLong(metric, snapshot)));
+      }
+    };
+  }
+
+  private static <T> FieldExtractor<T> doubleField(final String name,
+                                                   final boolean needsSnapshot,
+                                                   final ToDoubleBiFunction<T, Snapshot> extractor) {
+    return new FieldExtractor<T>(name, needsSnapshot) {
+      @Override void emit(final T metric, final Snapshot snapshot, final Map<String, String> fields) {
+        final String value = formatDouble(extractor.applyAsDouble(metric, snapshot));
+        if (value != null) {
+          fields.put(name, value);
+        }
+      }
+    };
+  }
+
+  /**
+   * Formats {@code value} as an integer field value.
+   */
+  static String formatLong(final long value) {
+    return Long.toString(value) + 'i';
+  }
+
+  /**
+   * Formats {@code value} as a float field value, or returns null if it is NaN or infinite.
+   */
+  static String formatDouble(final double value) {
+    return Double.isNaN(value) || Double.isInfinite(value) ? null : Double.toString(value);
+  }
+}
@@ -0,0 +1,115 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import javax.validation.Valid;
+import org.hibernate.validator.constraints.NotBlank;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Selects the fields reported for timers, histograms and meters whose measurement name matches a pattern,
+ * and optionally adds cumulative bucket counts to timers and histograms.
+ *
+ * <p>If no {@code fields} are given, every default field is reported. Field names are the reporter's
+ * default field names, e.g. {@code count}, {@code one-minute} or {@code 99-percentile}. Any other
+ * percentile may be selected by its digits after the decimal point, e.g. {@code 90-percentile} for the
+ * 0.9 quantile or {@code 9999-percentile} for the 0.9999 quantile, and {@code pNN} is accepted as an
+ * alias for {@code NN-percentile}. Unknown field names are rejected when the selection is created.
+ */
+public class FieldSelection {
+  private static final Pattern PERCENTILE_FIELD = Pattern.compile("(?<digits>[0-9]+)-percentile");
+  private static final Pattern PERCENTILE_ALIAS = Pattern.compile("p(?<digits>[0-9]+)");
+  private static final ImmutableSet<String> DEFAULT_FIELDS = ImmutableSet.of(
+    "count", "min", "max", "mean", "std-dev", "run-count",
+    "one-minute", "five-minute", "fifteen-minute", "mean-minute"
+  );
+
+  @NotBlank
+  @JsonProperty
+  private String pattern;
+  public String pattern() {
+    return pattern;
+  }
+
+  @JsonProperty
+  private List<String> fields;
+  public Optional<List<String>> fields() {
+    return Optional.ofNullable(fields);
+  }
+
+  @Valid
+  @JsonProperty
+  private BucketLayout buckets;
+  public Optional<BucketLayout> buckets() {
+    return Optional.ofNullable(buckets);
+  }
+
+  // for internal use.
+  private final Pattern compiledPattern;
+
+  @JsonCreator
+  public FieldSelection(final String pattern, final List<String> fields, final BucketLayout buckets) {
+    if (pattern == null || pattern.trim().isEmpty()) {
+      throw new IllegalArgumentException("field selection must have a pattern");
+    }
+    if (fields != null && fields.isEmpty()) {
+      throw new IllegalArgumentException("field selection must omit fields or select at least one: " + pattern);
+    }
+
+    this.pattern = pattern;
+    this.fields = fields == null ? null : fields.stream().map(FieldSelection::fieldName).collect(toList());
+    this.buckets = buckets;
+    this.compiledPattern = Pattern.compile(pattern);
+  }
+
+  @VisibleForTesting FieldSelection(final String pattern, final String... fields) {
+    this(pattern, Arrays.asList(fields), null);
+  }
+
+  /**
+   * Returns true if this selection applies to {@code measurement}.
+   */
+  /*package*/ boolean matches(final String measurement) {
+    return compiledPattern.matcher(measurement).matches();
+  }
+
+  /**
+   * Returns the reported name of {@code field}, resolving {@code pNN} to {@code NN-percentile}.
+   *
+   * @throws IllegalArgumentException if {@code field} is neither a default field nor a percentile.
+   */
+  private static String fieldName(final String field) {
+    final Matcher alias = PERCENTILE_ALIAS.matcher(String.valueOf(field));
+    if (alias.matches()) {
+      return alias.group("digits") + "-percentile";
+    }
+    if (!DEFAULT_FIELDS.contains(field) && !PERCENTILE_FIELD.matcher(String.valueOf(field)).matches()) {
+      throw new IllegalArgumentException("unknown field selected: " + field);
+    }
+    return field;
+  }
+
+  /**
+   * Returns the quantile of a percentile field name, e.g. 0.9 for {@code 90-percentile}.
+   *
+   * @return an Optional-wrapped quantile, or {@link Optional#empty()} if {@code field} is not a percentile.
+   */
+  /*package*/ static Optional<Double> quantile(final String field) {
+    final Matcher matcher = PERCENTILE_FIELD.matcher(field);
+    if (!matcher.matches()) {
+      return Optional.empty();
+    }
+
+    final String digits = matcher.group("digits");
+    return Optional.of(Double.parseDouble("0." + digits));
+  }
+}
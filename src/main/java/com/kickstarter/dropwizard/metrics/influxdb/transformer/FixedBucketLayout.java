@@ -0,0 +1,42 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link BucketLayout} with explicitly configured bounds.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>bounds</td>
+ *         <td><i>none</i></td>
+ *         <td>the bucket upper bounds.</td>
+ *     </tr>
+ * </table>
+ */
+public class FixedBucketLayout implements BucketLayout {
+  @NotEmpty
+  @JsonProperty
+  private List<Double> bounds;
+
+  @VisibleForTesting static FixedBucketLayout of(final Double... bounds) {
+    final FixedBucketLayout layout = new FixedBucketLayout();
+    layout.bounds = Arrays.asList(bounds);
+    return layout;
+  }
+
+  @Override
+  public double[] bounds() {
+    return bounds.stream().mapToDouble(Double::doubleValue).sorted().distinct().toArray();
+  }
+}
@@ -0,0 +1,153 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.kickstarter.dropwizard.metrics.gauge.DoubleGauge;
+import com.kickstarter.dropwizard.metrics.gauge.LongGauge;
+import io.dropwizard.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Evaluates gauges concurrently on a bounded pool, so that a slow gauge does not delay the report.
+ *
+ * <p>The reporter waits for gauges until the deadline, measured from the start of the evaluation.
+ * A gauge that misses it is counted, and reports its last evaluated value if enabled, or nothing;
+ * it is logged once per evaluation that misses the deadline. A gauge is not evaluated again until
+ * its previous evaluation finishes, so a stuck gauge occupies at most one thread.
+ */
+public class GaugeEvaluator implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(GaugeEvaluator.class);
+
+  private final ExecutorService pool;
+  private final long deadlineNanos;
+  private final boolean lastValueOnTimeout;
+  private final Counter slowGauges;
+  private final Map<String, Evaluation> evaluations = new ConcurrentHashMap<>();
+
+  /**
+   * @param threads            the size of the evaluation pool.
+   * @param deadline           how long to wait for gauges.
+   * @param lastValueOnTimeout whether a slow gauge reports its last evaluated value.
+   * @param slowGauges         counts gauges that miss the deadline.
+   */
+  public GaugeEvaluator(final int threads,
+                        final Duration deadline,
+                        final boolean lastValueOnTimeout,
+                        final Counter slowGauges) {
+    this.pool = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("influxdb-gauge-evaluator-%d")
+      .setDaemon(true)
+      .build());
+    this.deadlineNanos = deadline.toNanoseconds();
+    this.lastValueOnTimeout = lastValueOnTimeout;
+    this.slowGauges = slowGauges;
+  }
+
+  /**
+   * Evaluates {@code gauges} concurrently, and returns gauges of their values in the same order.
+   * Gauges that miss the deadline or fail are omitted, unless they report their last value.
+   */
+  public Map<String, Gauge> evaluate(final Map<String, Gauge> gauges) {
+    final long deadline = System.nanoTime() + deadlineNanos;
+
+    // gauges are iterated once, since concurrent maps may change while they are evaluated.
+    final List<String> names = new ArrayList<>(gauges.size());
+    final List<Evaluation> started = new ArrayList<>(gauges.size());
+    gauges.forEach((name, gauge) -> {
+      final Evaluation evaluation = evaluations.computeIfAbsent(name, __ -> new Evaluation());
+      evaluation.start(gauge);
+      names.add(name);
+      started.add(evaluation);
+    });
+
+    final Map<String, Gauge> evaluated = new LinkedHashMap<>(gauges.size() * 2);
+    for (int i = 0; i < names.size(); i++) {
+      final String name = names.get(i);
+      final Evaluation evaluation = started.get(i);
+      try {
+        evaluation.running.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        evaluated.put(name, evaluation.last);
+      } catch (final TimeoutException e) {
+        slowGauges.inc();
+        if (!evaluation.warned) {
+          evaluation.warned = true;
+          log.warn(
+            "Gauge {} did not finish evaluating within {}ms", name, TimeUnit.NANOSECONDS.toMillis(deadlineNanos)
+          );
+        }
+        if (lastValueOnTimeout && evaluation.last != null) {
+          evaluated.put(name, evaluation.last);
+        }
+      } catch (final ExecutionException e) {
+        log.warn("Failed to evaluate gauge {}", name, e.getCause());
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+
+    if (evaluations.size() > gauges.size()) {
+      evaluations.keySet().retainAll(gauges.keySet());
+    }
+
+    return evaluated;
+  }
+
+  /**
+   * Stops the evaluation pool, interrupting evaluations in progress.
+   */
+  @Override
+  public void close() {
+    pool.shutdownNow();
+  }
+
+  /**
+   * Returns a gauge of {@code gauge}'s current value, keeping primitive gauges primitive.
+   */
+  private static Gauge evaluate(final Gauge gauge) {
+    if (gauge instanceof LongGauge) {
+      final long value = ((LongGauge) gauge).getLongValue();
+      return (LongGauge) () -> value;
+    } else if (gauge instanceof DoubleGauge) {
+      final double value = ((DoubleGauge) gauge).getDoubleValue();
+      return (DoubleGauge) () -> value;
+    } else {
+      final Object value = gauge.getValue();
+      return () -> value;
+    }
+  }
+
+  /**
+   * A gauge's most recent evaluation and last evaluated value.
+   * Only started by the reporter thread.
+   */
+  private class Evaluation {
+    private Future<?> running;
+    private boolean warned;
+    private volatile Gauge last;
+
+    void start(final Gauge gauge) {
+      if (running == null || running.isDone()) {
+        warned = false;
+        running = pool.submit(() -> {
+          last = evaluate(gauge);
+        });
+      }
+    }
+  }
+}
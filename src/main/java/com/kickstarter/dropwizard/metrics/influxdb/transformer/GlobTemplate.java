@@ -0,0 +1,218 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A Graphite-style template, mapping the dot-separated segments of metric names to a measurement,
+ * field and tags, as in InfluxDB's Graphite input: {@code [filter] template [tags]}.
+ *
+ * <pre>{@code
+ *   "jvm.gc.* measurement.measurement.field"       // jvm.gc.PS-Scavenge => jvm.gc PS-Scavenge
+ *   "*.resources.* .measurement.resource.method"   // app.resources.Cats.get => resources,resource=Cats,method=get
+ *   "servers.* .host.measurement* env=prod"       // servers.web1.cpu.load => cpu.load,host=web1,env=prod
+ * }</pre>
+ *
+ * <p>The filter's segments match the leading segments of a name, each either literally or, with {@code *},
+ * as a glob; without a filter, every name matches. Each template part names what its segment is:
+ * {@code measurement} segments are joined with dots into the measurement, {@code field} segments into the
+ * field, other parts are tag keys, and empty parts are skipped. A part ending with {@code *} takes every
+ * remaining segment. Names without a measurement segment do not match. Default tags are given as
+ * {@code key=value} pairs separated by commas.
+ *
+ * <p>Names are split once and matched segment by segment, without regexes or backtracking.
+ */
+public class GlobTemplate {
+  private static final String MEASUREMENT = "measurement";
+  private static final String FIELD = "field";
+  private static final char SEPARATOR = '.';
+
+  private final String spec;
+  private final String[] filter;
+  private final String[] parts;
+  private final boolean rest;
+  private final ImmutableMap<String, String> defaultTags;
+
+  private GlobTemplate(final String spec,
+                       final String[] filter,
+                       final String[] parts,
+                       final boolean rest,
+                       final ImmutableMap<String, String> defaultTags) {
+    this.spec = spec;
+    this.filter = filter;
+    this.parts = parts;
+    this.rest = rest;
+    this.defaultTags = defaultTags;
+  }
+
+  /**
+   * Parses a {@code [filter] template [tags]} specification.
+   *
+   * @throws IllegalArgumentException if the specification is malformed.
+   */
+  @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+  public static GlobTemplate parse(final String spec) {
+    final String[] tokens = spec.trim().split("\\s+");
+    final String filter;
+    final String template;
+    final String tags;
+    if (tokens.length == 1) {
+      filter = null;
+      template = tokens[0];
+      tags = null;
+    } else if (tokens.length == 2) {
+      final boolean hasTags = tokens[1].contains("=");
+      filter = hasTags ? null : tokens[0];
+      template = hasTags ? tokens[0] : tokens[1];
+      tags = hasTags ? tokens[1] : null;
+    } else if (tokens.length == 3) {
+      filter = tokens[0];
+      template = tokens[1];
+      tags = tokens[2];
+    } else {
+      throw new IllegalArgumentException("template must be \"[filter] template [tags]\": " + spec);
+    }
+
+    final String[] parts = split(template);
+    boolean hasMeasurement = false;
+    for (int i = 0; i < parts.length; i++) {
+      if (parts[i].endsWith("*")) {
+        if (i != parts.length - 1) {
+          throw new IllegalArgumentException("only the last template part may end with '*': " + spec);
+        }
+        parts[i] = parts[i].substring(0, parts[i].length() - 1);
+      }
+      hasMeasurement |= parts[i].equals(MEASUREMENT);
+    }
+    if (!hasMeasurement) {
+      throw new IllegalArgumentException("template must have a measurement part: " + spec);
+    }
+
+    return new GlobTemplate(
+      spec,
+      filter == null ? new String[0] : split(filter),
+      parts,
+      template.endsWith("*"),
+      tags == null ? ImmutableMap.of() : defaultTags(tags, spec)
+    );
+  }
+
+  /**
+   * Returns the measurement of {@code segments}, the dot-separated segments of a metric name,
+   * or empty if they do not match the filter or have no measurement segment.
+   */
+  Optional<DropwizardMeasurement> match(final String[] segments, final Escaping escaping) {
+    if (segments.length < filter.length) {
+      return Optional.empty();
+    }
+    for (int i = 0; i < filter.length; i++) {
+      if (!glob(filter[i], segments[i])) {
+        return Optional.empty();
+      }
+    }
+
+    final StringBuilder measurement = new StringBuilder();
+    final StringBuilder field = new StringBuilder();
+    final Map<String, String> tags = new HashMap<>(defaultTags);
+    for (int i = 0; i < segments.length && i < parts.length; i++) {
+      final boolean last = rest && i == parts.length - 1;
+      final int end = last ? segments.length : i + 1;
+      for (int s = i; s < end; s++) {
+        final String part = parts[i];
+        if (part.equals(MEASUREMENT)) {
+          append(measurement, segments[s]);
+        } else if (part.equals(FIELD)) {
+          append(field, segments[s]);
+        } else if (!part.isEmpty()) {
+          tags.merge(part, segments[s], (a, b) -> a + SEPARATOR + b);
+        }
+      }
+    }
+
+    if (measurement.length() == 0) {
+      return Optional.empty();
+    }
+
+    return Optional.of(DropwizardMeasurement.create(
+      measurement.toString(),
+      tags,
+      field.length() == 0 ? Optional.empty() : Optional.of(field.toString()),
+      escaping
+    ));
+  }
+
+  /**
+   * Splits {@code name} into its dot-separated segments.
+   */
+  static String[] split(final String name) {
+    final List<String> segments = new ArrayList<>();
+    int start = 0;
+    for (int i = name.indexOf(SEPARATOR); i >= 0; i = name.indexOf(SEPARATOR, start)) {
+      segments.add(name.substring(start, i));
+      start = i + 1;
+    }
+    segments.add(name.substring(start));
+    return segments.toArray(new String[segments.size()]);
+  }
+
+  /**
+   * Returns true if {@code segment} matches {@code pattern}, in which {@code *} matches any characters.
+   */
+  private static boolean glob(final String pattern, final String segment) {
+    final int star = pattern.indexOf('*');
+    if (star < 0) {
+      return pattern.equals(segment);
+    } else if (pattern.length() == 1) {
+      return true;
+    }
+
+    // match the literal runs between stars in order, anchoring the first and last.
+    if (!segment.startsWith(pattern.substring(0, star))) {
+      return false;
+    }
+    int from = star;
+    int runStart = star + 1;
+    for (int next = pattern.indexOf('*', runStart); next >= 0; next = pattern.indexOf('*', runStart)) {
+      final int found = segment.indexOf(pattern.substring(runStart, next), from);
+      if (found < 0) {
+        return false;
+      }
+      from = found + next - runStart;
+      runStart = next + 1;
+    }
+    final String suffix = pattern.substring(runStart);
+    return segment.length() - suffix.length() >= from && segment.endsWith(suffix);
+  }
+
+  private static void append(final StringBuilder joined, final String segment) {
+    if (joined.length() > 0) {
+      joined.append(SEPARATOR);
+    }
+    joined.append(segment);
+  }
+
+  private static ImmutableMap<String, String> defaultTags(final String tags, final String spec) {
+    final ImmutableMap.Builder<String, String> defaults = ImmutableMap.builder();
+    for (final String tag : tags.split(",")) {
+      final int separator = tag.indexOf('=');
+      if (separator <= 0 || separator == tag.length() - 1 || tag.indexOf('=', separator + 1) >= 0) {
+        throw new IllegalArgumentException("default tags must be key=value pairs: " + spec);
+      }
+      defaults.put(tag.substring(0, separator), tag.substring(separator + 1));
+    }
+    return defaults.build();
+  }
+
+  @JsonValue
+  @Override
+  public String toString() {
+    return spec;
+  }
+}
@@ -0,0 +1,249 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The cached assignment of grouped counter or gauge names to their measurement and field.
+ *
+ * <p>Each metric name is assigned a {@link Slot} once: its group and the index of its field in the
+ * group's value arrays. Each report then {@link #put puts} every value into its slot, with primitive
+ * values kept unboxed, and {@link #drain drains} the groups that received values, clearing them
+ * for the next report. Metrics whose series exceed the {@link CardinalityLimiter cardinality caps}
+ * are assigned {@link Slot#dropped dropped} slots, and their values are not put.
+ *
+ * <p>Not thread-safe; callers synchronize on the layout.
+ */
+final class GroupLayout {
+  private final Map<String, Slot> slots = new HashMap<>();
+  private final Map<GroupKey, Group> groups = new HashMap<>();
+  private final List<Group> touched = new ArrayList<>();
+
+  /**
+   * Returns the slot assigned to {@code metricName}, or null if it has not been assigned.
+   */
+  Slot slot(final String metricName) {
+    return slots.get(metricName);
+  }
+
+  /**
+   * Assigns {@code metricName} to the {@code field} of the group identified by {@code key}.
+   *
+   * @param tags       the group's tags, including global tags.
+   * @param parsedName the name parsed to find the group, if any.
+   */
+  Slot assign(final String metricName,
+              final GroupKey key,
+              final ImmutableMap<String, String> tags,
+              final String field,
+              final String parsedName) {
+    final Group group = groups.computeIfAbsent(key, __ -> new Group(key, tags));
+    final Slot slot = new Slot(group, group.index(field), DeltaTracker.seriesId(metricName), parsedName);
+    group.slots++;
+    slots.put(metricName, slot);
+    return slot;
+  }
+
+  /**
+   * Removes the slot of {@code metricName}, and its group once the group has no other slots.
+   *
+   * @return the name parsed to find the removed slot's group, once no other slot of the group shares it,
+   * or else null.
+   */
+  String evict(final String metricName) {
+    final Slot slot = slots.remove(metricName);
+    if (slot == null) {
+      return null;
+    } else if (!slot.dropped()) {
+      if (--slot.group.slots > 0) {
+        return null;
+      }
+      groups.remove(slot.group.key);
+    }
+    return slot.parsedName;
+  }
+
+  /**
+   * Assigns {@code metricName} to a dropped slot.
+   *
+   * @param parsedName the name parsed to find the group, if any.
+   */
+  Slot drop(final String metricName, final String parsedName) {
+    final Slot slot = new Slot(null, -1, 0, parsedName);
+    slots.put(metricName, slot);
+    return slot;
+  }
+
+  /**
+   * Sets the value of {@code slot}'s field for the current report.
+   */
+  void put(final Slot slot, final Object value) {
+    touch(slot, Group.OBJECT).values[slot.index] = value;
+  }
+
+  /**
+   * Sets the integer value of {@code slot}'s field for the current report.
+   */
+  void putLong(final Slot slot, final long value) {
+    touch(slot, Group.LONG).longs[slot.index] = value;
+  }
+
+  /**
+   * Sets the float value of {@code slot}'s field for the current report.
+   */
+  void putDouble(final Slot slot, final double value) {
+    touch(slot, Group.DOUBLE).doubles[slot.index] = value;
+  }
+
+  private Group touch(final Slot slot, final byte kind) {
+    final Group group = slot.group;
+    if (!group.touched) {
+      group.touched = true;
+      touched.add(group);
+    }
+    group.kinds[slot.index] = kind;
+    group.values[slot.index] = null;
+    group.seriesIds[slot.index] = slot.seriesId;
+    return group;
+  }
+
+  /**
+   * Passes each group that received values to {@code consumer}, in order of first assignment,
+   * and clears its values.
+   */
+  void drain(final Consumer<Group> consumer) {
+    try {
+      touched.forEach(consumer);
+    } finally {
+      for (final Group group : touched) {
+        Arrays.fill(group.kinds, Group.NONE);
+        Arrays.fill(group.values, null);
+        group.touched = false;
+      }
+      touched.clear();
+    }
+  }
+
+  /**
+   * A grouped measurement and its fields' values in the current report.
+   */
+  static final class Group {
+    static final byte NONE = 0;
+    static final byte OBJECT = 1;
+    static final byte LONG = 2;
+    static final byte DOUBLE = 3;
+
+    private final GroupKey key;
+    private final ImmutableMap<String, String> tags;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private String[] fields = new String[0];
+    private byte[] kinds = new byte[0];
+    private Object[] values = new Object[0];
+    private long[] longs = new long[0];
+    private double[] doubles = new double[0];
+    private long[] seriesIds = new long[0];
+    private boolean touched;
+    private int slots;
+
+    private Group(final GroupKey key, final ImmutableMap<String, String> tags) {
+      this.key = key;
+      this.tags = tags;
+    }
+
+    GroupKey key() {
+      return key;
+    }
+
+    String measurement() {
+      return key.measurement();
+    }
+
+    ImmutableMap<String, String> tags() {
+      return tags;
+    }
+
+    int size() {
+      return fields.length;
+    }
+
+    String field(final int index) {
+      return fields[index];
+    }
+
+    /**
+     * Returns the kind of value field {@code index} has in the current report:
+     * {@link #NONE}, {@link #OBJECT}, {@link #LONG} or {@link #DOUBLE}.
+     */
+    byte kind(final int index) {
+      return kinds[index];
+    }
+
+    Object value(final int index) {
+      return values[index];
+    }
+
+    long longValue(final int index) {
+      return longs[index];
+    }
+
+    double doubleValue(final int index) {
+      return doubles[index];
+    }
+
+    /**
+     * Returns the series id of the metric whose value field {@code index} holds.
+     */
+    long seriesId(final int index) {
+      return seriesIds[index];
+    }
+
+    private int index(final String field) {
+      return indexes.computeIfAbsent(field, __ -> {
+        final int index = fields.length;
+        fields = Arrays.copyOf(fields, index + 1);
+        kinds = Arrays.copyOf(kinds, index + 1);
+        values = Arrays.copyOf(values, index + 1);
+        longs = Arrays.copyOf(longs, index + 1);
+        doubles = Arrays.copyOf(doubles, index + 1);
+        seriesIds = Arrays.copyOf(seriesIds, index + 1);
+        fields[index] = field;
+        return index;
+      });
+    }
+  }
+
+  /**
+   * A metric name's group and field index, and the name parsed to find them.
+   */
+  static final class Slot {
+    private final Group group;
+    private final int index;
+    private final long seriesId;
+    private final String parsedName;
+
+    private Slot(final Group group, final int index, final long seriesId, final String parsedName) {
+      this.group = group;
+      this.index = index;
+      this.seriesId = seriesId;
+      this.parsedName = parsedName;
+    }
+
+    Group group() {
+      return group;
+    }
+
+    boolean dropped() {
+      return group == null;
+    }
+
+    String field() {
+      return group.field(index);
+    }
+  }
+}
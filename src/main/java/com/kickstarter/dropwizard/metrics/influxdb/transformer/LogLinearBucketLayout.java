@@ -0,0 +1,81 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+import java.util.stream.DoubleStream;
+
+/**
+ * A {@link BucketLayout} that splits each power of ten between {@code min} and {@code max}
+ * into {@code bucketsPerDecade} equal-width buckets, e.g. 1, 2, 3, ..., 9, 10, 20, 30, ...
+ * for nine buckets per decade.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>min</td>
+ *         <td><i>1</i></td>
+ *         <td>the smallest bucket bound.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>max</td>
+ *         <td><i>10000</i></td>
+ *         <td>the largest bucket bound.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>bucketsPerDecade</td>
+ *         <td><i>9</i></td>
+ *         <td>the number of buckets per power of ten.</td>
+ *     </tr>
+ * </table>
+ */
+public class LogLinearBucketLayout implements BucketLayout {
+  @DecimalMin(value = "0", inclusive = false)
+  @JsonProperty
+  private double min = 1;
+
+  @DecimalMin(value = "0", inclusive = false)
+  @JsonProperty
+  private double max = 10_000;
+
+  @Min(1)
+  @JsonProperty
+  private int bucketsPerDecade = 9;
+
+  @VisibleForTesting static LogLinearBucketLayout of(final double min, final double max, final int bucketsPerDecade) {
+    final LogLinearBucketLayout layout = new LogLinearBucketLayout();
+    layout.min = min;
+    layout.max = max;
+    layout.bucketsPerDecade = bucketsPerDecade;
+    return layout;
+  }
+
+  @Override
+  public double[] bounds() {
+    final DoubleStream.Builder bounds = DoubleStream.builder();
+    for (int exponent = (int) Math.floor(Math.log10(min)); Math.pow(10, exponent) <= max; exponent++) {
+      final double decade = Math.pow(10, exponent);
+      for (int i = 0; i < bucketsPerDecade; i++) {
+        // round to avoid accumulating floating point error in bucket names.
+        final double bound = round(decade * (1 + 9.0 * i / bucketsPerDecade), exponent);
+        if (bound >= min && bound <= max) {
+          bounds.add(bound);
+        }
+      }
+    }
+    bounds.add(max);
+    return bounds.build().sorted().distinct().toArray();
+  }
+
+  private static double round(final double value, final int exponent) {
+    final double scale = Math.pow(10, 6 - exponent);
+    return Math.round(value * scale) / scale;
+  }
+}
@@ -0,0 +1,111 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+
+/**
+ * Transforms the entries of a metric map, either on the calling thread or in chunks on a bounded
+ * {@link ForkJoinPool}. Results are always returned in the map's iteration order.
+ */
+public class ParallelCollector implements Closeable {
+  private static final ParallelCollector SEQUENTIAL = new ParallelCollector(null, Integer.MAX_VALUE);
+
+  private final ForkJoinPool pool;
+  private final int chunkSize;
+
+  private ParallelCollector(final ForkJoinPool pool, final int chunkSize) {
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Returns a collector that transforms every entry on the calling thread.
+   */
+  public static ParallelCollector sequential() {
+    return SEQUENTIAL;
+  }
+
+  /**
+   * Returns a collector that transforms maps larger than {@code chunkSize} on {@code parallelism} threads,
+   * or a {@link #sequential()} collector if {@code parallelism} is one.
+   */
+  public static ParallelCollector create(final int parallelism, final int chunkSize) {
+    return parallelism <= 1 ? SEQUENTIAL : new ParallelCollector(new ForkJoinPool(parallelism), chunkSize);
+  }
+
+  /**
+   * Applies {@code transform} to each entry of {@code items}, returning the results in iteration order.
+   */
+  <T, R> List<R> collect(final Map<String, T> items, final BiFunction<String, T, R> transform) {
+    if (pool == null || items.size() <= chunkSize) {
+      final List<R> results = new ArrayList<>(items.size());
+      items.forEach((name, item) -> results.add(transform.apply(name, item)));
+      return results;
+    }
+
+    // copied with toArray, since concurrent maps may change size while they are copied.
+    final List<Map.Entry<String, T>> entries = new ArrayList<>(items.entrySet());
+    final List<R> results = new ArrayList<>(Collections.nCopies(entries.size(), null));
+    pool.invoke(new Chunk<>(entries, results, transform, 0, entries.size()));
+    return results;
+  }
+
+  /**
+   * Stops the collector's pool, if any.
+   */
+  @Override
+  public void close() {
+    if (pool != null) {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Transforms {@code entries[from, to)} into the same indexes of {@code results}, which chunks never resize,
+   * splitting in half until a chunk is at most {@code chunkSize} entries.
+   */
+  private class Chunk<T, R> extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Map.Entry<String, T>> entries;
+    private final List<R> results;
+    private final BiFunction<String, T, R> transform;
+    private final int from;
+    private final int to;
+
+    Chunk(final List<Map.Entry<String, T>> entries,
+          final List<R> results,
+          final BiFunction<String, T, R> transform,
+          final int from,
+          final int to) {
+      this.entries = entries;
+      this.results = results;
+      this.transform = transform;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= chunkSize) {
+        for (int i = from; i < to; i++) {
+          final Map.Entry<String, T> entry = entries.get(i);
+          results.set(i, transform.apply(entry.getKey(), entry.getValue()));
+        }
+        return;
+      }
+
+      final int middle = (from + to) >>> 1;
+      invokeAll(
+        new Chunk<>(entries, results, transform, from, middle),
+        new Chunk<>(entries, results, transform, middle, to)
+      );
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A snapshot of how a {@link DropwizardMeasurementParser} resolved the names it parsed: which templates
+ * matched, how long matching took, and samples of names that matched no template or failed to parse.
+ * Only names missing from the parse cache are counted.
+ */
+@AutoValue
+public abstract class ParserDiagnostics {
+  /**
+   * The number of names matched by each glob template, by specification, then each regex template,
+   * by measurement, in the order they are tried.
+   */
+  public abstract Map<String, Long> templateHits();
+
+  /**
+   * The total time spent matching and parsing names, in nanoseconds.
+   */
+  public abstract long matchNanos();
+
+  /**
+   * The number of names that matched no template, and were parsed as measurement lines.
+   */
+  public abstract long unmatched();
+
+  /**
+   * The number of names that matched no template and could not be parsed as measurement lines.
+   */
+  public abstract long failures();
+
+  /**
+   * Recent names without tags or a field that matched no template, and are reported under their full name.
+   */
+  public abstract List<String> unmatchedSample();
+
+  /**
+   * Recent names that failed to parse, with the reason.
+   */
+  public abstract List<String> failureSample();
+
+  static ParserDiagnostics create(final Map<String, Long> templateHits,
+                                  final long matchNanos,
+                                  final long unmatched,
+                                  final long failures,
+                                  final List<String> unmatchedSample,
+                                  final List<String> failureSample) {
+    return new AutoValue_ParserDiagnostics(
+      templateHits, matchNanos, unmatched, failures, unmatchedSample, failureSample
+    );
+  }
+}
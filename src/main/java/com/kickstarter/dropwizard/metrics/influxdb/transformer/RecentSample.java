@@ -0,0 +1,33 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The most recent distinct strings added, up to a fixed capacity.
+ */
+class RecentSample {
+  private final int capacity;
+  private final Deque<String> recent;
+
+  RecentSample(final int capacity) {
+    this.capacity = capacity;
+    this.recent = new ArrayDeque<>(capacity);
+  }
+
+  synchronized void add(final String s) {
+    if (recent.contains(s)) {
+      return;
+    }
+    if (recent.size() == capacity) {
+      recent.removeFirst();
+    }
+    recent.addLast(s);
+  }
+
+  synchronized ImmutableList<String> snapshot() {
+    return ImmutableList.copyOf(recent);
+  }
+}
@@ -0,0 +1,192 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Matches metric names against an ordered set of {@link TaggedPattern templates}, returning the first match.
+ *
+ * <p>Rather than trying every template's regex in turn, each template is indexed by the literal prefix
+ * its pattern requires, e.g. {@code jvm.gc} for {@code jvm\.gc\.?(?<metric>.*)}, in a trie. A name is
+ * walked through the trie once to find the templates whose prefix it starts with, and only those are
+ * matched, in template order. Templates without a literal prefix are always candidates; those starting
+ * with {@code .*} are first checked for the literal that follows, e.g. {@code .health.}.
+ *
+ * <p>Patterns with top-level alternation are always candidates, since their prefix is not required.
+ * Each template counts the names it matches.
+ */
+final class TemplateMatcher {
+  private final List<Template> templates = new ArrayList<>();
+  private final Node root = new Node();
+  private final Escaping escaping;
+
+  TemplateMatcher(final ImmutableMap<String, TaggedPattern> metricTemplates) {
+    this(metricTemplates, Escaping.SANITIZE);
+  }
+
+  TemplateMatcher(final ImmutableMap<String, TaggedPattern> metricTemplates, final Escaping escaping) {
+    this.escaping = escaping;
+    metricTemplates.forEach((measurement, pattern) -> {
+      final int index = templates.size();
+      final String regex = pattern.pattern();
+      final String prefix = requiredPrefix(regex);
+      templates.add(new Template(measurement, pattern, prefix.isEmpty() ? requiredInfix(regex) : ""));
+      root.insert(prefix, 0, index);
+    });
+  }
+
+  /**
+   * Returns the measurement of the first template matching {@code metricName}, with its matched tags.
+   */
+  Optional<DropwizardMeasurement> match(final String metricName) {
+    final BitSet candidates = new BitSet(templates.size());
+    Node node = root;
+    int depth = 0;
+    while (node != null) {
+      candidates.or(node.templates);
+      node = depth < metricName.length() ? node.children.get(metricName.charAt(depth++)) : null;
+    }
+
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      final Template template = templates.get(i);
+      if (!metricName.contains(template.infix)) {
+        continue;
+      }
+
+      final Optional<Map<String, String>> tags = template.pattern.tags(metricName);
+      if (tags.isPresent()) {
+        template.hits.increment();
+        return Optional.of(DropwizardMeasurement.create(template.measurement, tags.get(), Optional.empty(), escaping));
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the number of names each template matched, by measurement, in template order.
+   */
+  Map<String, Long> hits() {
+    final Map<String, Long> hits = new LinkedHashMap<>(templates.size() * 2);
+    templates.forEach(template -> hits.put(template.measurement, template.hits.sum()));
+    return hits;
+  }
+
+  /**
+   * Returns the literal text every match of {@code regex} starts with, or an empty string.
+   */
+  static String requiredPrefix(final String regex) {
+    if (hasAlternation(regex)) {
+      return "";
+    }
+    return literalRun(regex, regex.startsWith("^") ? 1 : 0);
+  }
+
+  /**
+   * Returns the literal text following a leading {@code .*} in {@code regex}, which every match contains,
+   * or an empty string.
+   */
+  static String requiredInfix(final String regex) {
+    if (hasAlternation(regex)) {
+      return "";
+    }
+
+    final int start = regex.startsWith("^") ? 1 : 0;
+    if (regex.startsWith(".*?", start)) {
+      return literalRun(regex, start + 3);
+    } else if (regex.startsWith(".*", start)) {
+      return literalRun(regex, start + 2);
+    }
+    return "";
+  }
+
+  /**
+   * Returns the literal characters of {@code regex} from {@code start} up to its first metacharacter,
+   * without a final character that is quantified.
+   */
+  private static String literalRun(final String regex, final int start) {
+    final StringBuilder literal = new StringBuilder();
+    int i = start;
+    while (i < regex.length()) {
+      final char c = regex.charAt(i);
+      if (c == '*' || c == '?' || c == '+' || c == '{') {
+        // the previous character is optional or repeated.
+        if (literal.length() > 0) {
+          literal.setLength(literal.length() - 1);
+        }
+        break;
+      } else if (c == '\\') {
+        if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+          // a character class, boundary, back-reference or quote.
+          break;
+        }
+        literal.append(regex.charAt(i + 1));
+        i += 2;
+      } else if (".()[]^$|".indexOf(c) >= 0) {
+        break;
+      } else {
+        literal.append(c);
+        i++;
+      }
+    }
+    return literal.toString();
+  }
+
+  /**
+   * Returns true if {@code regex} has an alternation outside character classes, conservatively including
+   * alternations within groups.
+   */
+  private static boolean hasAlternation(final String regex) {
+    boolean inClass = false;
+    for (int i = 0; i < regex.length(); i++) {
+      final char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == ']') {
+        inClass = false;
+      } else if (c == '|' && !inClass) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class Template {
+    private final String measurement;
+    private final TaggedPattern pattern;
+    private final String infix;
+    private final LongAdder hits = new LongAdder();
+
+    Template(final String measurement, final TaggedPattern pattern, final String infix) {
+      this.measurement = measurement;
+      this.pattern = pattern;
+      this.infix = infix;
+    }
+  }
+
+  /**
+   * A trie node, holding the templates whose prefix ends at it.
+   */
+  private static class Node {
+    private final Map<Character, Node> children = new HashMap<>();
+    private final BitSet templates = new BitSet();
+
+    void insert(final String prefix, final int depth, final int template) {
+      if (depth == prefix.length()) {
+        templates.set(template);
+      } else {
+        children.computeIfAbsent(prefix.charAt(depth), __ -> new Node()).insert(prefix, depth + 1, template);
+      }
+    }
+  }
+}
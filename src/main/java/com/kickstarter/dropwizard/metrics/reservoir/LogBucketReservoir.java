@@ -0,0 +1,117 @@
+package com.kickstarter.dropwizard.metrics.reservoir;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free {@link Reservoir} that counts every update in log-linear buckets,
+ * and resets when it is read.
+ *
+ * <p>Updates increment a bucket counter in one of several stripes chosen by thread,
+ * so concurrent request threads rarely contend on the same counters. Stripes are
+ * allocated on first use.
+ *
+ * <p>{@link #getSnapshot()} drains every stripe into a {@link LogBucketSnapshot} of the updates
+ * since the previous snapshot; no update is lost or counted twice. Because reading resets the
+ * reservoir, a metric backed by it should be read by a single reporter.
+ *
+ * <p>Percentiles are accurate to within half a bucket, i.e. {@code 2^-(precision + 1)} of the value;
+ * the mean is exact. Negative values are counted as zero.
+ */
+public class LogBucketReservoir implements Reservoir {
+  /**
+   * The default precision: 16 buckets per power of two, for percentiles within about 3% of the value.
+   */
+  public static final int DEFAULT_PRECISION = 4;
+
+  private static final int MAX_STRIPES = 16;
+
+  private final LogBuckets buckets;
+  private final AtomicReferenceArray<AtomicLongArray> stripes;
+  private final AtomicLongArray sums;
+  private final int stripeMask;
+
+  public LogBucketReservoir() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * @param precision the number of bits of each value's mantissa that are kept, from 1 to 10.
+   */
+  public LogBucketReservoir(final int precision) {
+    if (precision < 1 || precision > 10) {
+      throw new IllegalArgumentException("precision must be between 1 and 10: " + precision);
+    }
+
+    final int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+    this.buckets = new LogBuckets(precision);
+    this.stripes = new AtomicReferenceArray<>(stripeCount);
+    this.sums = new AtomicLongArray(stripeCount);
+    this.stripeMask = stripeCount - 1;
+  }
+
+  /**
+   * Returns the number of updates since the last snapshot.
+   */
+  @Override
+  public int size() {
+    long count = 0;
+    for (int s = 0; s < stripes.length(); s++) {
+      final AtomicLongArray stripe = stripes.get(s);
+      if (stripe != null) {
+        for (int i = 0; i < stripe.length(); i++) {
+          count += stripe.get(i);
+        }
+      }
+    }
+    return (int) Math.min(count, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void update(final long value) {
+    final int s = stripe();
+    AtomicLongArray counts = stripes.get(s);
+    if (counts == null) {
+      stripes.compareAndSet(s, null, new AtomicLongArray(buckets.size()));
+      counts = stripes.get(s);
+    }
+
+    counts.incrementAndGet(buckets.index(value));
+    sums.addAndGet(s, Math.max(value, 0L));
+  }
+
+  /**
+   * Returns the updates since the last snapshot, and resets the reservoir.
+   */
+  @Override
+  public Snapshot getSnapshot() {
+    final long[] counts = new long[buckets.size()];
+    long sum = 0;
+
+    for (int s = 0; s < stripes.length(); s++) {
+      final AtomicLongArray stripe = stripes.get(s);
+      if (stripe == null) {
+        continue;
+      }
+
+      for (int i = 0; i < counts.length; i++) {
+        // skip the write for empty buckets, which most are.
+        if (stripe.get(i) != 0) {
+          counts[i] += stripe.getAndSet(i, 0);
+        }
+      }
+      sum += sums.getAndSet(s, 0);
+    }
+
+    return new LogBucketSnapshot(buckets, counts, sum);
+  }
+
+  private int stripe() {
+    // spread sequential thread ids across stripes.
+    final long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+    return (int) (id >>> 32) & stripeMask;
+  }
+}
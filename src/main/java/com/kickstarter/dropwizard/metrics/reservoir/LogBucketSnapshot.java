@@ -0,0 +1,158 @@
+package com.kickstarter.dropwizard.metrics.reservoir;
+
+import com.codahale.metrics.Snapshot;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link Snapshot} of the bucket counts of a {@link LogBucketReservoir}.
+ *
+ * <p>Statistics are computed from the buckets directly. Each bucket's values are reported
+ * as its midpoint, except that {@link #getMin()} and {@link #getMax()} report the bounds of the
+ * lowest and highest non-empty buckets.
+ */
+public class LogBucketSnapshot extends Snapshot {
+  private final LogBuckets buckets;
+  private final long[] counts;
+  private final long count;
+  private final long sum;
+  private final int first;
+  private final int last;
+
+  LogBucketSnapshot(final LogBuckets buckets, final long[] counts, final long sum) {
+    this.buckets = buckets;
+    this.counts = counts;
+    this.sum = sum;
+
+    long total = 0;
+    int firstNonEmpty = -1;
+    int lastNonEmpty = -1;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        total += counts[i];
+        lastNonEmpty = i;
+        if (firstNonEmpty < 0) {
+          firstNonEmpty = i;
+        }
+      }
+    }
+
+    this.count = total;
+    this.first = firstNonEmpty;
+    this.last = lastNonEmpty;
+  }
+
+  /**
+   * Returns the number of values in the snapshot.
+   */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * Returns the number of values less than or equal to each of the ascending {@code bounds},
+   * counting each bucket at its midpoint.
+   */
+  public long[] cumulativeCounts(final double[] bounds) {
+    final long[] cumulative = new long[bounds.length];
+    long total = 0;
+    int bucket = Math.max(first, 0);
+
+    for (int b = 0; b < bounds.length; b++) {
+      while (bucket <= last && buckets.value(bucket) <= bounds[b]) {
+        total += counts[bucket++];
+      }
+      cumulative[b] = total;
+    }
+    return cumulative;
+  }
+
+  @Override
+  public double getValue(final double quantile) {
+    if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+      throw new IllegalArgumentException(quantile + " is not in [0..1]");
+    }
+
+    if (count == 0) {
+      return 0.0;
+    }
+
+    final long rank = Math.max(1L, (long) Math.ceil(quantile * count));
+    long seen = 0;
+    for (int i = first; i <= last; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return buckets.value(i);
+      }
+    }
+    return buckets.value(last);
+  }
+
+  /**
+   * Returns every value in the snapshot, in order, at its bucket's midpoint.
+   * This allocates one long per update; prefer {@link #getValue(double)} or {@link #cumulativeCounts(double[])}.
+   */
+  @Override
+  public long[] getValues() {
+    final long[] values = new long[(int) Math.min(count, Integer.MAX_VALUE - 8)];
+    int v = 0;
+    for (int i = first; i <= last && v < values.length; i++) {
+      final long value = buckets.value(i);
+      for (long c = 0; c < counts[i] && v < values.length; c++) {
+        values[v++] = value;
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public int size() {
+    return (int) Math.min(count, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public long getMax() {
+    return count == 0 ? 0 : buckets.upperBound(last);
+  }
+
+  @Override
+  public double getMean() {
+    return count == 0 ? 0.0 : (double) sum / count;
+  }
+
+  @Override
+  public long getMin() {
+    return count == 0 ? 0 : buckets.lowerBound(first);
+  }
+
+  @Override
+  public double getStdDev() {
+    if (count <= 1) {
+      return 0.0;
+    }
+
+    final double mean = getMean();
+    double variance = 0.0;
+    for (int i = first; i <= last; i++) {
+      if (counts[i] != 0) {
+        final double diff = buckets.value(i) - mean;
+        variance += counts[i] * diff * diff;
+      }
+    }
+    return Math.sqrt(variance / (count - 1));
+  }
+
+  @Override
+  public void dump(final OutputStream output) {
+    try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+      for (int i = Math.max(first, 0); i <= last; i++) {
+        if (counts[i] != 0) {
+          out.printf("%d %d%n", buckets.value(i), counts[i]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.kickstarter.dropwizard.metrics.reservoir;
+
+/**
+ * The log-linear bucket layout of a {@link LogBucketReservoir}.
+ *
+ * <p>Values below {@code 2^precision} have a bucket each. Each larger power of two is split into
+ * {@code 2^precision} equal-width buckets, so a bucket's width is at most {@code 2^-precision}
+ * of its lower bound.
+ */
+final class LogBuckets {
+  private final int precision;
+  private final int subBuckets;
+  private final int size;
+
+  LogBuckets(final int precision) {
+    this.precision = precision;
+    this.subBuckets = 1 << precision;
+    // the largest long has exponent 62, i.e. a shift of (62 - precision).
+    this.size = (62 - precision + 2) * subBuckets;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the bucket index of {@code value}; negative values are counted as zero.
+   */
+  int index(final long value) {
+    if (value < subBuckets) {
+      return value < 0 ? 0 : (int) value;
+    }
+
+    final int shift = 63 - Long.numberOfLeadingZeros(value) - precision;
+    final int mantissa = (int) (value >>> shift);
+    return (shift + 1) * subBuckets + mantissa - subBuckets;
+  }
+
+  /**
+   * Returns the smallest value counted in bucket {@code index}.
+   */
+  long lowerBound(final int index) {
+    if (index < subBuckets) {
+      return index;
+    }
+
+    final int shift = index / subBuckets - 1;
+    final long mantissa = index % subBuckets + subBuckets;
+    return mantissa << shift;
+  }
+
+  /**
+   * Returns the largest value counted in bucket {@code index}.
+   */
+  long upperBound(final int index) {
+    return index == size - 1 ? Long.MAX_VALUE : lowerBound(index + 1) - 1;
+  }
+
+  /**
+   * Returns the value reported for bucket {@code index}: the midpoint of its bounds.
+   */
+  long value(final int index) {
+    final long lower = lowerBound(index);
+    return lower + (upperBound(index) - lower) / 2;
+  }
+}
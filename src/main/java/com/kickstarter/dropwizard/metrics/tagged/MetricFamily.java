@@ -0,0 +1,225 @@
+package com.kickstarter.dropwizard.metrics.tagged;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.MetricsUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * The metrics of one measurement, one per combination of values of its tag keys.
+ *
+ * <pre>{@code
+ *   final MetricFamily<TaggedTimer> requests = tagged.timer("Http", "route", "status");
+ *   requests.get(route, status).update(elapsed, TimeUnit.NANOSECONDS);
+ * }</pre>
+ *
+ * <p>Metrics are looked up in a hash trie with one level per tag key, so a lookup hashes each tag
+ * value rather than building and hashing the metric's name. Each metric is created and registered
+ * on first use, under its {@link MetricsUtils#influxName InfluxDB name}.
+ *
+ * <p>The family's {@link TaggedMetrics} listens to the registry for the removal of its metrics,
+ * whether by {@link #remove} or directly from the registry, and the family drops them from the trie,
+ * pruning nodes left empty. Metrics looked up
+ * after a removal are checked against the registry once, so that a lookup racing a removal never keeps
+ * returning a metric that is no longer registered.
+ */
+public final class MetricFamily<T extends TaggedMetric> {
+  private final MetricRegistry registry;
+  private final String measurement;
+  private final ImmutableList<String> tagKeys;
+  private final Class<T> type;
+  private final BiFunction<String, Map<String, String>, T> factory;
+  private final Node<T> root = new Node<>(null, null);
+  private final Map<String, Node<T>> leaves = new ConcurrentHashMap<>();
+  private final AtomicLong removals = new AtomicLong();
+
+  MetricFamily(final MetricRegistry registry,
+               final String measurement,
+               final List<String> tagKeys,
+               final Class<T> type,
+               final BiFunction<String, Map<String, String>, T> factory) {
+    if (tagKeys.stream().distinct().count() != tagKeys.size()) {
+      throw new IllegalArgumentException("tag keys must be distinct: " + tagKeys);
+    }
+
+    this.registry = registry;
+    this.measurement = measurement;
+    this.tagKeys = ImmutableList.copyOf(tagKeys);
+    this.type = type;
+    this.factory = factory;
+  }
+
+  public String measurement() {
+    return measurement;
+  }
+
+  public List<String> tagKeys() {
+    return tagKeys;
+  }
+
+  /**
+   * Returns the metric tagged with {@code tagValues}, in the order of the {@link #tagKeys tag keys},
+   * registering it on first use.
+   *
+   * @throws IllegalArgumentException if the number of values does not match the number of keys, or the
+   * metric's name is registered to a metric of another type.
+   */
+  public T get(final String... tagValues) {
+    final Node<T> leaf = leaf(tagValues);
+    final T metric = leaf.metric;
+    if (metric != null && leaf.removals == removals.get()) {
+      return metric;
+    }
+
+    synchronized (leaf) {
+      // read before the check, so that a removal after it is checked on the next lookup.
+      final long current = removals.get();
+      if (leaf.metric == null || registry.getMetrics().get(leaf.name) != leaf.metric) {
+        final Map<String, String> tags = tags(tagValues);
+        leaf.name = name(tags);
+        leaf.metric = register(leaf.name, tags);
+      }
+      leaves.put(leaf.name, leaf);
+      leaf.removals = current;
+      return leaf.metric;
+    }
+  }
+
+  /**
+   * Removes the metric tagged with {@code tagValues} from the family and the registry.
+   *
+   * @return true if the metric was removed.
+   * @throws IllegalArgumentException if the number of values does not match the number of keys.
+   */
+  public boolean remove(final String... tagValues) {
+    checkSize(tagValues);
+    Node<T> leaf = root;
+    for (int i = 0; i < tagValues.length && leaf != null; i++) {
+      leaf = leaf.children.get(tagValues[i]);
+    }
+    if (leaf == null) {
+      return false;
+    }
+
+    final String name;
+    synchronized (leaf) {
+      if (leaf.metric == null) {
+        return false;
+      }
+      name = leaf.name;
+    }
+    // the registry notifies the family's TaggedMetrics, and the family drops the metric from the trie.
+    return registry.remove(name);
+  }
+
+  /**
+   * Returns the number of nodes in the trie, not including its root.
+   */
+  @VisibleForTesting int nodes() {
+    return nodes(root) - 1;
+  }
+
+  private static int nodes(final Node<?> node) {
+    return 1 + node.children.values().stream().mapToInt(MetricFamily::nodes).sum();
+  }
+
+  private Node<T> leaf(final String[] tagValues) {
+    checkSize(tagValues);
+    Node<T> node = root;
+    for (final String value : tagValues) {
+      final Node<T> child = node.children.get(value);
+      final Node<T> parent = node;
+      node = child != null ? child : node.children.computeIfAbsent(value, __ -> new Node<>(parent, value));
+    }
+    return node;
+  }
+
+  private void checkSize(final String[] tagValues) {
+    if (tagValues.length != tagKeys.size()) {
+      throw new IllegalArgumentException(
+        String.format("expected %d tag values for %s, got %d", tagKeys.size(), tagKeys, tagValues.length)
+      );
+    }
+  }
+
+  /**
+   * Returns the measurement as it prefixes the names of the family's metrics.
+   */
+  String namePrefix() {
+    return name(ImmutableMap.of());
+  }
+
+  /**
+   * Drops the metric named {@code name} from the trie, if it is the family's, and prunes the nodes left empty.
+   */
+  void removed(final String name) {
+    final Node<T> leaf = leaves.remove(name);
+    if (leaf == null) {
+      return;
+    }
+
+    removals.incrementAndGet();
+    synchronized (leaf) {
+      leaf.metric = null;
+    }
+
+    // a lookup racing the pruning may register through a pruned node; later lookups then find its metric by name.
+    for (Node<T> node = leaf; node.parent != null; node = node.parent) {
+      if (node.metric != null || !node.children.isEmpty()) {
+        break;
+      }
+      node.parent.children.remove(node.value, node);
+    }
+  }
+
+  private T register(final String name, final Map<String, String> tags) {
+    try {
+      return registry.register(name, factory.apply(measurement, tags));
+    } catch (final IllegalArgumentException e) {
+      // registered by another family of the same measurement and tag keys.
+      final Metric existing = registry.getMetrics().get(name);
+      if (type.isInstance(existing)) {
+        return type.cast(existing);
+      }
+      throw new IllegalArgumentException(name + " is already used for a different type of metric", e);
+    }
+  }
+
+  private Map<String, String> tags(final String[] tagValues) {
+    final ImmutableMap.Builder<String, String> tags = ImmutableMap.builder();
+    for (int i = 0; i < tagValues.length; i++) {
+      tags.put(tagKeys.get(i), tagValues[i]);
+    }
+    return tags.build();
+  }
+
+  private String name(final Map<String, String> tags) {
+    return MetricsUtils.influxName(measurement, tags);
+  }
+
+  /**
+   * A trie node, holding the nodes of the next tag's values, or a metric once every tag has a value.
+   */
+  private static class Node<T> {
+    private final Node<T> parent;
+    private final String value;
+    private final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+    private volatile T metric;
+    private volatile long removals;
+    // guarded by the node.
+    private String name;
+
+    Node(final Node<T> parent, final String value) {
+      this.parent = parent;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.kickstarter.dropwizard.metrics.tagged;
+
+import com.codahale.metrics.Counter;
+
+import java.util.Map;
+
+/**
+ * A {@link Counter} with an InfluxDB measurement and tags.
+ */
+public class TaggedCounter extends Counter implements TaggedMetric {
+  private final String measurement;
+  private final Map<String, String> tags;
+
+  public TaggedCounter(final String measurement, final Map<String, String> tags) {
+    this.measurement = measurement;
+    this.tags = tags;
+  }
+
+  @Override
+  public String measurement() {
+    return measurement;
+  }
+
+  @Override
+  public Map<String, String> tags() {
+    return tags;
+  }
+}
@@ -0,0 +1,30 @@
+package com.kickstarter.dropwizard.metrics.tagged;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Reservoir;
+
+import java.util.Map;
+
+/**
+ * A {@link Histogram} with an InfluxDB measurement and tags.
+ */
+public class TaggedHistogram extends Histogram implements TaggedMetric {
+  private final String measurement;
+  private final Map<String, String> tags;
+
+  public TaggedHistogram(final String measurement, final Map<String, String> tags, final Reservoir reservoir) {
+    super(reservoir);
+    this.measurement = measurement;
+    this.tags = tags;
+  }
+
+  @Override
+  public String measurement() {
+    return measurement;
+  }
+
+  @Override
+  public Map<String, String> tags() {
+    return tags;
+  }
+}
@@ -0,0 +1,23 @@
+package com.kickstarter.dropwizard.metrics.tagged;
+
+import com.codahale.metrics.Metric;
+
+import java.util.Map;
+
+/**
+ * A {@link Metric} that carries its InfluxDB measurement and tags, which the InfluxDB reporter
+ * reports without parsing the metric's name.
+ *
+ * @see TaggedMetrics
+ */
+public interface TaggedMetric extends Metric {
+  /**
+   * Returns the measurement the metric is reported as.
+   */
+  String measurement();
+
+  /**
+   * Returns the tags the metric is reported with, not including global tags.
+   */
+  Map<String, String> tags();
+}
@@ -0,0 +1,134 @@
+package com.kickstarter.dropwizard.metrics.tagged;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.Reservoir;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Declares {@link MetricFamily families} of tagged metrics in a {@link MetricRegistry}, whose metrics
+ * are looked up by their tag values rather than by name.
+ *
+ * <pre>{@code
+ *   final TaggedMetrics tagged = new TaggedMetrics(registry);
+ *   final MetricFamily<TaggedTimer> requests = tagged.timer("Http", "route", "status");
+ *
+ *   requests.get("/cats", "200").update(elapsed, TimeUnit.NANOSECONDS);
+ * }</pre>
+ *
+ * <p>The metrics are {@link TaggedMetric tagged} with their measurement and tags, which the InfluxDB
+ * reporter reports without parsing their names.
+ *
+ * <p>A single registry listener drops removed metrics from the families of their measurement.
+ * Families are held for the life of the {@code TaggedMetrics}, so each should be declared once.
+ */
+public class TaggedMetrics {
+  private final MetricRegistry registry;
+  private final Map<String, List<MetricFamily<?>>> families = new ConcurrentHashMap<>();
+
+  public TaggedMetrics(final MetricRegistry registry) {
+    this.registry = registry;
+    registry.addListener(new Removals());
+  }
+
+  /**
+   * Returns a family of counters of {@code measurement}, tagged with {@code tagKeys}.
+   */
+  public MetricFamily<TaggedCounter> counter(final String measurement, final String... tagKeys) {
+    return family(measurement, tagKeys, TaggedCounter.class, TaggedCounter::new);
+  }
+
+  /**
+   * Returns a family of meters of {@code measurement}, tagged with {@code tagKeys}.
+   */
+  public MetricFamily<TaggedMeter> meter(final String measurement, final String... tagKeys) {
+    return family(measurement, tagKeys, TaggedMeter.class, TaggedMeter::new);
+  }
+
+  /**
+   * Returns a family of timers of {@code measurement}, tagged with {@code tagKeys}.
+   */
+  public MetricFamily<TaggedTimer> timer(final String measurement, final String... tagKeys) {
+    return timer(measurement, ExponentiallyDecayingReservoir::new, tagKeys);
+  }
+
+  /**
+   * Returns a family of timers of {@code measurement}, tagged with {@code tagKeys}, each backed by a new
+   * {@code reservoir}.
+   */
+  public MetricFamily<TaggedTimer> timer(final String measurement,
+                                         final Supplier<Reservoir> reservoir,
+                                         final String... tagKeys) {
+    return family(measurement, tagKeys, TaggedTimer.class, (m, tags) -> new TaggedTimer(m, tags, reservoir.get()));
+  }
+
+  /**
+   * Returns a family of histograms of {@code measurement}, tagged with {@code tagKeys}.
+   */
+  public MetricFamily<TaggedHistogram> histogram(final String measurement, final String... tagKeys) {
+    return histogram(measurement, ExponentiallyDecayingReservoir::new, tagKeys);
+  }
+
+  /**
+   * Returns a family of histograms of {@code measurement}, tagged with {@code tagKeys}, each backed by a new
+   * {@code reservoir}.
+   */
+  public MetricFamily<TaggedHistogram> histogram(final String measurement,
+                                                 final Supplier<Reservoir> reservoir,
+                                                 final String... tagKeys) {
+    return family(
+      measurement,
+      tagKeys,
+      TaggedHistogram.class,
+      (m, tags) -> new TaggedHistogram(m, tags, reservoir.get())
+    );
+  }
+
+  private <T extends TaggedMetric> MetricFamily<T> family(final String measurement,
+                                                         final String[] tagKeys,
+                                                         final Class<T> type,
+                                                         final BiFunction<String, Map<String, String>, T> factory) {
+    final MetricFamily<T> family = new MetricFamily<>(registry, measurement, Arrays.asList(tagKeys), type, factory);
+    families.computeIfAbsent(family.namePrefix(), __ -> new CopyOnWriteArrayList<>()).add(family);
+    return family;
+  }
+
+  /**
+   * Drops metrics from the families of their measurement as they are removed from the registry.
+   */
+  private class Removals extends MetricRegistryListener.Base {
+    @Override public void onCounterRemoved(final String name) {
+      removed(name);
+    }
+
+    @Override public void onHistogramRemoved(final String name) {
+      removed(name);
+    }
+
+    @Override public void onMeterRemoved(final String name) {
+      removed(name);
+    }
+
+    @Override public void onTimerRemoved(final String name) {
+      removed(name);
+    }
+
+    private void removed(final String name) {
+      // sanitized measurements never contain a comma, so the name's measurement ends at the first one.
+      final int tagsIndex = name.indexOf(',');
+      final List<MetricFamily<?>> measurementFamilies =
+        families.get(tagsIndex == -1 ? name : name.substring(0, tagsIndex));
+      if (measurementFamilies != null) {
+        measurementFamilies.forEach(family -> family.removed(name));
+      }
+    }
+  }
+}
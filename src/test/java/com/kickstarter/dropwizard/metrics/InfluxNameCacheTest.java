@@ -0,0 +1,68 @@
+package com.kickstarter.dropwizard.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.Escaping;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class InfluxNameCacheTest {
+  @Test
+  public void testName() {
+    final InfluxNameCache names = new InfluxNameCache(16, Escaping.SANITIZE);
+
+    assertEquals("should build untagged names", "Http", names.name("Http"));
+    assertEquals("should build tagged names",
+      "Http,route=/cats,status=200", names.name("Http", "route", "/cats", "status", "200"));
+    assertEquals("should build field names",
+      "Http,route=/cats size", names.fieldName("Http", "size", "route", "/cats"));
+    assertEquals("should build names from maps",
+      "Http,route=/cats,status=200", names.name("Http", ImmutableMap.of("route", "/cats", "status", "200")));
+    assertEquals("should sanitize names", "Ht-tp,route=a-b", names.name("Ht tp", "route", "a,b"));
+  }
+
+  @Test
+  public void testName_ReturnsCachedInstance() {
+    final InfluxNameCache names = new InfluxNameCache(16, Escaping.SANITIZE);
+
+    final String name = names.name("Http", "route", "/cats", "status", "200");
+    assertSame("should return the cached name", name, names.name("Http", "route", "/cats", "status", "200"));
+
+    final String fieldName = names.fieldName("Http", "size", "route", "/cats");
+    assertSame("should return the cached field name", fieldName, names.fieldName("Http", "size", "route", "/cats"));
+
+    final Map<String, String> tags = new HashMap<>();
+    tags.put("route", "/cats");
+    final String mapName = names.name("Http", tags);
+    assertSame("should return the cached name of equal maps", mapName, names.name("Http", ImmutableMap.of("route", "/cats")));
+
+    tags.put("route", "/dogs");
+    assertEquals("should not be affected by changes to the tags", "Http,route=/dogs", names.name("Http", tags));
+  }
+
+  @Test
+  public void testName_Bounded() {
+    final InfluxNameCache names = new InfluxNameCache(4, Escaping.SANITIZE);
+
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("should build names beyond the cache size",
+        "Http,id=" + i, names.name("Http", "id", Integer.toString(i)));
+    }
+    assertEquals("should rebuild evicted names", "Http,id=0", names.name("Http", "id", "0"));
+  }
+
+  @Test
+  public void testName_Escaping() {
+    final InfluxNameCache names = new InfluxNameCache(16, Escaping.BACKSLASH);
+    assertEquals("should escape names", "Ht\\ tp,route=a\\,b", names.name("Ht tp", "route", "a,b"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testName_UnpairedTags() {
+    new InfluxNameCache(16, Escaping.SANITIZE).name("Http", "route", "/cats", "status");
+  }
+}
@@ -0,0 +1,66 @@
+package com.kickstarter.dropwizard.metrics;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.reservoir.LogBucketSnapshot;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsUtilsTest {
+  @Test
+  public void testInfluxName() {
+    assertEquals("should build names from tag pairs",
+      MetricsUtils.influxName("Http", ImmutableMap.of("route", "/cats", "status", "200")),
+      MetricsUtils.influxName("Http", "route", "/cats", "status", "200"));
+    assertEquals("should build field names from tag pairs",
+      MetricsUtils.influxName("Http", "size", ImmutableMap.of("route", "/cats")),
+      MetricsUtils.influxFieldName("Http", "size", "route", "/cats"));
+    assertSame("should return the cached name",
+      MetricsUtils.influxName("Http", "route", "/cats"),
+      MetricsUtils.influxName("Http", "route", "/cats"));
+  }
+
+  @Test
+  public void testLogBucketTimer() {
+    final MetricRegistry registry = new MetricRegistry();
+    final Timer timer = MetricsUtils.logBucketTimer(registry, "timer");
+
+    assertTrue("should back the timer with a log-bucket reservoir", timer.getSnapshot() instanceof LogBucketSnapshot);
+    assertSame("should return the registered timer", timer, MetricsUtils.logBucketTimer(registry, "timer"));
+  }
+
+  @Test
+  public void testLogBucketHistogram() {
+    final MetricRegistry registry = new MetricRegistry();
+    final Histogram histogram = MetricsUtils.logBucketHistogram(registry, "histogram");
+
+    assertTrue("should back the histogram with a log-bucket reservoir", histogram.getSnapshot() instanceof LogBucketSnapshot);
+    assertSame("should return the registered histogram", histogram, MetricsUtils.logBucketHistogram(registry, "histogram"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLogBucketTimer_RegisteredAsOtherType() {
+    final MetricRegistry registry = new MetricRegistry();
+    registry.counter("metric");
+    MetricsUtils.logBucketTimer(registry, "metric");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLogBucketTimer_RegisteredWithOtherReservoir() {
+    final MetricRegistry registry = new MetricRegistry();
+    registry.timer("timer");
+    MetricsUtils.logBucketTimer(registry, "timer");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLogBucketHistogram_RegisteredWithOtherReservoir() {
+    final MetricRegistry registry = new MetricRegistry();
+    registry.histogram("histogram");
+    MetricsUtils.logBucketHistogram(registry, "histogram");
+  }
+}
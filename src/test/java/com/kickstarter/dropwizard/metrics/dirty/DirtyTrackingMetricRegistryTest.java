@@ -0,0 +1,72 @@
+package com.kickstarter.dropwizard.metrics.dirty;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.UniformReservoir;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DirtyTrackingMetricRegistryTest {
+  @Test
+  public void testMetrics() {
+    final MetricRegistry registry = new DirtyTrackingMetricRegistry();
+
+    assertTrue("should create dirty counters", registry.counter("counter") instanceof DirtyCounter);
+    assertTrue("should create dirty histograms", registry.histogram("histogram") instanceof DirtyHistogram);
+    assertTrue("should create dirty meters", registry.meter("meter") instanceof DirtyMeter);
+    assertTrue("should create dirty timers", registry.timer("timer") instanceof DirtyTimer);
+    assertSame("should return the registered metric", registry.timer("timer"), registry.timer("timer"));
+  }
+
+  @Test
+  public void testMetrics_Registered() {
+    final MetricRegistry registry = new DirtyTrackingMetricRegistry();
+    final Counter counter = registry.register("counter", new Counter());
+
+    assertSame("should return metrics registered directly", counter, registry.counter("counter"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMetrics_OtherType() {
+    final MetricRegistry registry = new DirtyTrackingMetricRegistry();
+    registry.meter("metric");
+    registry.timer("metric");
+  }
+
+  @Test
+  public void testMarkClean() throws Exception {
+    final DirtyCounter counter = new DirtyCounter();
+    final DirtyHistogram histogram = new DirtyHistogram(new UniformReservoir());
+    final DirtyMeter meter = new DirtyMeter();
+    final DirtyTimer timer = new DirtyTimer();
+
+    for (final DirtyMetric metric : new DirtyMetric[] {counter, histogram, meter, timer}) {
+      assertTrue("should start dirty", metric.markClean());
+      assertFalse("should be clean until updated", metric.markClean());
+    }
+
+    counter.inc();
+    assertTrue("should mark incremented counters dirty", counter.markClean());
+    counter.dec();
+    assertTrue("should mark decremented counters dirty", counter.markClean());
+
+    histogram.update(5);
+    assertTrue("should mark updated histograms dirty", histogram.markClean());
+
+    meter.mark();
+    assertTrue("should mark marked meters dirty", meter.markClean());
+
+    timer.update(5, TimeUnit.MILLISECONDS);
+    assertTrue("should mark updated timers dirty", timer.markClean());
+    timer.time().stop();
+    assertTrue("should mark timers dirty when a context stops", timer.markClean());
+    timer.time(() -> "timed");
+    assertTrue("should mark timers dirty when an event is timed", timer.markClean());
+    assertFalse("should be clean once reported", timer.markClean());
+  }
+}
@@ -0,0 +1,59 @@
+package com.kickstarter.dropwizard.metrics.gauge;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitiveJvmGaugesTest {
+  @Test
+  public void testMemory() {
+    final Map<String, Metric> gauges = PrimitiveJvmGauges.memory().getMetrics();
+
+    assertTrue("expected a long heap usage gauge", gauges.get("heap.used") instanceof LongGauge);
+    assertTrue("expected a double heap usage ratio gauge", gauges.get("heap.usage") instanceof DoubleGauge);
+    assertTrue("expected heap to be in use", ((LongGauge) gauges.get("heap.used")).getLongValue() > 0);
+    assertTrue(
+      "expected every gauge to be primitive",
+      gauges.values().stream().allMatch(PrimitiveJvmGaugesTest::isPrimitive)
+    );
+  }
+
+  @Test
+  public void testThreads() {
+    final Map<String, Metric> gauges = PrimitiveJvmGauges.threads().getMetrics();
+    assertTrue("expected a live thread", ((LongGauge) gauges.get("count")).getLongValue() > 0);
+    assertEquals("expected no deadlocks", 0L, ((LongGauge) gauges.get("deadlock.count")).getLongValue());
+  }
+
+  @Test
+  public void testRegisterAll() {
+    final MetricRegistry registry = new MetricRegistry();
+    final Gauge<Integer> boxed = () -> 1;
+    registry.register("jvm.threads.count", boxed);
+    registry.register("jvm.threads.deadlocks", boxed);
+    registry.register("jvm.threads.blocked.count", boxed);
+    registry.register("jvm.attribute.uptime", boxed);
+
+    PrimitiveJvmGauges.registerAll(registry);
+
+    assertTrue("should replace existing gauges", registry.getGauges().get("jvm.threads.count") instanceof LongGauge);
+    assertEquals("should keep gauges without a primitive version",
+      boxed, registry.getGauges().get("jvm.threads.deadlocks"));
+    assertEquals("should keep per-state thread counts", boxed, registry.getGauges().get("jvm.threads.blocked.count"));
+    assertEquals("should keep unrelated gauges", boxed, registry.getGauges().get("jvm.attribute.uptime"));
+    assertTrue("should register class loading gauges", registry.getGauges().containsKey("jvm.classloader.loaded"));
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private static boolean isPrimitive(final Metric metric) {
+    return metric instanceof LongGauge || metric instanceof DoubleGauge;
+  }
+}
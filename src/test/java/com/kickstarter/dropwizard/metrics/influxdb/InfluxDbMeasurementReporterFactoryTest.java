@@ -6,6 +6,11 @@ import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.kickstarter.dropwizard.metrics.influxdb.io.InfluxDbTcpWriter;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.CardinalityLimiter;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.Escaping;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.FieldSelection;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.GlobTemplate;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.LogLinearBucketLayout;
 import com.kickstarter.dropwizard.metrics.influxdb.transformer.TaggedPattern;
 import io.dropwizard.jackson.Jackson;
 import io.dropwizard.setup.Environment;
@@ -13,9 +18,13 @@ import io.dropwizard.util.Duration;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -33,8 +42,29 @@ public class InfluxDbMeasurementReporterFactoryTest {
             "\"tagKeys\": [\"blah\"]" +
           "}" +
         "}," +
+        "\"globTemplates\": [\"jvm.gc.* measurement.measurement.field\"]," +
+        "\"parserCacheSize\": 5000," +
+        "\"escaping\": \"backslash\"," +
+        "\"prepareMetrics\": false," +
+        "\"indexMetrics\": false," +
+        "\"idleHeartbeat\": \"5 minutes\"," +
+        "\"fieldSelections\": [{" +
+          "\"pattern\": \"resources\"," +
+          "\"fields\": [\"count\", \"9999-percentile\"]," +
+          "\"buckets\": {\"type\": \"log-linear\", \"min\": 1, \"max\": 100, \"bucketsPerDecade\": 1}" +
+        "}]," +
         "\"groupGauges\": true," +
         "\"groupCounters\": true," +
+        "\"collectionParallelism\": 4," +
+        "\"collectionChunkSize\": 512," +
+        "\"deltaCounts\": true," +
+        "\"deltaRates\": true," +
+        "\"gaugeParallelism\": 8," +
+        "\"gaugeDeadline\": \"250 milliseconds\"," +
+        "\"gaugeLastValueOnTimeout\": false," +
+        "\"maxSeriesPerMeasurement\": 100," +
+        "\"maxSeries\": 10000," +
+        "\"seriesOverflow\": \"drop\"," +
         "\"sender\": {" +
           "\"type\": \"tcp\"," +
           "\"host\": \"i am a host\"," +
@@ -59,9 +89,33 @@ public class InfluxDbMeasurementReporterFactoryTest {
     assertEquals("expected template pattern", ".*blah", template.pattern());
     assertEquals("expected template tag keys", ImmutableList.of("blah"), template.tagKeys());
 
+    assertEquals("expected glob templates",
+      ImmutableList.of("jvm.gc.* measurement.measurement.field"),
+      factory.globTemplates().stream().map(GlobTemplate::toString).collect(toList()));
+    assertEquals("expected parser cache size", 5000, factory.parserCacheSize());
+    assertEquals("expected backslash escaping", Escaping.BACKSLASH, factory.escaping());
+    assertFalse("expected no metric preparation", factory.prepareMetrics());
+    assertFalse("expected no metric index", factory.indexMetrics());
+    assertEquals("expected idle heartbeat", Optional.of(Duration.minutes(5)), factory.idleHeartbeat());
+
+    final List<FieldSelection> selections = factory.fieldSelections();
+    assertEquals("expected a single field selection", 1, selections.size());
+    assertEquals("expected selection pattern", "resources", selections.get(0).pattern());
+    assertEquals("expected selected fields", Optional.of(ImmutableList.of("count", "9999-percentile")), selections.get(0).fields());
+    assertTrue("expected log-linear buckets", selections.get(0).buckets().get() instanceof LogLinearBucketLayout);
 
     assertTrue("expected group_guages", factory.groupGauges());
     assertTrue("expected group_counters", factory.groupCounters());
+    assertEquals("expected collection parallelism", 4, factory.collectionParallelism());
+    assertEquals("expected collection chunk size", 512, factory.collectionChunkSize());
+    assertTrue("expected delta counts", factory.deltaCounts());
+    assertTrue("expected delta rates", factory.deltaRates());
+    assertEquals("expected gauge parallelism", 8, factory.gaugeParallelism());
+    assertEquals("expected gauge deadline", Duration.milliseconds(250), factory.gaugeDeadline());
+    assertFalse("expected no last value on timeout", factory.gaugeLastValueOnTimeout());
+    assertEquals("expected series cap per measurement", Optional.of(100), factory.maxSeriesPerMeasurement());
+    assertEquals("expected series cap", Optional.of(10000), factory.maxSeries());
+    assertEquals("expected dropped overflow", CardinalityLimiter.Overflow.DROP, factory.seriesOverflow());
 
     final InfluxDbTcpWriter.Factory tcp = (InfluxDbTcpWriter.Factory) factory.sender();
     assertEquals("expected TCP host", "i am a host", tcp.host());
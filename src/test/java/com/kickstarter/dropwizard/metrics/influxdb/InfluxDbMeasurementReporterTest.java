@@ -10,21 +10,34 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
+import com.kickstarter.dropwizard.metrics.dirty.DirtyMetric;
+import com.kickstarter.dropwizard.metrics.dirty.DirtyTrackingMetricRegistry;
 import com.kickstarter.dropwizard.metrics.influxdb.io.Sender;
 import com.kickstarter.dropwizard.metrics.influxdb.transformer.DropwizardTransformer;
+import io.dropwizard.util.Duration;
 import org.junit.Test;
 
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.SortedMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMap;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -83,4 +96,222 @@ public class InfluxDbMeasurementReporterTest {
     reporter.report(gauges, counters, histograms, meters, timers);
     verify(sender).send(expectedMeasurements);
   }
+
+  @Test
+  public void testPrepareMetrics() {
+    final MetricRegistry registry = new MetricRegistry();
+    final Counter existing = registry.counter("existing");
+    final DropwizardTransformer transformer = mock(DropwizardTransformer.class);
+
+    final InfluxDbMeasurementReporter reporter = new InfluxDbMeasurementReporter.Builder(
+      mock(Sender.class),
+      registry,
+      (name, metric) -> !name.startsWith("filtered"),
+      TimeUnit.SECONDS,
+      TimeUnit.MILLISECONDS,
+      clock,
+      transformer
+    )
+      .prepareMetrics(true)
+      .build();
+    verify(transformer, timeout(1000)).prepare("existing", existing);
+
+    final Timer timer = registry.timer("added");
+    verify(transformer, timeout(1000)).prepare("added", timer);
+
+    registry.remove("added");
+    verify(transformer, timeout(1000)).evict("added");
+
+    final Meter filtered = registry.meter("filtered");
+    reporter.stop();
+    registry.remove("existing");
+    verify(transformer, never()).prepare("filtered", filtered);
+    verify(transformer, never()).evict("existing");
+  }
+
+  @Test
+  public void testEvictsMetricsWithoutPreparingThem() {
+    final MetricRegistry registry = new MetricRegistry();
+    final DropwizardTransformer transformer = mock(DropwizardTransformer.class);
+
+    final InfluxDbMeasurementReporter reporter = new InfluxDbMeasurementReporter(
+      mock(Sender.class),
+      registry,
+      MetricFilter.ALL,
+      TimeUnit.SECONDS,
+      TimeUnit.MILLISECONDS,
+      clock,
+      transformer
+    );
+
+    final Timer timer = registry.timer("added");
+    registry.remove("added");
+    verify(transformer, timeout(1000)).evict("added");
+    verify(transformer, never()).prepare("added", timer);
+    reporter.stop();
+  }
+
+  @Test
+  public void testEvictsMetricsBetweenReports() throws InterruptedException {
+    final MetricRegistry registry = new MetricRegistry();
+    registry.timer("removed");
+    final DropwizardTransformer transformer = mock(DropwizardTransformer.class);
+
+    final InfluxDbMeasurementReporter reporter = new InfluxDbMeasurementReporter(
+      mock(Sender.class),
+      registry,
+      MetricFilter.ALL,
+      TimeUnit.SECONDS,
+      TimeUnit.MILLISECONDS,
+      clock,
+      transformer
+    );
+
+    // holds the lock a report holds.
+    synchronized (reporter) {
+      registry.remove("removed");
+      Thread.sleep(100);
+      verify(transformer, never()).evict("removed");
+    }
+    verify(transformer, timeout(1000)).evict("removed");
+    reporter.stop();
+  }
+
+  @Test
+  public void testStop_ClosesSenderAndTransformer() throws Exception {
+    final Sender sender = mock(Sender.class);
+    final DropwizardTransformer transformer = mock(DropwizardTransformer.class);
+    new InfluxDbMeasurementReporter(
+      sender,
+      new MetricRegistry(),
+      MetricFilter.ALL,
+      TimeUnit.SECONDS,
+      TimeUnit.MILLISECONDS,
+      clock,
+      transformer
+    ).stop();
+
+    verify(sender).close();
+    verify(transformer).close();
+  }
+
+  @Test
+  public void testIndexMetrics() {
+    final MetricRegistry registry = new MetricRegistry();
+    final Counter existing = registry.counter("existing");
+    registry.counter("filtered-existing");
+    final DropwizardTransformer transformer = mock(DropwizardTransformer.class);
+
+    // the reporter passes its live index, so copy what each report sees.
+    final List<Map<String, Counter>> counters = new ArrayList<>();
+    final List<Map<String, Timer>> timers = new ArrayList<>();
+    when(transformer.fromCounters(anyMap(), anyLong())).thenAnswer(invocation -> {
+      counters.add(ImmutableMap.copyOf((Map<String, Counter>) invocation.getArguments()[0]));
+      return ImmutableList.of();
+    });
+    when(transformer.fromTimers(anyMap(), anyLong())).thenAnswer(invocation -> {
+      timers.add(ImmutableMap.copyOf((Map<String, Timer>) invocation.getArguments()[0]));
+      return ImmutableList.of();
+    });
+
+    final InfluxDbMeasurementReporter reporter = new InfluxDbMeasurementReporter.Builder(
+      mock(Sender.class),
+      registry,
+      (name, metric) -> !name.startsWith("filtered"),
+      TimeUnit.SECONDS,
+      TimeUnit.MILLISECONDS,
+      clock,
+      transformer
+    )
+      .indexMetrics(true)
+      .build();
+
+    reporter.report();
+    assertEquals("expected the existing counter", ImmutableMap.of("existing", existing), counters.get(0));
+    assertEquals("expected no timers", ImmutableMap.of(), timers.get(0));
+
+    final Timer timer = registry.timer("added");
+    registry.timer("filtered-added");
+    registry.remove("existing");
+    reporter.report();
+    assertEquals("expected the removed counter to be dropped", ImmutableMap.of(), counters.get(1));
+    assertEquals("expected the added timer", ImmutableMap.of("added", timer), timers.get(1));
+
+    reporter.stop();
+    registry.remove("added");
+    reporter.report();
+    assertEquals("expected no index updates once stopped", ImmutableMap.of("added", timer), timers.get(2));
+  }
+
+  @Test
+  public void testSkipIdleMetrics() {
+    final MetricRegistry registry = new DirtyTrackingMetricRegistry();
+    registry.timer("idle");
+    final Timer busy = registry.timer("busy");
+    final Timer untracked = registry.register("untracked", new Timer());
+    final List<Map<String, Timer>> timers = captureTimers();
+
+    final InfluxDbMeasurementReporter reporter = reporter(registry, Optional.empty());
+
+    reporter.report();
+    assertEquals("expected new timers to be reported",
+      ImmutableSet.of("idle", "busy", "untracked"), timers.get(0).keySet());
+
+    busy.update(5, TimeUnit.MILLISECONDS);
+    reporter.report();
+    assertEquals("expected only updated and untracked timers to be reported",
+      ImmutableMap.of("busy", busy, "untracked", untracked), timers.get(1));
+
+    reporter.report();
+    assertEquals("expected only untracked timers to be reported",
+      ImmutableMap.of("untracked", untracked), timers.get(2));
+  }
+
+  @Test
+  public void testSkipIdleMetrics_Heartbeat() {
+    final MetricRegistry registry = new DirtyTrackingMetricRegistry();
+    registry.timer("idle");
+    final List<Map<String, Timer>> timers = captureTimers();
+
+    reporter(registry, Optional.of(Duration.milliseconds(0))).report();
+    assertFalse("expected the timer to be marked clean", ((DirtyMetric) registry.timer("idle")).markClean());
+
+    final InfluxDbMeasurementReporter hourly = reporter(registry, Optional.of(Duration.hours(1)));
+    hourly.report();
+    hourly.report();
+    assertEquals("expected idle timers to be reported on a heartbeat", ImmutableSet.of("idle"), timers.get(1).keySet());
+    assertEquals("expected idle timers to be skipped until the next heartbeat", ImmutableMap.of(), timers.get(2));
+  }
+
+  // ===============================================================================================
+  // Test helpers
+
+  private final DropwizardTransformer idleTransformer = mock(DropwizardTransformer.class);
+
+  /**
+   * Stubs the idle transformer to record a copy of the timers of each report.
+   */
+  private List<Map<String, Timer>> captureTimers() {
+    final List<Map<String, Timer>> timers = new ArrayList<>();
+    when(idleTransformer.fromTimers(anyMap(), anyLong())).thenAnswer(invocation -> {
+      timers.add(ImmutableMap.copyOf((Map<String, Timer>) invocation.getArguments()[0]));
+      return ImmutableList.of();
+    });
+    return timers;
+  }
+
+  private InfluxDbMeasurementReporter reporter(final MetricRegistry registry, final Optional<Duration> heartbeat) {
+    final InfluxDbMeasurementReporter.Builder reporter = new InfluxDbMeasurementReporter.Builder(
+      mock(Sender.class),
+      registry,
+      MetricFilter.ALL,
+      TimeUnit.SECONDS,
+      TimeUnit.MILLISECONDS,
+      clock,
+      idleTransformer
+    )
+      .indexMetrics(true);
+    heartbeat.ifPresent(reporter::idleHeartbeat);
+    return reporter.build();
+  }
 }
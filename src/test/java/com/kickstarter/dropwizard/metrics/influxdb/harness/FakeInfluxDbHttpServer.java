@@ -0,0 +1,102 @@
+package com.kickstarter.dropwizard.metrics.influxdb.harness;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An in-process stand-in for InfluxDB's HTTP {@code /write} endpoint, listening on an ephemeral loopback port.
+ */
+public class FakeInfluxDbHttpServer implements Closeable {
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private final HttpServer server;
+  private final FakeServerBehavior behavior;
+  private final LineCounter counter = new LineCounter();
+  private final ExecutorService handlers = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+    .setNameFormat("fake-influxdb-http-%d")
+    .setDaemon(true)
+    .build());
+
+  public FakeInfluxDbHttpServer(final FakeServerBehavior behavior) throws IOException {
+    this.behavior = behavior;
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50);
+    this.server.createContext("/write", this::handle);
+    this.server.setExecutor(handlers);
+    this.server.start();
+  }
+
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  public LineCounter counter() {
+    return counter;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    handlers.shutdownNow();
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    try {
+      final byte[] body = read(exchange.getRequestBody());
+      behavior.sleepLatency();
+
+      if (behavior.shouldFail()) {
+        counter.fail();
+        respond(exchange, 500, "{\"error\":\"timeout\"}");
+      } else if (behavior.shouldPartiallyWrite()) {
+        counter.accept(body, 0, body.length / 2);
+        counter.fail();
+        respond(exchange, 400, "{\"error\":\"partial write: field type conflict\"}");
+      } else {
+        counter.accept(body, 0, body.length);
+        respond(exchange, 204, null);
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      respond(exchange, 503, null);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private byte[] read(final InputStream in) throws IOException, InterruptedException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[READ_BUFFER_SIZE];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      behavior.throttle(read);
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+
+    final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.kickstarter.dropwizard.metrics.influxdb.harness;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An in-process stand-in for a TCP line protocol input (e.g. Telegraf's {@code socket_listener}),
+ * listening on an ephemeral loopback port.
+ */
+public class FakeInfluxDbTcpServer implements Closeable {
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private final ServerSocket serverSocket;
+  private final FakeServerBehavior behavior;
+  private final LineCounter counter = new LineCounter();
+  private final ExecutorService connections = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+    .setNameFormat("fake-influxdb-tcp-%d")
+    .setDaemon(true)
+    .build());
+
+  public FakeInfluxDbTcpServer(final FakeServerBehavior behavior) throws IOException {
+    this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    this.behavior = behavior;
+    connections.execute(this::acceptLoop);
+  }
+
+  public int port() {
+    return serverSocket.getLocalPort();
+  }
+
+  public LineCounter counter() {
+    return counter;
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    connections.shutdownNow();
+  }
+
+  private void acceptLoop() {
+    while (!serverSocket.isClosed()) {
+      try {
+        final Socket socket = serverSocket.accept();
+        connections.execute(() -> read(socket));
+      } catch (final IOException e) {
+        // closed.
+      }
+    }
+  }
+
+  private void read(final Socket socket) {
+    try (Socket s = socket; InputStream in = s.getInputStream()) {
+      final byte[] buffer = new byte[READ_BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        behavior.sleepLatency();
+        behavior.throttle(read);
+
+        if (behavior.shouldFail()) {
+          counter.fail();
+          return;
+        }
+
+        if (behavior.shouldPartiallyWrite()) {
+          counter.accept(buffer, 0, read / 2);
+          counter.fail();
+          return;
+        }
+
+        counter.accept(buffer, 0, read);
+      }
+    } catch (final IOException e) {
+      // dropped by the client.
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.kickstarter.dropwizard.metrics.influxdb.harness;
+
+import io.dropwizard.util.Duration;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Misbehavior for the fake InfluxDB endpoints: response latency, failures, partial writes, and slow reads.
+ */
+public class FakeServerBehavior {
+  private Duration latency = Duration.milliseconds(0);
+  private double failureRate = 0.0;
+  private double partialWriteRate = 0.0;
+  private long readBytesPerSecond = 0L;
+
+  public static FakeServerBehavior healthy() {
+    return new FakeServerBehavior();
+  }
+
+  /**
+   * Delays every response (HTTP) or read (TCP) by {@code latency}.
+   */
+  public FakeServerBehavior withLatency(final Duration latency) {
+    this.latency = latency;
+    return this;
+  }
+
+  /**
+   * Fails a fraction of requests: HTTP responds with a 500, TCP drops the connection.
+   */
+  public FakeServerBehavior withFailureRate(final double failureRate) {
+    this.failureRate = failureRate;
+    return this;
+  }
+
+  /**
+   * Accepts only the first half of the lines in a fraction of requests.
+   * HTTP responds with InfluxDB's 400 "partial write"; TCP drops the connection mid-payload.
+   */
+  public FakeServerBehavior withPartialWriteRate(final double partialWriteRate) {
+    this.partialWriteRate = partialWriteRate;
+    return this;
+  }
+
+  /**
+   * Throttles reads to {@code readBytesPerSecond}; zero is unthrottled.
+   */
+  public FakeServerBehavior withReadBytesPerSecond(final long readBytesPerSecond) {
+    this.readBytesPerSecond = readBytesPerSecond;
+    return this;
+  }
+
+  Duration latency() {
+    return latency;
+  }
+
+  long readBytesPerSecond() {
+    return readBytesPerSecond;
+  }
+
+  boolean shouldFail() {
+    return failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate;
+  }
+
+  boolean shouldPartiallyWrite() {
+    return partialWriteRate > 0 && ThreadLocalRandom.current().nextDouble() < partialWriteRate;
+  }
+
+  void sleepLatency() throws InterruptedException {
+    if (latency.getQuantity() > 0) {
+      Thread.sleep(latency.toMilliseconds());
+    }
+  }
+
+  /**
+   * Sleeps long enough that {@code bytes} are read at the configured read rate.
+   */
+  void throttle(final int bytes) throws InterruptedException {
+    if (readBytesPerSecond > 0) {
+      Thread.sleep(bytes * 1000L / readBytesPerSecond);
+    }
+  }
+}
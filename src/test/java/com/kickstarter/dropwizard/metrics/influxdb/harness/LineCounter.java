@@ -0,0 +1,37 @@
+package com.kickstarter.dropwizard.metrics.influxdb.harness;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the InfluxDB lines and bytes accepted by a fake endpoint.
+ */
+public class LineCounter {
+  private final LongAdder lines = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+
+  public long lines() {
+    return lines.sum();
+  }
+
+  public long bytes() {
+    return bytes.sum();
+  }
+
+  public long failures() {
+    return failures.sum();
+  }
+
+  void accept(final byte[] buffer, final int offset, final int length) {
+    bytes.add(length);
+    for (int i = offset; i < offset + length; i++) {
+      if (buffer[i] == '\n') {
+        lines.increment();
+      }
+    }
+  }
+
+  void fail() {
+    failures.increment();
+  }
+}
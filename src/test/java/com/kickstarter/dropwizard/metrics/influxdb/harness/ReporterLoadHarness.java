@@ -0,0 +1,360 @@
+package com.kickstarter.dropwizard.metrics.influxdb.harness;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.MetricsUtils;
+import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurementReporter;
+import com.kickstarter.dropwizard.metrics.influxdb.io.InfluxDbHttpWriter;
+import com.kickstarter.dropwizard.metrics.influxdb.io.InfluxDbTcpWriter;
+import com.kickstarter.dropwizard.metrics.influxdb.io.InfluxDbWriter;
+import com.kickstarter.dropwizard.metrics.influxdb.io.Sender;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.DropwizardMeasurementParser;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.DropwizardTransformer;
+import com.kickstarter.dropwizard.metrics.influxdb.transformer.ParallelCollector;
+import io.dropwizard.util.Duration;
+import javax.ws.rs.client.ClientBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives an {@link InfluxDbMeasurementReporter} against a fake InfluxDB endpoint and reports sustained
+ * points/sec, bytes/sec, report tick duration percentiles and heap churn. Runs entirely on loopback.
+ *
+ * <pre>{@code
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.kickstarter.dropwizard.metrics.influxdb.harness.ReporterLoadHarness \
+ *     -Dexec.args="metrics=100000 ticks=20 sender=tcp latency=5 failureRate=0.01 partialWriteRate=0.01"
+ * }</pre>
+ */
+public class ReporterLoadHarness {
+  private final Options options;
+
+  public ReporterLoadHarness(final Options options) {
+    this.options = options;
+  }
+
+  public static void main(final String[] args) throws Exception {
+    System.out.println(new ReporterLoadHarness(Options.parse(args)).run());
+  }
+
+  /**
+   * Runs the configured number of report ticks and summarizes them.
+   */
+  public Result run() throws Exception {
+    final FakeServerBehavior behavior = FakeServerBehavior.healthy()
+      .withLatency(Duration.milliseconds(options.latencyMillis))
+      .withFailureRate(options.failureRate)
+      .withPartialWriteRate(options.partialWriteRate)
+      .withReadBytesPerSecond(options.readBytesPerSecond);
+
+    final MetricRegistry registry = new MetricRegistry();
+    final List<Runnable> updates = register(registry, options.metrics);
+
+    try (Endpoint endpoint = Endpoint.start(options.sender, behavior)) {
+      final InfluxDbMeasurementReporter reporter = new InfluxDbMeasurementReporter(
+        // size the retry queue to hold a whole tick, so that no points are evicted.
+        new Sender(endpoint.writer(), Math.max(Sender.DEFAULT_QUEUE_SIZE, options.metrics)),
+        registry,
+        MetricFilter.ALL,
+        TimeUnit.SECONDS,
+        TimeUnit.MILLISECONDS,
+        Clock.systemUTC(),
+        new DropwizardTransformer.Builder(
+          ImmutableMap.of("host", "load-harness"),
+          DropwizardMeasurementParser.withTemplates(ImmutableMap.of()),
+          true,
+          true,
+          TimeUnit.SECONDS,
+          TimeUnit.MILLISECONDS
+        )
+          .collector(ParallelCollector.create(options.parallelism, options.chunkSize))
+          .build()
+      );
+
+      final long[] tickNanos = new long[options.ticks];
+      final long[] tickAllocations = new long[options.ticks];
+      try {
+        for (int tick = 0; tick < options.ticks; tick++) {
+          updates.forEach(Runnable::run);
+
+          final long allocatedBefore = allocatedBytes();
+          final long start = System.nanoTime();
+          reporter.report();
+          tickNanos[tick] = System.nanoTime() - start;
+          tickAllocations[tick] = allocatedBytes() - allocatedBefore;
+        }
+      } finally {
+        reporter.stop();
+      }
+
+      final LineCounter counter = endpoint.counter();
+      awaitQuiescence(counter);
+      return new Result(options, counter.lines(), counter.bytes(), counter.failures(), tickNanos, tickAllocations);
+    }
+  }
+
+  /**
+   * Registers a mix of timers, histograms, meters, counters and gauges,
+   * and returns an update for each that records a new value.
+   */
+  private static List<Runnable> register(final MetricRegistry registry, final int metrics) {
+    final List<Runnable> updates = new ArrayList<>(metrics);
+    for (int i = 0; i < metrics; i++) {
+      final String route = "route-" + (i / 10);
+      switch (i % 10) {
+        case 0:
+        case 1:
+        case 2:
+        case 3: {
+          final Timer timer = registry.timer(MetricsUtils.influxName("http", ImmutableMap.of("route", route, "id", "" + i)));
+          updates.add(() -> timer.update(ThreadLocalRandom.current().nextLong(1, 500), TimeUnit.MILLISECONDS));
+          break;
+        }
+        case 4: {
+          final Histogram histogram = registry.histogram(MetricsUtils.influxName("sizes", ImmutableMap.of("route", route)));
+          updates.add(() -> histogram.update(ThreadLocalRandom.current().nextInt(1, 100_000)));
+          break;
+        }
+        case 5:
+        case 6: {
+          final Meter meter = registry.meter("load.meters." + route + ".m" + i);
+          updates.add(() -> meter.mark(ThreadLocalRandom.current().nextInt(1, 10)));
+          break;
+        }
+        case 7:
+        case 8: {
+          final Counter counter = registry.counter("load.counters." + route + ".c" + i);
+          updates.add(() -> counter.inc());
+          break;
+        }
+        default: {
+          final long value = i;
+          registry.register("load.gauges." + route + ".g" + i, (Gauge<Long>) () -> value);
+          break;
+        }
+      }
+    }
+    return updates;
+  }
+
+  /**
+   * Returns the bytes allocated so far by every live thread, including collector, writer and endpoint threads.
+   * Allocations of threads that exit between two calls are not counted.
+   */
+  private static long allocatedBytes() {
+    final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return 0L;
+    }
+
+    final long[] allocated =
+      ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds());
+    // unsupported or exited threads report -1.
+    return Arrays.stream(allocated).filter(bytes -> bytes > 0).sum();
+  }
+
+  /**
+   * Waits for the endpoint to finish reading in-flight payloads.
+   */
+  private static void awaitQuiescence(final LineCounter counter) throws InterruptedException {
+    long lastBytes = -1;
+    for (int i = 0; i < 50 && counter.bytes() != lastBytes; i++) {
+      lastBytes = counter.bytes();
+      Thread.sleep(100);
+    }
+  }
+
+  // ===================================================================================================================
+  // Endpoints
+
+  private static class Endpoint implements Closeable {
+    private final Closeable server;
+    private final LineCounter counter;
+    private final InfluxDbWriter writer;
+
+    private Endpoint(final Closeable server, final LineCounter counter, final InfluxDbWriter writer) {
+      this.server = server;
+      this.counter = counter;
+      this.writer = writer;
+    }
+
+    static Endpoint start(final String sender, final FakeServerBehavior behavior) throws IOException {
+      if ("http".equals(sender)) {
+        final FakeInfluxDbHttpServer server = new FakeInfluxDbHttpServer(behavior);
+        final InfluxDbWriter writer = new InfluxDbHttpWriter(
+          ClientBuilder.newClient(),
+          String.format("http://localhost:%d/write?db=load", server.port())
+        );
+        return new Endpoint(server, server.counter(), writer);
+      }
+
+      final FakeInfluxDbTcpServer server = new FakeInfluxDbTcpServer(behavior);
+      return new Endpoint(server, server.counter(), new InfluxDbTcpWriter("localhost", server.port(), Duration.seconds(5)));
+    }
+
+    InfluxDbWriter writer() {
+      return writer;
+    }
+
+    LineCounter counter() {
+      return counter;
+    }
+
+    @Override public void close() throws IOException {
+      writer.close();
+      server.close();
+    }
+  }
+
+  // ===================================================================================================================
+  // Options and results
+
+  /**
+   * Harness options, parsed from {@code key=value} arguments.
+   */
+  public static class Options {
+    private int metrics = 10_000;
+    private int ticks = 10;
+    private String sender = "tcp";
+    private long latencyMillis = 0L;
+    private double failureRate = 0.0;
+    private double partialWriteRate = 0.0;
+    private long readBytesPerSecond = 0L;
+    private int parallelism = 1;
+    private int chunkSize = 1024;
+
+    public static Options parse(final String... args) {
+      final Options options = new Options();
+      for (final String arg : args) {
+        final String[] kv = arg.split("=", 2);
+        if (kv.length != 2) {
+          throw new IllegalArgumentException("expected key=value: " + arg);
+        }
+
+        switch (kv[0]) {
+          case "metrics":
+            options.metrics = Integer.parseInt(kv[1]);
+            break;
+          case "ticks":
+            options.ticks = Integer.parseInt(kv[1]);
+            break;
+          case "sender":
+            options.sender = kv[1];
+            break;
+          case "latency":
+            options.latencyMillis = Long.parseLong(kv[1]);
+            break;
+          case "failureRate":
+            options.failureRate = Double.parseDouble(kv[1]);
+            break;
+          case "partialWriteRate":
+            options.partialWriteRate = Double.parseDouble(kv[1]);
+            break;
+          case "readBytesPerSecond":
+            options.readBytesPerSecond = Long.parseLong(kv[1]);
+            break;
+          case "parallelism":
+            options.parallelism = Integer.parseInt(kv[1]);
+            break;
+          case "chunkSize":
+            options.chunkSize = Integer.parseInt(kv[1]);
+            break;
+          default:
+            throw new IllegalArgumentException("unknown option: " + kv[0]);
+        }
+      }
+      return options;
+    }
+  }
+
+  /**
+   * A summary of a harness run.
+   */
+  public static class Result {
+    private final Options options;
+    private final long points;
+    private final long bytes;
+    private final long failures;
+    private final long[] tickNanos;
+    private final long[] tickAllocations;
+
+    Result(final Options options,
+           final long points,
+           final long bytes,
+           final long failures,
+           final long[] tickNanos,
+           final long[] tickAllocations) {
+      this.options = options;
+      this.points = points;
+      this.bytes = bytes;
+      this.failures = failures;
+      this.tickNanos = tickNanos.clone();
+      this.tickAllocations = tickAllocations.clone();
+      Arrays.sort(this.tickNanos);
+    }
+
+    public long points() {
+      return points;
+    }
+
+    public long bytes() {
+      return bytes;
+    }
+
+    public long failures() {
+      return failures;
+    }
+
+    public double pointsPerSecond() {
+      return points / seconds(Arrays.stream(tickNanos).sum());
+    }
+
+    public double bytesPerSecond() {
+      return bytes / seconds(Arrays.stream(tickNanos).sum());
+    }
+
+    public double tickMillis(final double quantile) {
+      final int index = (int) Math.min(tickNanos.length - 1, Math.ceil(quantile * tickNanos.length) - 1);
+      return tickNanos[Math.max(0, index)] / 1e6;
+    }
+
+    public double allocatedBytesPerTick() {
+      return Arrays.stream(tickAllocations).average().orElse(0.0);
+    }
+
+    private static double seconds(final long nanos) {
+      return Math.max(nanos, 1L) / 1e9;
+    }
+
+    @Override public String toString() {
+      return String.format(
+        "metrics=%d ticks=%d sender=%s latency=%dms failureRate=%.3f partialWriteRate=%.3f " +
+        "readBytesPerSecond=%d parallelism=%d chunkSize=%d%n" +
+        "points=%d bytes=%d failed-requests=%d%n" +
+        "points/sec=%.0f bytes/sec=%.0f%n" +
+        "tick p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms%n" +
+        "allocated/tick=%.0f bytes",
+        options.metrics, options.ticks, options.sender, options.latencyMillis, options.failureRate,
+        options.partialWriteRate, options.readBytesPerSecond, options.parallelism, options.chunkSize,
+        points, bytes, failures,
+        pointsPerSecond(), bytesPerSecond(),
+        tickMillis(0.5), tickMillis(0.9), tickMillis(0.99), tickMillis(1.0),
+        allocatedBytesPerTick()
+      );
+    }
+  }
+}
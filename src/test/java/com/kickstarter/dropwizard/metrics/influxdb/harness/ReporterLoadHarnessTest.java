@@ -0,0 +1,67 @@
+package com.kickstarter.dropwizard.metrics.influxdb.harness;
+
+import com.kickstarter.dropwizard.metrics.influxdb.io.InfluxDbTcpWriter;
+import io.dropwizard.util.Duration;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReporterLoadHarnessTest {
+  @Test
+  public void testFakeTcpServer_CountsLines() throws Exception {
+    try (FakeInfluxDbTcpServer server = new FakeInfluxDbTcpServer(FakeServerBehavior.healthy())) {
+      final InfluxDbTcpWriter writer = new InfluxDbTcpWriter("localhost", server.port(), Duration.seconds(5));
+      writer.writeBytes("a x=1i 1\nb x=2i 1\n".getBytes(StandardCharsets.UTF_8));
+      writer.close();
+
+      for (int i = 0; i < 50 && server.counter().lines() < 2; i++) {
+        Thread.sleep(20);
+      }
+      assertEquals("should count received lines", 2, server.counter().lines());
+      assertEquals("should count received bytes", 18, server.counter().bytes());
+    }
+  }
+
+  @Test
+  public void testRun_Tcp() throws Exception {
+    final ReporterLoadHarness.Result result = new ReporterLoadHarness(
+      ReporterLoadHarness.Options.parse("metrics=1000", "ticks=2", "sender=tcp")
+    ).run();
+
+    assertTrue("should report points", result.points() > 0);
+    assertTrue("should measure throughput", result.pointsPerSecond() > 0);
+  }
+
+  @Test
+  public void testRun_Http() throws Exception {
+    final ReporterLoadHarness.Result result = new ReporterLoadHarness(
+      ReporterLoadHarness.Options.parse("metrics=1000", "ticks=2", "sender=http")
+    ).run();
+
+    assertTrue("should report points", result.points() > 0);
+    assertTrue("should measure bytes", result.bytes() > 0);
+  }
+
+  @Test
+  public void testRun_PartialWrites() throws Exception {
+    final ReporterLoadHarness.Result result = new ReporterLoadHarness(
+      ReporterLoadHarness.Options.parse("metrics=100", "ticks=3", "sender=http", "partialWriteRate=1")
+    ).run();
+
+    assertEquals("should fail every request", 3, result.failures());
+    assertTrue("should accept the first half of each payload", result.points() > 0);
+  }
+
+  @Test
+  public void testRun_SlowReads() throws Exception {
+    final ReporterLoadHarness.Result result = new ReporterLoadHarness(
+      ReporterLoadHarness.Options.parse("metrics=100", "ticks=2", "sender=http", "readBytesPerSecond=100000")
+    ).run();
+
+    assertTrue("should report points", result.points() > 0);
+    assertTrue("should be limited by the read rate", result.bytesPerSecond() <= 100_000 * 1.1);
+  }
+}
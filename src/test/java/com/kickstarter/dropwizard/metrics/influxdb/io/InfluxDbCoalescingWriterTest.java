@@ -0,0 +1,219 @@
+package com.kickstarter.dropwizard.metrics.influxdb.io;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.google.common.collect.ImmutableList;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InfluxDbCoalescingWriterTest {
+  @Test
+  public void testSerialization() throws IOException {
+    final String json =
+      "{" +
+        "\"type\": \"shared\"," +
+        "\"name\": \"influx\"," +
+        "\"linger\": \"50 milliseconds\"," +
+        "\"maxBatchSize\": \"512 kilobytes\"," +
+        "\"writer\": {" +
+          "\"type\": \"tcp\"," +
+          "\"host\": \"i am a host\"" +
+        "}" +
+      "}";
+
+    final ObjectMapper mapper = Jackson.newObjectMapper();
+    mapper.registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+
+    final InfluxDbCoalescingWriter.Factory factory = mapper.readValue(json, InfluxDbCoalescingWriter.Factory.class);
+    assertEquals("expected name", "influx", factory.name());
+    assertEquals("expected linger", Duration.milliseconds(50), factory.linger());
+    assertEquals("expected max batch size", Size.kilobytes(512), factory.maxBatchSize());
+    assertEquals("expected TCP host", "i am a host", ((InfluxDbTcpWriter.Factory) factory.writer()).host());
+  }
+
+  @Test
+  public void testFactory_SharesNamedWriters() throws IOException {
+    final ObjectMapper mapper = Jackson.newObjectMapper();
+    final InfluxDbWriter.Factory defining = mapper.readValue(
+      "{\"type\": \"shared\", \"name\": \"testFactory_SharesNamedWriters\", \"writer\": {\"type\": \"tcp\"}}",
+      InfluxDbWriter.Factory.class
+    );
+    final InfluxDbWriter.Factory referencing = mapper.readValue(
+      "{\"type\": \"shared\", \"name\": \"testFactory_SharesNamedWriters\"}",
+      InfluxDbWriter.Factory.class
+    );
+
+    final MetricRegistry registry = new MetricRegistry();
+    assertSame("should share one writer per name",
+      shared(defining.build(registry)), shared(referencing.build(registry)));
+  }
+
+  @Test
+  public void testFactory_RejectsMismatchedReferences() throws IOException {
+    final ObjectMapper mapper = Jackson.newObjectMapper();
+    final InfluxDbWriter.Factory defining = mapper.readValue(
+      "{\"type\": \"shared\", \"name\": \"testFactory_RejectsMismatched\", \"writer\": {\"type\": \"tcp\"}}",
+      InfluxDbWriter.Factory.class
+    );
+    final InfluxDbWriter.Factory identical = mapper.readValue(
+      "{\"type\": \"shared\", \"name\": \"testFactory_RejectsMismatched\", \"writer\": {\"type\": \"tcp\"}}",
+      InfluxDbWriter.Factory.class
+    );
+    final InfluxDbWriter.Factory otherWriter = mapper.readValue(
+      "{\"type\": \"shared\", \"name\": \"testFactory_RejectsMismatched\", " +
+        "\"writer\": {\"type\": \"tcp\", \"port\": 1}}",
+      InfluxDbWriter.Factory.class
+    );
+    final InfluxDbWriter.Factory otherLinger = mapper.readValue(
+      "{\"type\": \"shared\", \"name\": \"testFactory_RejectsMismatched\", \"linger\": \"1 second\"}",
+      InfluxDbWriter.Factory.class
+    );
+
+    final MetricRegistry registry = new MetricRegistry();
+    assertSame("should share the writer with an identical definition",
+      shared(defining.build(registry)), shared(identical.build(registry)));
+    for (final InfluxDbWriter.Factory mismatched : ImmutableList.of(otherWriter, otherLinger)) {
+      try {
+        mismatched.build(registry);
+        fail("Expected an exception to be thrown");
+      } catch (final IllegalStateException e) {
+        assertEquals(
+          "shared writer 'testFactory_RejectsMismatched' is already defined with a different configuration",
+          e.getMessage()
+        );
+      }
+    }
+  }
+
+  @Test
+  public void testFactory_ForgetsClosedWriters() throws IOException {
+    final ObjectMapper mapper = Jackson.newObjectMapper();
+    final InfluxDbWriter.Factory defining = mapper.readValue(
+      "{\"type\": \"shared\", \"name\": \"testFactory_ForgetsClosedWriters\", \"writer\": {\"type\": \"tcp\"}}",
+      InfluxDbWriter.Factory.class
+    );
+    final InfluxDbWriter.Factory redefining = mapper.readValue(
+      "{\"type\": \"shared\", \"name\": \"testFactory_ForgetsClosedWriters\", \"linger\": \"1 second\", " +
+        "\"writer\": {\"type\": \"tcp\"}}",
+      InfluxDbWriter.Factory.class
+    );
+
+    final MetricRegistry registry = new MetricRegistry();
+    final InfluxDbWriter first = defining.build(registry);
+    final InfluxDbWriter second = defining.build(registry);
+    first.close();
+    try {
+      redefining.build(registry);
+      fail("Expected an exception to be thrown");
+    } catch (final IllegalStateException e) {
+      assertTrue("should keep the writer while it is referenced", e.getMessage().contains("different configuration"));
+    }
+
+    second.close();
+    assertTrue("should forget the writer once every reference is closed", redefining.build(registry) != null);
+  }
+
+  @Test
+  public void testFactory_RequiresWriterOnFirstReference() throws IOException {
+    final InfluxDbWriter.Factory referencing = Jackson.newObjectMapper().readValue(
+      "{\"type\": \"shared\", \"name\": \"testFactory_RequiresWriterOnFirstReference\"}",
+      InfluxDbWriter.Factory.class
+    );
+
+    try {
+      referencing.build(new MetricRegistry());
+      fail("Expected an exception to be thrown");
+    } catch (final IllegalStateException e) {
+      assertEquals(
+        "shared writer 'testFactory_RequiresWriterOnFirstReference' must configure a writer where it is first referenced",
+        e.getMessage()
+      );
+    }
+  }
+
+  @Test
+  public void testWriteBytes_CoalescesWithinLinger() throws Exception {
+    final RecordingWriter recorder = new RecordingWriter();
+    final InfluxDbCoalescingWriter writer = new InfluxDbCoalescingWriter(recorder, Duration.milliseconds(200), 1024);
+
+    final CompletableFuture<Void> first = CompletableFuture.runAsync(() -> write(writer, "a x=1i 1\n"));
+    final CompletableFuture<Void> second = CompletableFuture.runAsync(() -> write(writer, "b x=2i 1\n"));
+    first.get();
+    second.get();
+
+    assertEquals("should coalesce both payloads into one write", 1, recorder.writes.size());
+    final String written = recorder.writes.get(0);
+    assertTrue("should contain the first payload", written.contains("a x=1i 1\n"));
+    assertTrue("should contain the second payload", written.contains("b x=2i 1\n"));
+  }
+
+  @Test
+  public void testWriteBytes_FlushesFullBatches() throws Exception {
+    final RecordingWriter recorder = new RecordingWriter();
+    final InfluxDbCoalescingWriter writer = new InfluxDbCoalescingWriter(recorder, Duration.minutes(5), 4);
+
+    writer.writeBytes("a x=1i 1\n".getBytes(StandardCharsets.UTF_8));
+    assertEquals("should write a full batch without lingering", 1, recorder.writes.size());
+  }
+
+  @Test
+  public void testWriteBytes_PropagatesFailures() throws Exception {
+    final RecordingWriter recorder = new RecordingWriter();
+    recorder.failure = new IOException("what did you do");
+    final InfluxDbCoalescingWriter writer = new InfluxDbCoalescingWriter(recorder, Duration.milliseconds(1), 1024);
+
+    try {
+      writer.writeBytes("a x=1i 1\n".getBytes(StandardCharsets.UTF_8));
+      fail("Expected an exception to be thrown");
+    } catch (final IOException e) {
+      assertEquals("what did you do", e.getMessage());
+    }
+
+    writer.close();
+    assertEquals("should close the underlying writer", 1, recorder.closes);
+  }
+
+  private static InfluxDbCoalescingWriter shared(final InfluxDbWriter reference) {
+    return ((InfluxDbCoalescingWriter.Factory.Reference) reference).shared();
+  }
+
+  private static void write(final InfluxDbWriter writer, final String lines) {
+    try {
+      writer.writeBytes(lines.getBytes(StandardCharsets.UTF_8));
+    } catch (final Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static class RecordingWriter implements InfluxDbWriter {
+    private final List<String> writes = new CopyOnWriteArrayList<>();
+    private volatile Exception failure;
+    private volatile int closes;
+
+    @Override public void writeBytes(final byte[] bytes) throws Exception {
+      if (failure != null) {
+        throw failure;
+      }
+      writes.add(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Override public void close() {
+      closes++;
+    }
+  }
+}
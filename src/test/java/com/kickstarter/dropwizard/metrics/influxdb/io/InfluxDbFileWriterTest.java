@@ -0,0 +1,154 @@
+package com.kickstarter.dropwizard.metrics.influxdb.io;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InfluxDbFileWriterTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final MutableClock clock = new MutableClock();
+
+  @Test
+  public void testSerialization() throws IOException {
+    final String json =
+      "{" +
+        "\"type\": \"file\"," +
+        "\"file\": \"/tmp/metrics.lines\"," +
+        "\"maxFileSize\": \"1 megabyte\"," +
+        "\"rotationInterval\": \"5 minutes\"," +
+        "\"syncInterval\": \"0 seconds\"" +
+      "}";
+
+    final ObjectMapper mapper = Jackson.newObjectMapper();
+    mapper.registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+
+    final InfluxDbFileWriter.Factory factory = mapper.readValue(json, InfluxDbFileWriter.Factory.class);
+    assertEquals("expected file", "/tmp/metrics.lines", factory.file());
+    assertEquals("expected max file size", Size.megabytes(1), factory.maxFileSize());
+    assertEquals("expected rotation interval", Duration.minutes(5), factory.rotationInterval());
+    assertEquals("expected sync interval", Duration.seconds(0), factory.syncInterval());
+  }
+
+  @Test
+  public void testWriteBytes_TruncatesOnClose() throws Exception {
+    final Path file = folder.getRoot().toPath().resolve("metrics.lines");
+    final InfluxDbFileWriter writer = writer(file, 1024);
+
+    writer.writeBytes(bytes("a x=1i 1\n"));
+    writer.writeBytes(bytes("b x=2i 1\n"));
+    assertEquals("should pre-allocate the active file", 1024, Files.size(file));
+
+    writer.close();
+    assertEquals("should truncate to the written lines", "a x=1i 1\nb x=2i 1\n", read(file));
+  }
+
+  @Test
+  public void testWriteBytes_RotatesOnLineBoundaryWhenFull() throws Exception {
+    final Path file = folder.getRoot().toPath().resolve("metrics.lines");
+    final InfluxDbFileWriter writer = writer(file, 12);
+
+    writer.writeBytes(bytes("a x=1i 1\nb x=2i 1\n"));
+    writer.close();
+
+    assertEquals("should rotate the first complete line", "a x=1i 1\n", read(writer.rotatedPath(0L)));
+    assertEquals("should keep the remainder in the active file", "b x=2i 1\n", read(file));
+  }
+
+  @Test
+  public void testWriteBytes_RotatesOnInterval() throws Exception {
+    final Path file = folder.getRoot().toPath().resolve("metrics.lines");
+    final InfluxDbFileWriter writer = writer(file, 1024);
+
+    writer.writeBytes(bytes("a x=1i 1\n"));
+    clock.millis = 60_000L;
+    writer.writeBytes(bytes("b x=2i 1\n"));
+    writer.close();
+
+    assertEquals("should rotate the expired file", "a x=1i 1\n", read(writer.rotatedPath(60_000L)));
+    assertEquals("should write to a fresh active file", "b x=2i 1\n", read(file));
+  }
+
+  @Test
+  public void testWriteBytes_RecoversExistingFile() throws Exception {
+    final Path file = folder.getRoot().toPath().resolve("metrics.lines");
+    Files.write(file, bytes("a x=1i 1\n\0\0\0\0"));
+
+    final InfluxDbFileWriter writer = writer(file, 1024);
+    writer.writeBytes(bytes("b x=2i 1\n"));
+    writer.close();
+
+    final Path rotated = writer.rotatedPath(0L);
+    assertTrue("should rotate the leftover file", Files.exists(rotated));
+    assertEquals("should strip pre-allocated padding from the leftover file", "a x=1i 1\n", read(rotated));
+    assertEquals("should write to a fresh active file", "b x=2i 1\n", read(file));
+  }
+
+  @Test
+  public void testWriteBytes_SyncsInBackground() throws Exception {
+    final Path file = folder.getRoot().toPath().resolve("metrics.lines");
+    final InfluxDbFileWriter writer =
+      new InfluxDbFileWriter(file, 12, Duration.minutes(1), Duration.milliseconds(1), clock);
+
+    for (int i = 0; i < 3; i++) {
+      clock.millis = i;
+      writer.writeBytes(bytes("a x=" + i + "i 1\n"));
+      Thread.sleep(5);
+    }
+    writer.close();
+
+    assertEquals("should rotate unmapped files", "a x=0i 1\n", read(writer.rotatedPath(1L)));
+    assertEquals("should rotate unmapped files", "a x=1i 1\n", read(writer.rotatedPath(2L)));
+    assertEquals("should truncate the active file", "a x=2i 1\n", read(file));
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private InfluxDbFileWriter writer(final Path file, final int maxFileSize) {
+    return new InfluxDbFileWriter(file, maxFileSize, Duration.minutes(1), Duration.seconds(0), clock);
+  }
+
+  private static byte[] bytes(final String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String read(final Path path) throws IOException {
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+  }
+
+  private static class MutableClock extends Clock {
+    private long millis = 0L;
+
+    @Override public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override public Clock withZone(final ZoneId zone) {
+      return this;
+    }
+
+    @Override public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+  }
+}
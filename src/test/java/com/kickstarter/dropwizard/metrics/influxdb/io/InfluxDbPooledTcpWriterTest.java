@@ -0,0 +1,165 @@
+package com.kickstarter.dropwizard.metrics.influxdb.io;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InfluxDbPooledTcpWriterTest {
+  @Test
+  public void testSerialization() throws IOException {
+    final String json =
+      "{" +
+        "\"type\": \"tcp-pool\"," +
+        "\"host\": \"i am a host\"," +
+        "\"port\": \"12345\"," +
+        "\"timeout\": \"5 minutes\"," +
+        "\"connections\": 8," +
+        "\"resolveAll\": true," +
+        "\"minChunkSize\": \"16 kilobytes\"," +
+        "\"reconnectInterval\": \"1 second\"" +
+      "}";
+
+    final ObjectMapper mapper = Jackson.newObjectMapper();
+    mapper.registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+
+    final InfluxDbPooledTcpWriter.Factory factory = mapper.readValue(json, InfluxDbPooledTcpWriter.Factory.class);
+    assertEquals("expected TCP host", "i am a host", factory.host());
+    assertEquals("expected TCP port", 12345, factory.port());
+    assertEquals("expected TCP timeout", Duration.minutes(5), factory.timeout());
+    assertEquals("expected connections", 8, factory.connections());
+    assertTrue("expected resolveAll", factory.resolveAll());
+    assertEquals("expected min chunk size", Size.kilobytes(16), factory.minChunkSize());
+    assertEquals("expected reconnect interval", Duration.seconds(1), factory.reconnectInterval());
+  }
+
+  @Test
+  public void testSplit_OnLineBoundaries() {
+    final byte[] bytes = "a 1\nbb 2\nccc 3\ndddd 4\n".getBytes(StandardCharsets.UTF_8);
+    final List<String> chunks = InfluxDbPooledTcpWriter.split(bytes, 3).stream()
+      .map(c -> new String(bytes, c[0], c[1], StandardCharsets.UTF_8))
+      .collect(toList());
+
+    assertEquals("should split into whole lines", ImmutableList.of("a 1\n", "bb 2\n", "ccc 3\ndddd 4\n"), chunks);
+  }
+
+  @Test
+  public void testSplit_NoTrailingSeparator() {
+    final byte[] bytes = "a\nb\nc".getBytes(StandardCharsets.UTF_8);
+    final List<String> chunks = InfluxDbPooledTcpWriter.split(bytes, 2).stream()
+      .map(c -> new String(bytes, c[0], c[1], StandardCharsets.UTF_8))
+      .collect(toList());
+
+    assertEquals("should put the unterminated line in the last chunk", ImmutableList.of("a\n", "b\nc"), chunks);
+  }
+
+  @Test
+  public void testSplit_SingleLine() {
+    final byte[] bytes = "a 1\n".getBytes(StandardCharsets.UTF_8);
+    final List<int[]> chunks = InfluxDbPooledTcpWriter.split(bytes, 4);
+    assertEquals("should not split a single line", 1, chunks.size());
+    assertEquals("should cover the whole payload", bytes.length, chunks.get(0)[1]);
+  }
+
+  @Test
+  public void testWriteBytes_SpreadsLinesAcrossConnections() throws Exception {
+    try (ServerSocket first = new ServerSocket(0); ServerSocket second = new ServerSocket(0)) {
+      final CompletableFuture<String> firstReceived = CompletableFuture.supplyAsync(() -> readAll(first));
+      final CompletableFuture<String> secondReceived = CompletableFuture.supplyAsync(() -> readAll(second));
+
+      final InfluxDbPooledTcpWriter writer = new InfluxDbPooledTcpWriter(
+        ImmutableList.of(
+          new InfluxDbTcpWriter("localhost", first.getLocalPort(), Duration.seconds(5)),
+          new InfluxDbTcpWriter("localhost", second.getLocalPort(), Duration.seconds(5))
+        ),
+        1,
+        Duration.minutes(1)
+      );
+
+      writer.writeBytes("a x=1i 1\nb x=2i 1\nc x=3i 1\nd x=4i 1\n".getBytes(StandardCharsets.UTF_8));
+      writer.close();
+
+      final String firstLines = firstReceived.get();
+      final String secondLines = secondReceived.get();
+      assertFalse("should write to the first connection", firstLines.isEmpty());
+      assertFalse("should write to the second connection", secondLines.isEmpty());
+
+      final Set<String> lines = new HashSet<>();
+      lines.addAll(Arrays.asList((firstLines + secondLines).split("\n")));
+      assertEquals("should write every line exactly once",
+        new HashSet<>(Arrays.asList("a x=1i 1", "b x=2i 1", "c x=3i 1", "d x=4i 1")),
+        lines);
+      assertEquals("should not duplicate lines", 36, firstLines.length() + secondLines.length());
+    }
+  }
+
+  @Test
+  public void testSend_RecoversAfterFullOutage() throws Exception {
+    final int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+
+    final InfluxDbPooledTcpWriter writer = new InfluxDbPooledTcpWriter(
+      ImmutableList.of(new InfluxDbTcpWriter("localhost", port, Duration.seconds(5))),
+      1,
+      Duration.minutes(1)
+    );
+    final Sender sender = new Sender(writer);
+
+    assertFalse("should fail while the consumer is down", sender.send(ImmutableList.of(measurement("a"))));
+    assertEquals("should mark the failed connection unhealthy", 0, writer.healthyConnections());
+    assertFalse("should fail while the consumer is down", sender.send(ImmutableList.of(measurement("b"))));
+    assertEquals("should stay unhealthy while the consumer is down", 0, writer.healthyConnections());
+
+    try (ServerSocket server = new ServerSocket(port)) {
+      final CompletableFuture<String> received = CompletableFuture.supplyAsync(() -> readAll(server));
+
+      assertTrue("should reconnect once the consumer is back", sender.send(ImmutableList.of(measurement("c"))));
+      assertEquals("should reconnect without the background reconnector", 1, writer.healthyConnections());
+      sender.close();
+
+      assertEquals("should write every queued measurement",
+        "a x=1i 90210000000\nb x=1i 90210000000\nc x=1i 90210000000\n",
+        received.get());
+    }
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private static InfluxDbMeasurement measurement(final String name) {
+    return InfluxDbMeasurement.create(name, ImmutableMap.of(), ImmutableMap.of("x", "1i"), 90210L);
+  }
+
+  private static String readAll(final ServerSocket server) {
+    try (Socket socket = server.accept(); InputStream in = socket.getInputStream()) {
+      return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
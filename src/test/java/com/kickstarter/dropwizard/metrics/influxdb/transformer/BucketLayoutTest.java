@@ -0,0 +1,52 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import io.dropwizard.jackson.Jackson;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class BucketLayoutTest {
+  @Test
+  public void testSerialization() throws IOException {
+    final ObjectMapper mapper = Jackson.newObjectMapper();
+    mapper.registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+
+    final BucketLayout layout = mapper.readValue("{\"type\": \"fixed\", \"bounds\": [10, 1, 5]}", BucketLayout.class);
+    assertArrayEquals("expected sorted fixed bounds", new double[] {1, 5, 10}, layout.bounds(), 0.0);
+  }
+
+  @Test
+  public void testFixedBounds_Deduplicated() {
+    assertArrayEquals(
+      "should sort and deduplicate bounds",
+      new double[] {0.5, 2, 3},
+      FixedBucketLayout.of(3.0, 0.5, 2.0, 3.0).bounds(),
+      0.0
+    );
+  }
+
+  @Test
+  public void testLogLinearBounds() {
+    assertArrayEquals(
+      "should split each decade into equal-width buckets",
+      new double[] {1, 4, 7, 10, 40, 70, 100},
+      LogLinearBucketLayout.of(1, 100, 3).bounds(),
+      0.0
+    );
+  }
+
+  @Test
+  public void testLogLinearBounds_FractionalRange() {
+    assertArrayEquals(
+      "should clamp buckets to the range and end at max",
+      new double[] {0.5, 0.6, 0.7, 0.8, 0.9, 1, 2, 2.5},
+      LogLinearBucketLayout.of(0.5, 2.5, 9).bounds(),
+      0.0
+    );
+  }
+}
@@ -0,0 +1,110 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
+import com.kickstarter.dropwizard.metrics.reservoir.LogBucketReservoir;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BucketTransformerTest {
+  @Test
+  public void testFromHistogram_Buckets() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithSelections(
+      parser,
+      new FieldSelection("Measurement", ImmutableList.of("count"), FixedBucketLayout.of(10.0, 50.0, 100.5))
+    );
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final Histogram histogram = new Histogram(new UniformReservoir());
+    histogram.update(5L);
+    histogram.update(10L);
+    histogram.update(70L);
+    histogram.update(1000L);
+
+    final InfluxDbMeasurement measurement = transformer.fromHistogram("some.metric.name", histogram, 90210L);
+    assertEquals("should add cumulative bucket counts",
+      ImmutableMap.of("count", "4i", "le-10", "2i", "le-50", "2i", "le-100.5", "3i", "le-inf", "4i"),
+      measurement.fields());
+  }
+
+  @Test
+  public void testFromHistogram_LogBucketReservoir() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithSelections(
+      parser,
+      new FieldSelection("Measurement", ImmutableList.of("count"), FixedBucketLayout.of(10.0, 50.0, 100.5))
+    );
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final Histogram histogram = new Histogram(new LogBucketReservoir());
+    histogram.update(5L);
+    histogram.update(10L);
+    histogram.update(70L);
+    histogram.update(1000L);
+
+    final InfluxDbMeasurement measurement = transformer.fromHistogram("some.metric.name", histogram, 90210L);
+    assertEquals("should count buckets from the reservoir",
+      ImmutableMap.of("count", "4i", "le-10", "2i", "le-50", "2i", "le-100.5", "3i", "le-inf", "4i"),
+      measurement.fields());
+  }
+
+  @Test
+  public void testFromTimer_BucketsInDurationUnit() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithSelections(
+      parser,
+      new FieldSelection("Measurement", null, FixedBucketLayout.of(60.0))
+    );
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final Timer timer = new Timer();
+    timer.update(50, TimeUnit.MILLISECONDS);
+    timer.update(70, TimeUnit.MILLISECONDS);
+
+    final InfluxDbMeasurement measurement = transformer.fromTimer("some.metric.name", timer, 90210L);
+    assertEquals("should keep default fields without a field list", 15 + 2, measurement.fields().size());
+    assertEquals("should compare bounds in the duration unit", "1i", measurement.fields().get("le-60"));
+    assertEquals("should count every sampled value", "2i", measurement.fields().get("le-inf"));
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private static final ImmutableMap<String, String> BASE_TAGS = ImmutableMap.of(
+    "some", "simple",
+    "global", "tags"
+  );
+
+  private static final ImmutableMap<String, String> MEASUREMENT_TAGS = ImmutableMap.of(
+    "more", "specific",
+    "measurement", "tags"
+  );
+
+  private static DropwizardTransformer transformerWithSelections(final DropwizardMeasurementParser parser,
+                                                                final FieldSelection... selections) {
+    return new DropwizardTransformer.Builder(BASE_TAGS, parser, true, true, TimeUnit.SECONDS, TimeUnit.MILLISECONDS)
+      .fieldSelections(Arrays.asList(selections))
+      .build();
+  }
+}
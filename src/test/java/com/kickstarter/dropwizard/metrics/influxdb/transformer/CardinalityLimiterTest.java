@@ -0,0 +1,166 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+
+public class CardinalityLimiterTest {
+  private final MetricRegistry registry = new MetricRegistry();
+
+  @Test
+  public void testAdmit_UnderCap() {
+    final CardinalityLimiter limiter = new CardinalityLimiter(2, 10, CardinalityLimiter.Overflow.AGGREGATE, registry);
+    assertEquals("should admit a new series",
+      Optional.of(tags("a")),
+      limiter.admit("requests.a", "requests", tags("a")));
+    assertEquals("should admit a second series",
+      Optional.of(tags("b")),
+      limiter.admit("requests.b", "requests", tags("b")));
+    assertEquals("should admit a known series",
+      Optional.of(tags("a")),
+      limiter.admit("requests.a", "requests", tags("a")));
+    assertEquals("should not count overflows", 0, registry.getCounters().size());
+  }
+
+  @Test
+  public void testAdmit_PerMeasurementCapAggregates() {
+    final CardinalityLimiter limiter = new CardinalityLimiter(1, 10, CardinalityLimiter.Overflow.AGGREGATE, registry);
+    limiter.admit("requests.a", "requests", tags("a"));
+
+    assertEquals("should report the series under overflow tags",
+      Optional.of(ImmutableMap.of("user", CardinalityLimiter.OVERFLOW_VALUE)),
+      limiter.admit("requests.b", "requests", tags("b")));
+    assertEquals("should admit other measurements",
+      Optional.of(tags("b")),
+      limiter.admit("responses.b", "responses", tags("b")));
+    assertEquals("should count the overflow by measurement",
+      1,
+      registry.counter("influxdb-reporter.overflow,measurement=requests").getCount());
+  }
+
+  @Test
+  public void testAdmit_GlobalCapDrops() {
+    final CardinalityLimiter limiter = new CardinalityLimiter(10, 2, CardinalityLimiter.Overflow.DROP, registry);
+    limiter.admit("requests.a", "requests", tags("a"));
+    limiter.admit("responses.a", "responses", tags("a"));
+
+    assertEquals("should drop series beyond the global cap",
+      Optional.empty(),
+      limiter.admit("errors.a", "errors", tags("a")));
+    assertEquals("should still admit known series",
+      Optional.of(tags("a")),
+      limiter.admit("requests.a", "requests", tags("a")));
+    assertEquals("should count the overflow by measurement",
+      1,
+      registry.counter("influxdb-reporter.overflow,measurement=errors").getCount());
+  }
+
+  @Test
+  public void testAdmit_UntaggedOverflowDropped() {
+    final CardinalityLimiter limiter = new CardinalityLimiter(10, 1, CardinalityLimiter.Overflow.AGGREGATE, registry);
+    limiter.admit("requests.a", "requests", tags("a"));
+    assertEquals("should drop an untagged series",
+      Optional.empty(),
+      limiter.admit("responses", "responses", ImmutableMap.of()));
+  }
+
+  @Test
+  public void testAdmit_OverflowCountersExempt() {
+    final CardinalityLimiter limiter = new CardinalityLimiter(1, 1, CardinalityLimiter.Overflow.DROP, registry);
+    limiter.admit("requests.a", "requests", tags("a"));
+    final Map<String, String> tags = ImmutableMap.of("measurement", "requests");
+    assertEquals("should admit the overflow counters",
+      Optional.of(tags),
+      limiter.admit("overflow", CardinalityLimiter.OVERFLOW_MEASUREMENT, tags));
+  }
+
+  @Test
+  public void testAggregate() {
+    final CardinalityLimiter limiter = new CardinalityLimiter(1, 10, CardinalityLimiter.Overflow.AGGREGATE, registry);
+    limiter.admit("requests.a", "requests", tags("a"));
+    final Map<String, String> overflowTags = limiter.admit("requests.b", "requests", tags("b")).get();
+
+    final InfluxDbMeasurement admitted =
+      InfluxDbMeasurement.create("requests", tags("a"), ImmutableMap.of("count", "1i"), 90210L);
+    final ImmutableList<InfluxDbMeasurement> aggregated = ImmutableList.copyOf(limiter.aggregate(Arrays.asList(
+      admitted,
+      InfluxDbMeasurement.create("requests", overflowTags, ImmutableMap.of("count", "2i", "mean", "1.5"), 90210L),
+      null,
+      InfluxDbMeasurement.create("requests", overflowTags, ImmutableMap.of("count", "3i", "mean", "2.5"), 90210L)
+    )));
+
+    assertEquals("should sum integer fields of the overflow series and omit dropped measurements",
+      ImmutableList.of(
+        admitted,
+        InfluxDbMeasurement.create(
+          "requests", overflowTags, ImmutableMap.of("count", "5i", CardinalityLimiter.SERIES_FIELD, "2i"), 90210L
+        )
+      ),
+      aggregated);
+  }
+
+  @Test
+  public void testAggregate_SnapshotFields() {
+    final CardinalityLimiter limiter = new CardinalityLimiter(1, 10, CardinalityLimiter.Overflow.AGGREGATE, registry);
+    limiter.admit("requests.a", "requests", tags("a"));
+    final Map<String, String> overflowTags = limiter.admit("requests.b", "requests", tags("b")).get();
+
+    final ImmutableList<InfluxDbMeasurement> aggregated = ImmutableList.copyOf(limiter.aggregate(Arrays.asList(
+      InfluxDbMeasurement.create("requests", overflowTags, histogramFields(4, 2, 9, 10), 90210L),
+      InfluxDbMeasurement.create("requests", overflowTags, histogramFields(3, 5, 7, 20), 90210L)
+    )));
+
+    assertEquals("should keep the extreme min and max, sum run counts and omit snapshot sizes",
+      ImmutableList.of(InfluxDbMeasurement.create(
+        "requests",
+        overflowTags,
+        ImmutableMap.of("min", "2i", "max", "9i", "run-count", "30i", CardinalityLimiter.SERIES_FIELD, "2i"),
+        90210L
+      )),
+      aggregated);
+  }
+
+  @Test
+  public void testRelease() {
+    final CardinalityLimiter limiter = new CardinalityLimiter(1, 10, CardinalityLimiter.Overflow.DROP, registry);
+    limiter.admit("requests.a", "requests", tags("a"));
+    limiter.admit("requests.a.copy", "requests", tags("a"));
+
+    limiter.release("requests.a");
+    assertEquals("should hold a series while another metric shares it",
+      Optional.empty(),
+      limiter.admit("requests.b", "requests", tags("b")));
+
+    limiter.release("requests.a.copy");
+    assertEquals("should admit a new series once the last metric is released",
+      Optional.of(tags("b")),
+      limiter.admit("requests.b", "requests", tags("b")));
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private static Map<String, String> tags(final String user) {
+    return ImmutableMap.of("user", user);
+  }
+
+  private static Map<String, String> histogramFields(final long count,
+                                                     final long min,
+                                                     final long max,
+                                                     final long runs) {
+    return ImmutableMap.of(
+      "count", count + "i",
+      "min", min + "i",
+      "max", max + "i",
+      "run-count", runs + "i"
+    );
+  }
+}
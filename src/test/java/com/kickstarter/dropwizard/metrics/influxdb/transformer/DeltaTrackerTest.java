@@ -0,0 +1,98 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Clock;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeltaTrackerTest {
+  private final MutableClock clock = new MutableClock();
+
+  @Test
+  public void testEmit_FirstObservationReportsWholeCount() {
+    final DeltaTracker tracker = new DeltaTracker(true, TimeUnit.SECONDS, clock);
+    assertEquals("should report the whole count without a rate",
+      ImmutableMap.of("count-delta", "15i"),
+      emit(tracker, 1L, 15L, true));
+  }
+
+  @Test
+  public void testEmit_Increment() {
+    final DeltaTracker tracker = new DeltaTracker(true, TimeUnit.MINUTES, clock);
+    emit(tracker, 1L, 15L, true);
+
+    clock.tick = TimeUnit.SECONDS.toNanos(10);
+    assertEquals("should report the increment and its rate per minute",
+      ImmutableMap.of("count-delta", "5i", "count-rate", "30.0"),
+      emit(tracker, 1L, 20L, true));
+  }
+
+  @Test
+  public void testEmit_MonotonicReset() {
+    final DeltaTracker tracker = new DeltaTracker(false, TimeUnit.SECONDS, clock);
+    emit(tracker, 1L, 15L, true);
+    assertEquals("should treat a decrease as a reset", ImmutableMap.of("count-delta", "4i"), emit(tracker, 1L, 4L, true));
+  }
+
+  @Test
+  public void testEmit_SignedDecrease() {
+    final DeltaTracker tracker = new DeltaTracker(false, TimeUnit.SECONDS, clock);
+    emit(tracker, 1L, 15L, false);
+    assertEquals("should report a negative increment", ImmutableMap.of("count-delta", "-11i"), emit(tracker, 1L, 4L, false));
+  }
+
+  @Test
+  public void testEvict() {
+    final DeltaTracker tracker = new DeltaTracker(false, TimeUnit.SECONDS, clock);
+    for (int i = 0; i < 1_000; i++) {
+      emit(tracker, DeltaTracker.seriesId("series." + i), i, true);
+    }
+    for (int i = 0; i < 1_000; i += 2) {
+      tracker.evict(DeltaTracker.seriesId("series." + i));
+    }
+
+    for (int i = 0; i < 1_000; i++) {
+      assertEquals("should report whole counts of evicted series only",
+        ImmutableMap.of("count-delta", i % 2 == 0 ? (i + 1) + "i" : "1i"),
+        emit(tracker, DeltaTracker.seriesId("series." + i), i + 1, true));
+    }
+  }
+
+  @Test
+  public void testEmit_ManySeries() {
+    final DeltaTracker tracker = new DeltaTracker(false, TimeUnit.SECONDS, clock);
+    for (int i = 0; i < 10_000; i++) {
+      emit(tracker, DeltaTracker.seriesId("series." + i), i, true);
+    }
+    for (int i = 0; i < 10_000; i++) {
+      assertEquals("should keep every series' previous count",
+        ImmutableMap.of("count-delta", "1i"),
+        emit(tracker, DeltaTracker.seriesId("series." + i), i + 1, true));
+    }
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private static Map<String, String> emit(final DeltaTracker tracker,
+                                          final long seriesId,
+                                          final long count,
+                                          final boolean monotonic) {
+    final Map<String, String> fields = new HashMap<>();
+    tracker.emit(seriesId, count, monotonic, "count", fields);
+    return fields;
+  }
+
+  private static class MutableClock extends Clock {
+    private long tick = 0L;
+
+    @Override public long getTick() {
+      return tick;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DeltaTransformerTest {
+  @Test
+  public void testFromCounters_UngroupedDeltas() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithDeltas(parser, false);
+
+    final Counter counter = new Counter();
+    counter.inc(15L);
+    final Map<String, Counter> cMap = ImmutableMap.of("some.stuff.queued", counter);
+
+    when(parser.parse("some.stuff.queued")).thenReturn(
+      DropwizardMeasurement.create("some.stuff.queued", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    assertEquals("should report the whole count at first",
+      ImmutableList.of(
+        InfluxDbMeasurement.create("some.stuff.queued", ALL_TAGS, ImmutableMap.of("count", "15i", "count-delta", "15i"), 90210L)
+      ),
+      transformer.fromCounters(cMap, 90210L));
+
+    counter.dec(5L);
+    assertEquals("should report a signed increment",
+      ImmutableList.of(
+        InfluxDbMeasurement.create("some.stuff.queued", ALL_TAGS, ImmutableMap.of("count", "10i", "count-delta", "-5i"), 90211L)
+      ),
+      transformer.fromCounters(cMap, 90211L));
+  }
+
+  @Test
+  public void testFromCounters_GroupedDeltas() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithDeltas(parser, true);
+
+    final List<Counter> counters = ImmutableList.of(new Counter(), new Counter());
+    counters.get(0).inc(15L);
+    counters.get(1).inc(6L);
+
+    final Map<String, Counter> cMap = ImmutableMap.of(
+      "some.stuff.queued", counters.get(0),
+      "some.stuff.processed", counters.get(1)
+    );
+
+    when(parser.parse("some.stuff")).thenReturn(
+      DropwizardMeasurement.create("some.stuff", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    transformer.fromCounters(cMap, 90210L);
+    counters.get(1).inc(4L);
+
+    final List<InfluxDbMeasurement> expected = ImmutableList.of(
+      InfluxDbMeasurement.create(
+        "some.stuff",
+        ALL_TAGS,
+        ImmutableMap.of("queued", "15i", "queued-delta", "0i", "processed", "10i", "processed-delta", "4i"),
+        90211L
+      )
+    );
+
+    final List<InfluxDbMeasurement> measurements = transformer.fromCounters(cMap, 90211L);
+    assertEquals("should group each counter's increment with its count", expected, measurements);
+  }
+
+  @Test
+  public void testFromMeter_Deltas() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithDeltas(parser, true);
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final Meter meter = new Meter();
+    meter.mark(7L);
+    transformer.fromMeter("some.metric.name", meter, 90210L);
+    meter.mark(3L);
+
+    final InfluxDbMeasurement measurement = transformer.fromMeter("some.metric.name", meter, 90211L);
+    assertEquals("should report the increment since the last report", "3i", measurement.fields().get("count-delta"));
+    assertEquals("should keep the cumulative count", "10i", measurement.fields().get("count"));
+  }
+
+  @Test
+  public void testFromTimer_Deltas() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithDeltas(parser, true);
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final Timer timer = new Timer();
+    timer.update(50, TimeUnit.MILLISECONDS);
+
+    final InfluxDbMeasurement measurement = transformer.fromTimer("some.metric.name", timer, 90210L);
+    assertEquals("should report the increment of the run count", "1i", measurement.fields().get("run-count-delta"));
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private static final ImmutableMap<String, String> BASE_TAGS = ImmutableMap.of(
+    "some", "simple",
+    "global", "tags"
+  );
+
+  private static final ImmutableMap<String, String> MEASUREMENT_TAGS = ImmutableMap.of(
+    "more", "specific",
+    "measurement", "tags"
+  );
+
+  private static final ImmutableMap<String, String> ALL_TAGS = new ImmutableMap.Builder<String, String>()
+    .putAll(BASE_TAGS)
+    .putAll(MEASUREMENT_TAGS)
+    .build();
+
+  private static DropwizardTransformer transformerWithDeltas(final DropwizardMeasurementParser parser, final boolean group) {
+    return new DropwizardTransformer.Builder(BASE_TAGS, parser, group, group, TimeUnit.SECONDS, TimeUnit.MILLISECONDS)
+      .deltas(new DeltaTracker(false, TimeUnit.SECONDS))
+      .build();
+  }
+}
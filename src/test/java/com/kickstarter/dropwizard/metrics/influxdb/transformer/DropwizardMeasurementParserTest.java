@@ -1,11 +1,14 @@
 package com.kickstarter.dropwizard.metrics.influxdb.transformer;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class DropwizardMeasurementParserTest {
   private static final DropwizardMeasurementParser transformer = new DropwizardMeasurementParser(
@@ -35,4 +38,103 @@ public class DropwizardMeasurementParserTest {
 
     assertEquals(expected, measurement);
   }
+
+  @Test
+  public void testMeasurement_FromEscapedMeasurementLine() {
+    final DropwizardMeasurementParser parser = new DropwizardMeasurementParser(
+      ImmutableMap.of("custom metric", new TaggedPattern("\\.holy\\.(?<adjective>[A-Za-z ]+)\\.cow\\.", "adjective")),
+      DropwizardMeasurementParser.DEFAULT_CACHE_SIZE,
+      Escaping.BACKSLASH
+    );
+
+    assertEquals(
+      "should escape template measurements",
+      "custom\\ metric,adjective=jumping\\ jack",
+      parser.parse(".holy.jumping jack.cow.").toString()
+    );
+    assertEquals(
+      "should keep escaped separators in measurement lines",
+      DropwizardMeasurement.create("custom metric", ImmutableMap.of("adjective", "jumping jack"), Optional.empty(),
+        Escaping.BACKSLASH),
+      parser.parse("custom\\ metric,adjective=jumping\\ jack")
+    );
+  }
+
+  @Test
+  public void testMeasurement_FromGlobTemplate() {
+    final DropwizardMeasurementParser parser = DropwizardMeasurementParser.withTemplates(
+      ImmutableList.of(GlobTemplate.parse("*.resources.* .measurement.resource.method")),
+      ImmutableMap.of("custom_metric", new TaggedPattern(".*\\.resources\\.(?<resource>[A-Za-z]+).*", "resource")),
+      DropwizardMeasurementParser.DEFAULT_CACHE_SIZE,
+      Escaping.SANITIZE
+    );
+
+    assertEquals(
+      "should try glob templates before regex templates",
+      DropwizardMeasurement.create("resources", ImmutableMap.of("resource", "Cats", "method", "get"), Optional.empty()),
+      parser.parse("app.resources.Cats.get")
+    );
+    assertEquals(
+      "should fall back to regex templates",
+      DropwizardMeasurement.create("jvm_gc", ImmutableMap.of("metric", "PS-Scavenge"), Optional.empty()),
+      parser.parse("jvm.gc.PS-Scavenge")
+    );
+  }
+
+  @Test
+  public void testDiagnostics() {
+    final DropwizardMeasurementParser parser = DropwizardMeasurementParser.withTemplates(
+      ImmutableList.of(GlobTemplate.parse("app.* .measurement.field")),
+      ImmutableMap.of("custom_metric", new TaggedPattern("\\.holy\\.(?<adjective>[A-Za-z]+)\\.cow\\.", "adjective")),
+      DropwizardMeasurementParser.DEFAULT_CACHE_SIZE,
+      Escaping.SANITIZE
+    );
+
+    parser.parse("app.requests.count");
+    parser.parse(".holy.jumping.cow.");
+    parser.parse(".holy.jumping.cow.");
+    parser.parse(".holy.flying.cow.");
+    parser.parse("some.plain.name");
+    parser.parse("custom_metric,adjective=jumping");
+    try {
+      parser.parse("custom_metric,adjective");
+      fail("Expected an exception to be thrown");
+    } catch (final IllegalArgumentException e) {
+      // expected.
+    }
+
+    final ParserDiagnostics diagnostics = parser.diagnostics();
+    assertEquals("should count glob template hits",
+      Long.valueOf(1), diagnostics.templateHits().get("app.* .measurement.field"));
+    assertEquals("should count regex template hits of uncached names",
+      Long.valueOf(2), diagnostics.templateHits().get("custom_metric"));
+    assertEquals("should count templates that never matched", Long.valueOf(0), diagnostics.templateHits().get("jvm"));
+    assertEquals("should list glob templates first",
+      "app.* .measurement.field", diagnostics.templateHits().keySet().iterator().next());
+    assertEquals("should count unmatched names", 2, diagnostics.unmatched());
+    assertEquals("should sample plain unmatched names",
+      ImmutableList.of("some.plain.name"), diagnostics.unmatchedSample());
+    assertEquals("should count failures", 1, diagnostics.failures());
+    assertEquals("should sample failures with their reason",
+      ImmutableList.of("custom_metric,adjective: tags must contain exactly one '=' character"),
+      diagnostics.failureSample());
+    assertTrue("should time matching", diagnostics.matchNanos() > 0);
+  }
+
+  @Test
+  public void testParse_CacheBounded() {
+    final DropwizardMeasurementParser parser = new DropwizardMeasurementParser(ImmutableMap.of(), 2);
+    parser.parse("first");
+    parser.parse("second");
+    parser.parse("first");
+    parser.parse("third");
+
+    assertEquals("should count cache hits", 1, parser.cacheStats().hitCount());
+    assertEquals("should count cache misses", 3, parser.cacheStats().missCount());
+    assertEquals("should evict beyond the maximum size", 1, parser.cacheStats().evictionCount());
+    assertEquals("should hold at most the maximum size", 2, parser.cacheSize());
+    assertEquals("should parse evicted names again",
+      DropwizardMeasurement.create("second", ImmutableMap.of(), Optional.empty()),
+      parser.parse("second"));
+  }
 }
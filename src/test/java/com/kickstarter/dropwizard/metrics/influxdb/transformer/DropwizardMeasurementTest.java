@@ -6,6 +6,7 @@ import org.junit.Test;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 public class DropwizardMeasurementTest {
@@ -26,6 +27,29 @@ public class DropwizardMeasurementTest {
     assertEquals(expected, measurement);
   }
 
+  @Test
+  public void testCreate_BackslashEscapesValues() {
+    final DropwizardMeasurement measurement = DropwizardMeasurement.create(
+      "Mode,lS=rv e r",
+      ImmutableMap.of("k,e=y ", "v\\ a"),
+      Optional.of("f i=e,ld"),
+      Escaping.BACKSLASH
+    );
+
+    assertEquals("should escape commas and spaces in the name", "Mode\\,lS=rv\\ e\\ r", measurement.name());
+    assertEquals("should escape tags, leaving escaped characters as they are",
+      ImmutableMap.of("k\\,e\\=y\\ ", "v\\ a"),
+      measurement.tags());
+    assertEquals("should escape the field", Optional.of("f\\ i\\=e\\,ld"), measurement.field());
+  }
+
+  @Test
+  public void testEscape_ReturnsCleanStrings() {
+    final String clean = "jvm.memory.heap-used";
+    assertSame("should not copy clean strings", clean, Escaping.SANITIZE.escape(clean, Escaping.KEY_SPECIALS));
+    assertSame("should not copy clean strings", clean, Escaping.BACKSLASH.escape(clean, Escaping.KEY_SPECIALS));
+  }
+
   @Test
   public void testFromLine_Deserializes() {
     final DropwizardMeasurement expected = DropwizardMeasurement.create(
@@ -116,6 +140,53 @@ public class DropwizardMeasurementTest {
     }
   }
 
+  @Test
+  public void testFromLine_DeserializesEscapedSeparators() {
+    final DropwizardMeasurement expected = DropwizardMeasurement.create(
+      "Measure ment",
+      ImmutableMap.of("act,ion", "re=store", "model", "cf 2"),
+      Optional.of("a field"),
+      Escaping.BACKSLASH
+    );
+
+    assertEquals(
+      expected,
+      DropwizardMeasurement.fromLine(
+        "Measure\\ ment,act\\,ion=re\\=store,model=cf\\ 2 a\\ field",
+        Escaping.BACKSLASH
+      )
+    );
+  }
+
+  @Test
+  public void testFromLine_IgnoresTrailingSeparators() {
+    assertEquals("should ignore a space after the field",
+      DropwizardMeasurement.create("a", ImmutableMap.of(), Optional.of("b")),
+      DropwizardMeasurement.fromLine("a b "));
+    assertEquals("should ignore commas after the tags",
+      DropwizardMeasurement.create("a", ImmutableMap.of("b", "c"), Optional.of("d")),
+      DropwizardMeasurement.fromLine("a,b=c,, d"));
+    assertEquals("should keep an escaped trailing space",
+      DropwizardMeasurement.create("a", ImmutableMap.of(), Optional.of("b "), Escaping.BACKSLASH),
+      DropwizardMeasurement.fromLine("a b\\ ", Escaping.BACKSLASH));
+  }
+
+  @Test
+  public void testEscape_TrailingBackslash() {
+    assertEquals("should escape a trailing backslash",
+      "v\\\\",
+      Escaping.BACKSLASH.escape("v\\", Escaping.KEY_SPECIALS));
+    assertEquals("should leave an escaped trailing backslash as it is",
+      "v\\\\",
+      Escaping.BACKSLASH.escape("v\\\\", Escaping.KEY_SPECIALS));
+
+    final DropwizardMeasurement measurement =
+      DropwizardMeasurement.create("a", ImmutableMap.of("k", "v\\", "l", "w"), Optional.empty(), Escaping.BACKSLASH);
+    assertEquals("should not escape the following separator",
+      measurement,
+      DropwizardMeasurement.fromLine(measurement.toString(), Escaping.BACKSLASH));
+  }
+
   @Test
   public void testToString_Serializes() {
     final DropwizardMeasurement measurement = DropwizardMeasurement.create(
@@ -215,4 +286,23 @@ public class DropwizardMeasurementTest {
     final DropwizardMeasurement fromLine = DropwizardMeasurement.fromLine(measurementStr);
     assertEquals(measurement, fromLine);
   }
+
+  @Test
+  public void testIntegrated_SerializationWithEscapes() {
+    final DropwizardMeasurement measurement = DropwizardMeasurement.create(
+      "Measure,ment",
+      ImmutableMap.of("action", "re store", "mo=del", "cf,2"),
+      Optional.of("i like being a field"),
+      Escaping.BACKSLASH
+    );
+
+    final String measurementStr = measurement.toString();
+    assertEquals(
+      "Measure\\,ment,action=re\\ store,mo\\=del=cf\\,2 i\\ like\\ being\\ a\\ field",
+      measurementStr
+    );
+
+    final DropwizardMeasurement fromLine = DropwizardMeasurement.fromLine(measurementStr, Escaping.BACKSLASH);
+    assertEquals(measurement, fromLine);
+  }
 }
@@ -9,7 +9,11 @@ import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.kickstarter.dropwizard.metrics.gauge.DoubleGauge;
+import com.kickstarter.dropwizard.metrics.gauge.LongGauge;
 import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
+import com.kickstarter.dropwizard.metrics.tagged.TaggedCounter;
+import com.kickstarter.dropwizard.metrics.tagged.TaggedTimer;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -20,7 +24,12 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -88,6 +97,44 @@ public class DropwizardTransformerTest {
     assertEquals("should add all timer fields", fieldKeys, measurement.fields().keySet());
   }
 
+  @Test
+  public void testFromTimer_ReusesPlan() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithParser(parser, true);
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final Timer timer = new Timer();
+    timer.update(50, TimeUnit.MILLISECONDS);
+    final InfluxDbMeasurement first = transformer.fromTimer("some.metric.name", timer, 90210L);
+
+    timer.update(70, TimeUnit.MILLISECONDS);
+    final InfluxDbMeasurement second = transformer.fromTimer("some.metric.name", timer, 90211L);
+
+    verify(parser, times(1)).parse("some.metric.name");
+    assertEquals("should read values every report", "2i", second.fields().get("count"));
+    assertEquals("should reuse the merged tags", first.tags(), second.tags());
+  }
+
+  @Test
+  public void testFromHistogram_FormatsFieldTypes() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithParser(parser, true);
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final Histogram histogram = new Histogram(new ExponentiallyDecayingReservoir());
+    histogram.update(15L);
+
+    final InfluxDbMeasurement measurement = transformer.fromHistogram("some.metric.name", histogram, 90210L);
+    assertEquals("should format integer fields", "15i", measurement.fields().get("max"));
+    assertEquals("should format float fields", "15.0", measurement.fields().get("mean"));
+  }
+
   @Test
   public void testFromMeter() {
     final Set<String> fieldKeys = ImmutableSet.of(
@@ -209,6 +256,166 @@ public class DropwizardTransformerTest {
     assertEquals("should group counters by tags and prefix", expected, measurements);
   }
 
+  @Test
+  public void testFromGauges_GroupedLayoutCached() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithParser(parser, true);
+
+    final Map<String, Gauge> gauges = ImmutableMap.of(
+      "some.stuff.queued", () -> 12,
+      "some.stuff.processed", () -> 15
+    );
+
+    when(parser.parse("some.stuff")).thenReturn(
+      DropwizardMeasurement.create("some.stuff", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    transformer.fromGauges(gauges, 90210L);
+    final List<InfluxDbMeasurement> measurements =
+      transformer.fromGauges(ImmutableMap.of("some.stuff.processed", gauges.get("some.stuff.processed")), 90211L);
+
+    assertEquals("should only report the fields of the current report",
+      ImmutableList.of(InfluxDbMeasurement.create("some.stuff", ALL_TAGS, ImmutableMap.of("processed", "15i"), 90211L)),
+      measurements);
+    verify(parser, times(2)).parse("some.stuff");
+  }
+
+  @Test
+  public void testPrepare() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithParser(parser, true);
+
+    final Timer timer = new Timer();
+    final Gauge<Integer> gauge = () -> 12;
+    when(parser.parse("some.timer")).thenReturn(DropwizardMeasurement.create("some.timer", MEASUREMENT_TAGS, Optional.empty()));
+    when(parser.parse("some.stuff")).thenReturn(DropwizardMeasurement.create("some.stuff", MEASUREMENT_TAGS, Optional.empty()));
+
+    transformer.prepare("some.timer", timer);
+    transformer.prepare("some.stuff.queued", gauge);
+    transformer.fromTimers(ImmutableMap.of("some.timer", timer), 90210L);
+    transformer.fromGauges(ImmutableMap.of("some.stuff.queued", gauge), 90210L);
+
+    verify(parser, times(1)).parse("some.timer");
+    verify(parser, times(1)).parse("some.stuff");
+  }
+
+  @Test
+  public void testEvict() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithParser(parser, true);
+
+    final Map<String, Gauge> gauges = ImmutableMap.of("some.stuff.queued", () -> 12);
+    when(parser.parse("some.stuff")).thenReturn(DropwizardMeasurement.create("some.stuff", MEASUREMENT_TAGS, Optional.empty()));
+
+    transformer.fromGauges(gauges, 90210L);
+    transformer.evict("some.stuff.queued");
+    assertEquals("should report evicted metrics that are registered again",
+      ImmutableList.of(InfluxDbMeasurement.create("some.stuff", ALL_TAGS, ImmutableMap.of("queued", "12i"), 90211L)),
+      transformer.fromGauges(gauges, 90211L));
+
+    verify(parser, times(2)).parse("some.stuff");
+    verify(parser).evict("some.stuff.queued");
+    verify(parser).evict("some.stuff");
+  }
+
+  @Test
+  public void testEvict_SharedParsedName() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithParser(parser, true);
+
+    final Map<String, Gauge> gauges = ImmutableMap.of(
+      "some.stuff.queued", () -> 12,
+      "some.stuff.processed", () -> 15
+    );
+    when(parser.parse("some.stuff")).thenReturn(DropwizardMeasurement.create("some.stuff", MEASUREMENT_TAGS, Optional.empty()));
+
+    transformer.fromGauges(gauges, 90210L);
+    transformer.evict("some.stuff.queued");
+    verify(parser, never()).evict("some.stuff");
+
+    transformer.evict("some.stuff.processed");
+    verify(parser).evict("some.stuff");
+  }
+
+  @Test
+  public void testFromTimer_Tagged() {
+    final DropwizardMeasurementParser parser = spy(DropwizardMeasurementParser.withTemplates(ImmutableMap.of()));
+    final DropwizardTransformer transformer = transformerWithParser(parser, true);
+
+    final TaggedTimer timer = new TaggedTimer("Measurement", MEASUREMENT_TAGS, new ExponentiallyDecayingReservoir());
+    timer.update(50, TimeUnit.MILLISECONDS);
+
+    final InfluxDbMeasurement measurement = transformer.fromTimer("not a=measurement=line", timer, 90210L);
+    assertEquals("should take the measurement from the metric", "Measurement", measurement.name());
+    assertEquals("should add global and metric tags", ALL_TAGS, measurement.tags());
+    verify(parser, never()).parse(anyString());
+  }
+
+  @Test
+  public void testFromCounters_GroupedTagged() {
+    final DropwizardMeasurementParser parser = spy(DropwizardMeasurementParser.withTemplates(ImmutableMap.of()));
+    final DropwizardTransformer transformer = transformerWithParser(parser, true);
+
+    final TaggedCounter cats = new TaggedCounter("Http", ImmutableMap.of("route", "/cats"));
+    final TaggedCounter dogs = new TaggedCounter("Http", ImmutableMap.of("route", "/dogs"));
+    cats.inc(3);
+    dogs.inc(5);
+
+    final List<InfluxDbMeasurement> measurements = transformer.fromCounters(
+      ImmutableMap.of("Http,route=/cats", cats, "Http,route=/dogs", dogs),
+      90210L
+    );
+    assertEquals("should group tagged counters by their measurement and tags",
+      ImmutableSet.of(
+        InfluxDbMeasurement.create("Http", tags("route", "/cats"), ImmutableMap.of("count", "3i"), 90210L),
+        InfluxDbMeasurement.create("Http", tags("route", "/dogs"), ImmutableMap.of("count", "5i"), 90210L)
+      ),
+      ImmutableSet.copyOf(measurements));
+    verify(parser, never()).parse(anyString());
+  }
+
+  @Test
+  public void testFromGauges_GroupedPrimitive() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithParser(parser, true);
+
+    final Map<String, Gauge> gauges = ImmutableMap.of(
+      "some.stuff.queued", (LongGauge) () -> 12L,
+      "some.stuff.ratio", (DoubleGauge) () -> 0.5,
+      "some.stuff.broken", (DoubleGauge) () -> Double.NaN
+    );
+
+    when(parser.parse("some.stuff")).thenReturn(
+      DropwizardMeasurement.create("some.stuff", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final List<InfluxDbMeasurement> expected = ImmutableList.of(
+      InfluxDbMeasurement.create("some.stuff", ALL_TAGS, ImmutableMap.of("queued", "12i", "ratio", "0.5"), 90210L)
+    );
+
+    final List<InfluxDbMeasurement> measurements = transformer.fromGauges(gauges, 90210L);
+    assertEquals("should read primitive gauges and drop NaN values", expected, measurements);
+  }
+
+  @Test
+  public void testFromGauges_UngroupedPrimitive() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithParser(parser, false);
+
+    final Map<String, Gauge> gauges = ImmutableMap.of("some.stuff.queued", (LongGauge) () -> 12L);
+
+    when(parser.parse("some.stuff.queued")).thenReturn(
+      DropwizardMeasurement.create("some.stuff.queued", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final List<InfluxDbMeasurement> expected = ImmutableList.of(
+      InfluxDbMeasurement.create("some.stuff.queued", ALL_TAGS, ImmutableMap.of("value", "12i"), 90210L)
+    );
+
+    final List<InfluxDbMeasurement> measurements = transformer.fromGauges(gauges, 90210L);
+    assertEquals("should read a primitive gauge", expected, measurements);
+  }
+
   @Test
   public void testFromGauges_Ungrouped() {
     final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
@@ -492,6 +699,10 @@ public class DropwizardTransformerTest {
     );
   }
 
+  private static Map<String, String> tags(final String key, final String value) {
+    return ImmutableMap.<String, String>builder().putAll(BASE_TAGS).put(key, value).build();
+  }
+
   private static DropwizardTransformer transformerWithUnits(final TimeUnit rateUnits, final TimeUnit durationUnits) {
     return new DropwizardTransformer(
       ImmutableMap.of(),
@@ -0,0 +1,65 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.google.common.collect.ImmutableList;
+import io.dropwizard.jackson.Jackson;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FieldSelectionTest {
+  @Test
+  public void testMatches() {
+    final FieldSelection selection = new FieldSelection("resources|clients", "count");
+    assertTrue("should match the whole measurement name", selection.matches("resources"));
+    assertFalse("should not match a partial measurement name", selection.matches("resources_v2"));
+  }
+
+  @Test
+  public void testFields_ResolvesPercentileAliases() {
+    final FieldSelection selection = new FieldSelection("resources", "count", "p99", "p9999");
+    assertEquals("should resolve pNN to NN-percentile",
+      Optional.of(ImmutableList.of("count", "99-percentile", "9999-percentile")),
+      selection.fields());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFields_RejectsUnknownFields() {
+    new FieldSelection("resources", "count", "one-minut");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFields_RejectsEmptyFields() {
+    new FieldSelection("resources");
+  }
+
+  @Test
+  public void testDeserialize_RequiresPattern() throws IOException {
+    try {
+      final ObjectMapper mapper = Jackson.newObjectMapper();
+      mapper.registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+      mapper.readValue("{\"fields\": [\"count\"]}", FieldSelection.class);
+      fail("Expected an exception to be thrown");
+    } catch (final JsonMappingException e) {
+      assertTrue("should report the missing pattern",
+        e.getMessage().contains("field selection must have a pattern"));
+    }
+  }
+
+  @Test
+  public void testQuantile() {
+    assertEquals("should parse default percentiles", Optional.of(0.5), FieldSelection.quantile("50-percentile"));
+    assertEquals("should parse two-digit percentiles", Optional.of(0.9), FieldSelection.quantile("90-percentile"));
+    assertEquals("should parse long percentiles", Optional.of(0.9999), FieldSelection.quantile("9999-percentile"));
+    assertEquals("should ignore other fields", Optional.empty(), FieldSelection.quantile("one-minute"));
+  }
+}
@@ -0,0 +1,138 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.gauge.LongGauge;
+import io.dropwizard.util.Duration;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GaugeEvaluatorTest {
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final Counter slowGauges = new Counter();
+
+  @After
+  public void releaseGauges() {
+    release.countDown();
+  }
+
+  @Test
+  public void testEvaluate() {
+    final GaugeEvaluator evaluator = evaluator(true);
+    final Map<String, Gauge> evaluated = evaluator.evaluate(ImmutableMap.of(
+      "b", (LongGauge) () -> 2L,
+      "a", () -> "text"
+    ));
+
+    assertEquals("should keep gauge order", ImmutableList.of("b", "a"), new ArrayList<>(evaluated.keySet()));
+    assertTrue("should keep primitive gauges primitive", evaluated.get("b") instanceof LongGauge);
+    assertEquals("expected the evaluated value", 2L, ((LongGauge) evaluated.get("b")).getLongValue());
+    assertEquals("expected the evaluated value", "text", evaluated.get("a").getValue());
+  }
+
+  @Test
+  public void testEvaluate_SlowGaugeOmitted() {
+    final GaugeEvaluator evaluator = evaluator(false);
+    final Map<String, Gauge> evaluated = evaluator.evaluate(ImmutableMap.of(
+      "fast", () -> 1,
+      "slow", (LongGauge) this::blockingValue
+    ));
+
+    assertEquals("should omit the slow gauge", ImmutableList.of("fast"), new ArrayList<>(evaluated.keySet()));
+    assertEquals("should count the slow gauge", 1, slowGauges.getCount());
+  }
+
+  @Test
+  public void testEvaluate_SlowGaugeLastValue() {
+    final GaugeEvaluator evaluator = evaluator(true);
+    final AtomicLong calls = new AtomicLong();
+    final Map<String, Gauge> gauges = ImmutableMap.of("slow", (LongGauge) () -> {
+      // fast the first time, then slow.
+      return calls.incrementAndGet() == 1 ? 1L : blockingValue();
+    });
+
+    evaluator.evaluate(gauges);
+    final Map<String, Gauge> evaluated = evaluator.evaluate(gauges);
+
+    assertEquals("should report the last value", 1L, ((LongGauge) evaluated.get("slow")).getLongValue());
+    assertEquals("should count the slow gauge", 1, slowGauges.getCount());
+  }
+
+  @Test
+  public void testEvaluate_NoResubmitWhileRunning() throws InterruptedException {
+    final GaugeEvaluator evaluator = evaluator(true);
+    final AtomicInteger calls = new AtomicInteger();
+    final Map<String, Gauge> gauges = ImmutableMap.of("slow", (LongGauge) () -> {
+      calls.incrementAndGet();
+      return blockingValue();
+    });
+
+    evaluator.evaluate(gauges);
+    evaluator.evaluate(gauges);
+    assertEquals("should not evaluate a gauge that is still running", 1, calls.get());
+
+    release.countDown();
+    Thread.sleep(50);
+    final Map<String, Gauge> evaluated = evaluator.evaluate(gauges);
+    assertEquals("should evaluate again once it finishes", 2, calls.get());
+    assertEquals("expected the new value", 42L, ((LongGauge) evaluated.get("slow")).getLongValue());
+  }
+
+  @Test
+  public void testEvaluate_FailingGaugeOmitted() {
+    final GaugeEvaluator evaluator = evaluator(true);
+    final Map<String, Gauge> evaluated = evaluator.evaluate(ImmutableMap.of(
+      "failing", () -> {
+        throw new IllegalStateException("pool closed");
+      }
+    ));
+
+    assertTrue("should omit the failing gauge", evaluated.isEmpty());
+    assertEquals("should not count a failure as slow", 0, slowGauges.getCount());
+  }
+
+  @Test
+  public void testClose_InterruptsEvaluations() throws InterruptedException {
+    final GaugeEvaluator evaluator = evaluator(true);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    evaluator.evaluate(ImmutableMap.of("stuck", (LongGauge) () -> {
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        interrupted.countDown();
+      }
+      return 42L;
+    }));
+
+    evaluator.close();
+    assertTrue("should interrupt the stuck evaluation", interrupted.await(1, TimeUnit.SECONDS));
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private GaugeEvaluator evaluator(final boolean lastValueOnTimeout) {
+    return new GaugeEvaluator(4, Duration.milliseconds(100), lastValueOnTimeout, slowGauges);
+  }
+
+  private long blockingValue() {
+    try {
+      release.await();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return 42L;
+  }
+}
@@ -0,0 +1,104 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class GlobTemplateTest {
+  @Test
+  public void testMatch_MeasurementAndField() {
+    assertEquals(
+      Optional.of(DropwizardMeasurement.create("jvm.gc", ImmutableMap.of(), Optional.of("PS-Scavenge"))),
+      match("jvm.gc.* measurement.measurement.field", "jvm.gc.PS-Scavenge")
+    );
+  }
+
+  @Test
+  public void testMatch_Tags() {
+    assertEquals(
+      Optional.of(DropwizardMeasurement.create(
+        "resources", ImmutableMap.of("resource", "Cats", "method", "get"), Optional.empty()
+      )),
+      match("*.resources.* .measurement.resource.method", "app.resources.Cats.get")
+    );
+  }
+
+  @Test
+  public void testMatch_RestAndDefaultTags() {
+    assertEquals(
+      Optional.of(DropwizardMeasurement.create(
+        "cpu.load.avg", ImmutableMap.of("host", "web1", "env", "prod"), Optional.empty()
+      )),
+      match("servers.* .host.measurement* env=prod", "servers.web1.cpu.load.avg")
+    );
+  }
+
+  @Test
+  public void testMatch_WithoutFilter() {
+    assertEquals(
+      Optional.of(DropwizardMeasurement.create("requests", ImmutableMap.of("region", "us"), Optional.empty())),
+      match("region.measurement", "us.requests.ignored")
+    );
+  }
+
+  @Test
+  public void testMatch_GlobSegments() {
+    assertEquals("should match globs within segments",
+      Optional.of(DropwizardMeasurement.create("pool", ImmutableMap.of(), Optional.empty())),
+      match("jvm.*-pool.* ..measurement", "jvm.old-pool.pool"));
+    assertEquals("should not match other segments",
+      Optional.empty(),
+      match("jvm.*-pool.* ..measurement", "jvm.old-cache.pool"));
+    assertEquals("should not overlap the prefix and suffix",
+      Optional.empty(),
+      match("ab*ba measurement", "aba"));
+  }
+
+  @Test
+  public void testMatch_NotMatched() {
+    assertEquals("should not match other names",
+      Optional.empty(), match("jvm.gc.* measurement.measurement.field", "jvm.memory.heap"));
+    assertEquals("should not match shorter names",
+      Optional.empty(), match("jvm.gc.* measurement.measurement.field", "jvm.gc"));
+    assertEquals("should not match names without a measurement segment",
+      Optional.empty(), match("region.measurement", "us"));
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("servers.* .host.measurement* env=prod",
+      GlobTemplate.parse("servers.* .host.measurement* env=prod").toString());
+  }
+
+  @Test
+  public void testSplit() {
+    assertArrayEquals(new String[] {"a", "", "b"}, GlobTemplate.split("a..b"));
+    assertArrayEquals(new String[] {"a"}, GlobTemplate.split("a"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParse_NoMeasurement() {
+    GlobTemplate.parse("jvm.* host.field");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParse_RestNotLast() {
+    GlobTemplate.parse("measurement*.host");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParse_MalformedTags() {
+    GlobTemplate.parse("jvm.* measurement env");
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private static Optional<DropwizardMeasurement> match(final String template, final String name) {
+    return GlobTemplate.parse(template).match(GlobTemplate.split(name), Escaping.SANITIZE);
+  }
+}
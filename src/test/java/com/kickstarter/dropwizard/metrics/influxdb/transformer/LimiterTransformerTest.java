@@ -0,0 +1,92 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class LimiterTransformerTest {
+  @Test
+  public void testFromCounters_UngroupedOverflowAggregated() {
+    final DropwizardTransformer transformer = transformerWithLimiter(CardinalityLimiter.Overflow.AGGREGATE, false);
+
+    final Map<String, Counter> cMap = ImmutableMap.of(
+      "requests,user=a", counter(1L),
+      "requests,user=b", counter(2L),
+      "requests,user=c", counter(3L)
+    );
+
+    final Map<String, String> overflowTags = ImmutableMap.of("user", CardinalityLimiter.OVERFLOW_VALUE);
+    assertEquals("should aggregate series beyond the cap into the overflow series",
+      ImmutableList.of(
+        InfluxDbMeasurement.create("requests", ImmutableMap.of("user", "a"), ImmutableMap.of("count", "1i"), 90210L),
+        InfluxDbMeasurement.create(
+          "requests", overflowTags, ImmutableMap.of("count", "5i", CardinalityLimiter.SERIES_FIELD, "2i"), 90210L
+        )
+      ),
+      transformer.fromCounters(cMap, 90210L));
+  }
+
+  @Test
+  public void testFromCounters_GroupedOverflowDropped() {
+    final DropwizardTransformer transformer = transformerWithLimiter(CardinalityLimiter.Overflow.DROP, true);
+
+    final Map<String, Counter> cMap = ImmutableMap.of(
+      "requests,user=a hits", counter(1L),
+      "requests,user=a misses", counter(2L),
+      "requests,user=b hits", counter(3L)
+    );
+
+    final List<InfluxDbMeasurement> expected = ImmutableList.of(
+      InfluxDbMeasurement.create(
+        "requests", ImmutableMap.of("user", "a"), ImmutableMap.of("hits", "1i", "misses", "2i"), 90210L
+      )
+    );
+    assertEquals("should drop groups beyond the cap", expected, transformer.fromCounters(cMap, 90210L));
+    assertEquals("should keep dropping them", expected, transformer.fromCounters(cMap, 90210L));
+  }
+
+  @Test
+  public void testEvict_ReleasesSeries() {
+    final DropwizardTransformer transformer = transformerWithLimiter(CardinalityLimiter.Overflow.DROP, false);
+    transformer.fromCounters(ImmutableMap.of("requests,user=a", counter(1L)), 90210L);
+    transformer.evict("requests,user=a");
+
+    assertEquals("should admit a new series once the evicted metric's series is released",
+      ImmutableList.of(
+        InfluxDbMeasurement.create("requests", ImmutableMap.of("user", "b"), ImmutableMap.of("count", "2i"), 90210L)
+      ),
+      transformer.fromCounters(ImmutableMap.of("requests,user=b", counter(2L)), 90210L));
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private static DropwizardTransformer transformerWithLimiter(final CardinalityLimiter.Overflow overflow,
+                                                             final boolean group) {
+    return new DropwizardTransformer.Builder(
+      ImmutableMap.of(),
+      DropwizardMeasurementParser.withTemplates(ImmutableMap.of()),
+      group,
+      group,
+      TimeUnit.SECONDS,
+      TimeUnit.MILLISECONDS
+    )
+      .limiter(new CardinalityLimiter(1, 100, overflow, new MetricRegistry()))
+      .build();
+  }
+
+  private static Counter counter(final long count) {
+    final Counter counter = new Counter();
+    counter.inc(count);
+    return counter;
+  }
+}
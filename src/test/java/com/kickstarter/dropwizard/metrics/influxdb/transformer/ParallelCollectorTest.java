@@ -0,0 +1,59 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelCollectorTest {
+  @Test
+  public void testCollect_Sequential() {
+    final List<String> results = ParallelCollector.sequential().collect(
+      ImmutableMap.of("a", 1, "b", 2),
+      (name, value) -> name + value
+    );
+
+    assertEquals("should transform every entry in order", ImmutableList.of("a1", "b2"), results);
+  }
+
+  @Test
+  public void testCollect_ParallelPreservesOrder() {
+    final SortedMap<String, Integer> items = new TreeMap<>();
+    final List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      items.put(String.format("metric-%04d", i), i);
+    }
+    items.forEach((name, value) -> expected.add(name + "=" + value));
+
+    final Set<String> threads = ConcurrentHashMap.newKeySet();
+    final List<String> results = ParallelCollector.create(4, 10).collect(items, (name, value) -> {
+      threads.add(Thread.currentThread().getName());
+      return name + "=" + value;
+    });
+
+    assertEquals("should merge chunks in iteration order", expected, results);
+    assertTrue("should transform on pool threads", threads.stream().anyMatch(t -> t.contains("ForkJoinPool")));
+  }
+
+  @Test
+  public void testCollect_SmallMapsOnCallerThread() {
+    final Set<String> threads = ConcurrentHashMap.newKeySet();
+    ParallelCollector.create(4, 10).collect(ImmutableMap.of("a", 1), (name, value) -> {
+      threads.add(Thread.currentThread().getName());
+      return value;
+    });
+
+    assertEquals("should not fork maps within a single chunk",
+      ImmutableList.of(Thread.currentThread().getName()),
+      ImmutableList.copyOf(threads));
+  }
+}
@@ -0,0 +1,117 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.kickstarter.dropwizard.metrics.influxdb.InfluxDbMeasurement;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SelectionTransformerTest {
+  @Test
+  public void testFromTimer_SelectedFields() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithSelections(
+      parser,
+      new FieldSelection("Other", "min"),
+      new FieldSelection("Measure.*", "count", "90-percentile", "p9999", "one-minute")
+    );
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final Timer timer = new Timer();
+    timer.update(50, TimeUnit.MILLISECONDS);
+
+    final InfluxDbMeasurement measurement = transformer.fromTimer("some.metric.name", timer, 90210L);
+    assertEquals("should only add selected timer fields",
+      ImmutableSet.of("count", "90-percentile", "9999-percentile", "one-minute"),
+      measurement.fields().keySet());
+    assertEquals("should convert custom percentiles", "50.0", measurement.fields().get("9999-percentile"));
+  }
+
+  @Test
+  public void testFromTimer_SkipsUnneededSnapshot() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithSelections(
+      parser,
+      new FieldSelection("Measurement", "run-count", "one-minute")
+    );
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final Timer timer = new Timer() {
+      @Override public Snapshot getSnapshot() {
+        throw new AssertionError("should not take a snapshot");
+      }
+    };
+    timer.update(50, TimeUnit.MILLISECONDS);
+
+    final InfluxDbMeasurement measurement = transformer.fromTimer("some.metric.name", timer, 90210L);
+    assertEquals("should add selected meter fields", ImmutableSet.of("run-count", "one-minute"), measurement.fields().keySet());
+  }
+
+  @Test
+  public void testFromMeters_SkipsMetersWithoutSelectedFields() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithSelections(parser, new FieldSelection(".*", "p99"));
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final List<InfluxDbMeasurement> measurements =
+      transformer.fromMeters(ImmutableMap.of("some.metric.name", new Meter()), 90210L);
+    assertEquals("should skip meters with no selected fields", ImmutableList.of(), measurements);
+  }
+
+  @Test
+  public void testFromMeter_IgnoresPercentiles() {
+    final DropwizardMeasurementParser parser = mock(DropwizardMeasurementParser.class);
+    final DropwizardTransformer transformer = transformerWithSelections(
+      parser,
+      new FieldSelection("Measurement", "count", "99-percentile")
+    );
+
+    when(parser.parse("some.metric.name")).thenReturn(
+      DropwizardMeasurement.create("Measurement", MEASUREMENT_TAGS, Optional.empty())
+    );
+
+    final InfluxDbMeasurement measurement = transformer.fromMeter("some.metric.name", new Meter(), 90210L);
+    assertEquals("should ignore fields meters do not have", ImmutableSet.of("count"), measurement.fields().keySet());
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private static final ImmutableMap<String, String> BASE_TAGS = ImmutableMap.of(
+    "some", "simple",
+    "global", "tags"
+  );
+
+  private static final ImmutableMap<String, String> MEASUREMENT_TAGS = ImmutableMap.of(
+    "more", "specific",
+    "measurement", "tags"
+  );
+
+  private static DropwizardTransformer transformerWithSelections(final DropwizardMeasurementParser parser,
+                                                                final FieldSelection... selections) {
+    return new DropwizardTransformer.Builder(BASE_TAGS, parser, true, true, TimeUnit.SECONDS, TimeUnit.MILLISECONDS)
+      .fieldSelections(Arrays.asList(selections))
+      .build();
+  }
+}
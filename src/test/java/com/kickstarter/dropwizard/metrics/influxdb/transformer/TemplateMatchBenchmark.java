@@ -0,0 +1,100 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Compares resolving new metric names with the {@link TemplateMatcher} against trying every template
+ * in turn, on a cache-miss-heavy mix of Dropwizard, user-templated and untemplated names.
+ *
+ * <pre>{@code
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.kickstarter.dropwizard.metrics.influxdb.transformer.TemplateMatchBenchmark \
+ *     -Dexec.args="100000 20"
+ * }</pre>
+ */
+public class TemplateMatchBenchmark {
+  private static final Map<String, TaggedPattern> USER_TEMPLATES = ImmutableMap.of(
+    "services",
+    new TaggedPattern("com\\.kickstarter\\.services\\.(?<service>[A-Za-z0-9]+).*", Arrays.asList("service")),
+    "queues",
+    new TaggedPattern("com\\.kickstarter\\.queues\\.(?<queue>[A-Za-z0-9]+)\\..*", Arrays.asList("queue"))
+  );
+
+  public static void main(final String[] args) {
+    final int names = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    final List<String> metricNames = names(names);
+
+    final ImmutableMap<String, TaggedPattern> templates = DropwizardMeasurementParser.templates(USER_TEMPLATES);
+    final TemplateMatcher matcher = new TemplateMatcher(templates);
+
+    System.out.printf("names=%d rounds=%d%n", names, rounds);
+    System.out.printf("sequential ns/name %s%n", run(metricNames, rounds, name -> sequentialScan(templates, name)));
+    System.out.printf("matcher    ns/name %s%n", run(metricNames, rounds, matcher::match));
+  }
+
+  private static String run(final List<String> names,
+                            final int rounds,
+                            final Function<String, Optional<DropwizardMeasurement>> match) {
+    final long[] nanosPerName = new long[rounds];
+    int matched = 0;
+    for (int round = 0; round < rounds; round++) {
+      final long start = System.nanoTime();
+      for (final String name : names) {
+        matched += match.apply(name).isPresent() ? 1 : 0;
+      }
+      nanosPerName[round] = (System.nanoTime() - start) / names.size();
+    }
+
+    Arrays.sort(nanosPerName);
+    return String.format(
+      "p50=%d min=%d max=%d (matched %d%%)",
+      nanosPerName[rounds / 2], nanosPerName[0], nanosPerName[rounds - 1], 100L * matched / rounds / names.size()
+    );
+  }
+
+  private static Optional<DropwizardMeasurement> sequentialScan(final ImmutableMap<String, TaggedPattern> templates,
+                                                                final String name) {
+    for (final Map.Entry<String, TaggedPattern> entry : templates.entrySet()) {
+      final Optional<Map<String, String>> tags = entry.getValue().tags(name);
+      if (tags.isPresent()) {
+        return Optional.of(DropwizardMeasurement.create(entry.getKey(), tags.get(), Optional.empty()));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Returns names of Dropwizard, user-templated and untemplated metrics, half of which match no template.
+   */
+  private static List<String> names(final int names) {
+    final List<String> metricNames = new ArrayList<>(names);
+    for (int i = 0; i < names; i++) {
+      switch (i % 8) {
+        case 0:
+          metricNames.add("jvm.memory.pools.pool-" + i + ".usage");
+          break;
+        case 1:
+          metricNames.add("org.eclipse.jetty.util.thread.QueuedThreadPool.pool-" + i + ".jobs");
+          break;
+        case 2:
+          metricNames.add("com.kickstarter.services.Service" + i + ".calls");
+          break;
+        case 3:
+          metricNames.add("com.kickstarter.queues.q" + i + ".depth");
+          break;
+        default:
+          metricNames.add("com.example.cache.region-" + i + ".size");
+          break;
+      }
+    }
+    return metricNames;
+  }
+}
@@ -0,0 +1,108 @@
+package com.kickstarter.dropwizard.metrics.influxdb.transformer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+
+public class TemplateMatcherTest {
+  @Test
+  public void testRequiredPrefix() {
+    assertEquals("should unescape literal dots", "jvm.gc", TemplateMatcher.requiredPrefix("jvm\\.gc\\.?(?<metric>.*)"));
+    assertEquals("should skip anchors", "jvm", TemplateMatcher.requiredPrefix("^jvm$"));
+    assertEquals("should stop at wildcards", "jvm.attribute", TemplateMatcher.requiredPrefix("jvm\\.attribute.*?"));
+    assertEquals("should drop quantified characters", "ab", TemplateMatcher.requiredPrefix("abc*d"));
+    assertEquals("should stop at character classes", "a", TemplateMatcher.requiredPrefix("a\\d+"));
+    assertEquals("should not require a prefix with alternation", "", TemplateMatcher.requiredPrefix("jvm|gc"));
+    assertEquals("should not require a prefix of wildcards", "", TemplateMatcher.requiredPrefix(".*\\.health"));
+  }
+
+  @Test
+  public void testRequiredInfix() {
+    assertEquals("should require the literal after a leading wildcard",
+      ".resource",
+      TemplateMatcher.requiredInfix(".*\\.resources?\\.(?<resource>[A-Za-z]+)"));
+    assertEquals("should require the literal after a lazy wildcard",
+      ".health.",
+      TemplateMatcher.requiredInfix(".*?\\.health\\.(?<check>.*)"));
+    assertEquals("should not require an infix without a leading wildcard", "", TemplateMatcher.requiredInfix("a.*b"));
+  }
+
+  @Test
+  public void testMatch_PreservesTemplateOrder() {
+    final TemplateMatcher matcher = new TemplateMatcher(ImmutableMap.of(
+      "broad", new TaggedPattern("jvm\\..*"),
+      "narrow", new TaggedPattern("jvm\\.gc\\.(?<metric>.*)", "metric")
+    ));
+
+    assertEquals("should return the first matching template, even with a shorter prefix",
+      Optional.of(DropwizardMeasurement.create("broad", ImmutableMap.of(), Optional.empty())),
+      matcher.match("jvm.gc.count"));
+  }
+
+  @Test
+  public void testMatch_NoMatch() {
+    final TemplateMatcher matcher = new TemplateMatcher(ImmutableMap.of(
+      "gc", new TaggedPattern("jvm\\.gc\\.(?<metric>.*)", "metric"),
+      "health", new TaggedPattern(".*\\.health\\.(?<check>.*)", "check")
+    ));
+
+    assertEquals("should not match names without a template's prefix", Optional.empty(), matcher.match("jvm.memory"));
+    assertEquals("should not match a prefix of the template's prefix", Optional.empty(), matcher.match("jvm.g"));
+  }
+
+  @Test
+  public void testMatch_SameAsSequentialScan() {
+    final ImmutableMap<String, TaggedPattern> templates = ImmutableMap.<String, TaggedPattern>builder()
+      .put("services", new TaggedPattern("com\\.ks\\.services\\.(?<service>[A-Za-z]+).*", "service"))
+      .put("either", new TaggedPattern("(foo|bar)\\..*"))
+      .put("health", new TaggedPattern(".*\\.health\\.(?<check>.*)", "check"))
+      .put("resources", new TaggedPattern(".*\\.resources?\\.(?<resource>\\w+)\\.(?<method>.+)", "resource", "method"))
+      .put("jvm", new TaggedPattern("^jvm$"))
+      .put("jvm_gc", new TaggedPattern("jvm\\.gc\\.?(?<metric>.*)", "metric"))
+      .put("thread_pools", new TaggedPattern("org\\.eclipse\\.jetty\\.util\\.thread\\.(?<pool>.*)", "pool"))
+      .build();
+    final TemplateMatcher matcher = new TemplateMatcher(templates);
+
+    final ImmutableList<String> names = ImmutableList.of(
+      "com.ks.services.Projects.get",
+      "com.ks.Services",
+      "foo.bar",
+      "bar.foo",
+      "baz.foo",
+      "app.health.db",
+      "app.healthy.db",
+      "com.example.resource.Info.get",
+      "com.example.resources.Info.get",
+      "com.example.resources.Info",
+      "jvm",
+      "jvm.gc",
+      "jvm.gc.PS-MarkSweep.count",
+      "jvmgc",
+      "org.eclipse.jetty.util.thread.dw.jobs",
+      "",
+      "Measurement,action=restore"
+    );
+
+    for (final String name : names) {
+      assertEquals("should match " + name + " by the first matching template",
+        sequentialScan(templates, name),
+        matcher.match(name));
+    }
+  }
+
+  // ===================================================================================================================
+  // Test helpers
+
+  private static Optional<DropwizardMeasurement> sequentialScan(final ImmutableMap<String, TaggedPattern> templates,
+                                                                final String name) {
+    return templates.entrySet().stream()
+      .map(e -> e.getValue().tags(name).map(tags -> DropwizardMeasurement.create(e.getKey(), tags, Optional.empty())))
+      .filter(Optional::isPresent)
+      .map(Optional::get)
+      .findFirst();
+  }
+}
@@ -0,0 +1,113 @@
+package com.kickstarter.dropwizard.metrics.reservoir;
+
+import com.codahale.metrics.Snapshot;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogBucketReservoirTest {
+  @Test
+  public void testBuckets_BoundsContainValues() {
+    final LogBuckets buckets = new LogBuckets(LogBucketReservoir.DEFAULT_PRECISION);
+    for (final long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789L, Long.MAX_VALUE}) {
+      final int index = buckets.index(value);
+      assertTrue("bucket lower bound should not exceed " + value, buckets.lowerBound(index) <= value);
+      assertTrue("bucket upper bound should not be below " + value, buckets.upperBound(index) >= value);
+    }
+    assertEquals("should fit the largest long in the last bucket", buckets.size() - 1, buckets.index(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testBuckets_Contiguous() {
+    final LogBuckets buckets = new LogBuckets(3);
+    for (int i = 1; i < buckets.size(); i++) {
+      assertEquals("buckets should not overlap or leave gaps", buckets.upperBound(i - 1) + 1, buckets.lowerBound(i));
+    }
+  }
+
+  @Test
+  public void testGetSnapshot() {
+    final LogBucketReservoir reservoir = new LogBucketReservoir();
+    for (long i = 1; i <= 1000; i++) {
+      reservoir.update(i);
+    }
+    assertEquals("expected every update", 1000, reservoir.size());
+
+    final Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals("expected every update", 1000, snapshot.size());
+    assertEquals("expected an exact mean", 500.5, snapshot.getMean(), 0.0);
+    assertEquals("expected the median within half a bucket", 500, snapshot.getMedian(), 500 * 0.032);
+    assertEquals("expected the 99th percentile within half a bucket", 990, snapshot.get99thPercentile(), 990 * 0.032);
+    assertTrue("min should not exceed the smallest value", snapshot.getMin() <= 1);
+    assertTrue("max should not be below the largest value", snapshot.getMax() >= 1000);
+    assertEquals("expected one value per update", 1000, snapshot.getValues().length);
+  }
+
+  @Test
+  public void testGetSnapshot_Resets() {
+    final LogBucketReservoir reservoir = new LogBucketReservoir();
+    reservoir.update(10);
+    reservoir.update(20);
+
+    assertEquals("expected the first interval", 2, reservoir.getSnapshot().size());
+    assertEquals("should reset when read", 0, reservoir.size());
+
+    reservoir.update(30);
+    final Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals("expected only the second interval", 1, snapshot.size());
+    assertEquals("expected only the second interval", 30.0, snapshot.getMean(), 0.0);
+  }
+
+  @Test
+  public void testGetSnapshot_Empty() {
+    final Snapshot snapshot = new LogBucketReservoir().getSnapshot();
+    assertEquals("expected no values", 0, snapshot.size());
+    assertEquals("expected a zero percentile", 0.0, snapshot.get99thPercentile(), 0.0);
+    assertEquals("expected a zero max", 0, snapshot.getMax());
+    assertEquals("expected a zero mean", 0.0, snapshot.getMean(), 0.0);
+  }
+
+  @Test
+  public void testCumulativeCounts() {
+    final LogBucketReservoir reservoir = new LogBucketReservoir();
+    reservoir.update(5);
+    reservoir.update(10);
+    reservoir.update(70);
+    reservoir.update(1000);
+
+    final LogBucketSnapshot snapshot = (LogBucketSnapshot) reservoir.getSnapshot();
+    assertArrayEquals(
+      "should count values at or below each bound",
+      new long[] {0, 2, 2, 3, 4},
+      snapshot.cumulativeCounts(new double[] {1, 10, 50, 100.5, 2000})
+    );
+  }
+
+  @Test
+  public void testUpdate_Concurrent() throws InterruptedException {
+    final LogBucketReservoir reservoir = new LogBucketReservoir();
+    final List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          reservoir.update(i);
+        }
+      }));
+    }
+
+    long seen = 0;
+    threads.forEach(Thread::start);
+    for (final Thread thread : threads) {
+      seen += ((LogBucketSnapshot) reservoir.getSnapshot()).count();
+      thread.join();
+    }
+    seen += ((LogBucketSnapshot) reservoir.getSnapshot()).count();
+
+    assertEquals("should count every update exactly once across snapshots", 80_000, seen);
+  }
+}
@@ -0,0 +1,147 @@
+package com.kickstarter.dropwizard.metrics.tagged;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.kickstarter.dropwizard.metrics.reservoir.LogBucketReservoir;
+import com.kickstarter.dropwizard.metrics.reservoir.LogBucketSnapshot;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class TaggedMetricsTest {
+  @Test
+  public void testGet() {
+    final MetricRegistry registry = new MetricRegistry();
+    final MetricFamily<TaggedTimer> requests = new TaggedMetrics(registry).timer("Http", "route", "status");
+
+    final TaggedTimer timer = requests.get("/cats", "200");
+    assertEquals("should tag the metric with its measurement", "Http", timer.measurement());
+    assertEquals("should tag the metric with its tags",
+      ImmutableMap.of("route", "/cats", "status", "200"), timer.tags());
+    assertSame("should return the same metric for the same tags", timer, requests.get("/cats", "200"));
+    assertNotSame("should return other metrics for other tags", timer, requests.get("/cats", "500"));
+    assertSame("should register the metric under its InfluxDB name",
+      timer, registry.getTimers().get("Http,route=/cats,status=200"));
+  }
+
+  @Test
+  public void testGet_Untagged() {
+    final MetricRegistry registry = new MetricRegistry();
+    final TaggedCounter counter = new TaggedMetrics(registry).counter("Jobs").get();
+
+    assertEquals("should have no tags", ImmutableMap.of(), counter.tags());
+    assertSame("should register the metric under its measurement", counter, registry.getCounters().get("Jobs"));
+  }
+
+  @Test
+  public void testGet_SharedBetweenFamilies() {
+    final MetricRegistry registry = new MetricRegistry();
+    final TaggedMeter meter = new TaggedMetrics(registry).meter("Http", "route").get("/cats");
+
+    assertSame("should share metrics with other families of the same measurement",
+      meter, new TaggedMetrics(registry).meter("Http", "route").get("/cats"));
+  }
+
+  @Test
+  public void testGet_Reservoir() {
+    final TaggedHistogram histogram =
+      new TaggedMetrics(new MetricRegistry()).histogram("Sizes", LogBucketReservoir::new, "route").get("/cats");
+    assertTrue("should back the histogram with the reservoir", histogram.getSnapshot() instanceof LogBucketSnapshot);
+  }
+
+  @Test
+  public void testRemove() {
+    final MetricRegistry registry = new MetricRegistry();
+    final MetricFamily<TaggedCounter> jobs = new TaggedMetrics(registry).counter("Jobs", "queue");
+    final TaggedCounter counter = jobs.get("mail");
+
+    assertTrue("should remove the metric", jobs.remove("mail"));
+    assertFalse("should remove the metric from the registry", registry.getCounters().containsKey("Jobs,queue=mail"));
+    assertFalse("should not remove metrics twice", jobs.remove("mail"));
+    assertNotSame("should create the metric again", counter, jobs.get("mail"));
+  }
+
+  @Test
+  public void testRemove_PrunesEmptyNodes() {
+    final MetricFamily<TaggedTimer> requests = new TaggedMetrics(new MetricRegistry()).timer("Http", "route", "status");
+    requests.get("/cats", "200");
+    requests.get("/cats", "500");
+
+    requests.remove("/cats", "200");
+    assertEquals("should keep nodes of other metrics", 2, requests.nodes());
+    requests.remove("/cats", "500");
+    assertEquals("should prune nodes left empty", 0, requests.nodes());
+    assertFalse("should not remove unknown metrics", requests.remove("/dogs", "200"));
+    assertEquals("should not add nodes for unknown metrics", 0, requests.nodes());
+  }
+
+  @Test
+  public void testGet_RemovedFromRegistry() {
+    final MetricRegistry registry = new MetricRegistry();
+    final MetricFamily<TaggedCounter> jobs = new TaggedMetrics(registry).counter("Jobs", "queue");
+    final MetricFamily<TaggedCounter> sharedJobs = new TaggedMetrics(registry).counter("Jobs", "queue");
+    final TaggedCounter counter = jobs.get("mail");
+    assertSame("should share the metric", counter, sharedJobs.get("mail"));
+
+    registry.remove("Jobs,queue=mail");
+    final TaggedCounter registered = jobs.get("mail");
+    assertNotSame("should create a metric removed from the registry again", counter, registered);
+    assertSame("should register the new metric", registered, registry.getCounters().get("Jobs,queue=mail"));
+    assertSame("should drop the removed metric from other families", registered, sharedJobs.get("mail"));
+
+    registry.removeMatching((name, metric) -> name.startsWith("Jobs"));
+    assertNotSame("should create metrics removed by a filter again", registered, jobs.get("mail"));
+    assertEquals("should prune the removed metrics' nodes", 1, jobs.nodes());
+  }
+
+  @Test
+  public void testRemove_SharesOneListener() {
+    final MetricRegistry registry = spy(new MetricRegistry());
+    final TaggedMetrics tagged = new TaggedMetrics(registry);
+    final MetricFamily<TaggedCounter> jobs = tagged.counter("Jobs");
+    final MetricFamily<TaggedTimer> requests = tagged.timer("Http", "route");
+    final TaggedCounter counter = jobs.get();
+    requests.get("/cats");
+
+    verify(registry, times(1)).addListener(any(MetricRegistryListener.class));
+
+    registry.remove("Jobs");
+    assertEquals("should drop the removed untagged metric", 0, jobs.nodes());
+    assertNotSame("should create the removed metric again", counter, jobs.get());
+    assertEquals("should keep other measurements' metrics", 1, requests.nodes());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGet_WrongNumberOfValues() {
+    new TaggedMetrics(new MetricRegistry()).timer("Http", "route", "status").get("/cats");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGet_RegisteredAsOtherType() {
+    final MetricRegistry registry = new MetricRegistry();
+    registry.counter("Http,route=/cats");
+    new TaggedMetrics(registry).timer("Http", "route").get("/cats");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFamily_DuplicateTagKeys() {
+    new TaggedMetrics(new MetricRegistry()).timer("Http", "route", "route");
+  }
+
+  @Test
+  public void testFamily() {
+    final MetricFamily<TaggedTimer> requests = new TaggedMetrics(new MetricRegistry()).timer("Http", "route", "status");
+    assertEquals("should have its measurement", "Http", requests.measurement());
+    assertEquals("should have its tag keys", ImmutableList.of("route", "status"), requests.tagKeys());
+  }
+}